@@ -11,6 +11,7 @@ const SEED_AMOUNT = Number(__ENV.SEED_AMOUNT || 5000);
 const TRANSFER_AMOUNT = Number(__ENV.TRANSFER_AMOUNT || 1200);
 const READ_RETRIES = Number(__ENV.READ_RETRIES || 120);   // 120 * 0.5s = 60s
 const READ_WAIT_MS = Number(__ENV.READ_WAIT_MS || 500);
+const MIN_VERSION_TIMEOUT_MS = Number(__ENV.MIN_VERSION_TIMEOUT_MS || 10000); // held read; replaces polling when a version is known
 
 export const options = {
   vus: Number(__ENV.VUS || 20),
@@ -46,8 +47,24 @@ function extractId(res, fallback) {
   return fallback; // fall back to the name we sent
 }
 
-// Helper: wait until read returns 200 (handles eventual consistency); tries two routes
-function readAccount(id, attempts = READ_RETRIES, waitMs = READ_WAIT_MS) {
+// Helper: extract the version token a command returns
+function extractVersion(res) {
+  try {
+    const obj = res.json();
+    return obj && typeof obj.version === 'number' ? obj.version : null;
+  } catch (e) { return null; }
+}
+
+// Helper: read once the projection has reached minVersion (server holds the request)
+function readAt(path, endpoint, minVersion) {
+  return http.get(`${QRY}${path}?minVersion=${minVersion}&timeoutMs=${MIN_VERSION_TIMEOUT_MS}`,
+    { tags: { endpoint, method: 'GET', retry: 'false' }, timeout: `${MIN_VERSION_TIMEOUT_MS + 5000}ms` });
+}
+
+// Helper: wait until read returns 200 (handles eventual consistency); tries two routes.
+// With a version token from the write, one held read replaces the polling loop.
+function readAccount(id, minVersion = null, attempts = READ_RETRIES, waitMs = READ_WAIT_MS) {
+  if (minVersion !== null) return readAt(`/api/accounts/${id}`, '/api/accounts/{id}', minVersion);
   let res;
   for (let i = 0; i < attempts; i++) {
     // primary route
@@ -91,8 +108,8 @@ export function setup() {
   check(seed, { 'seed credit 200 (setup)': (r) => r.status === 200 });
 
   // Wait until projection materializes both accounts on query-service
-  const rA = readAccount(A);
-  const rB = readAccount(B);
+  const rA = readAccount(A, extractVersion(seed));
+  const rB = readAccount(B, extractVersion(openB));
   check(rA, { 'read A 200 (setup)': (r) => r.status === 200 });
   check(rB, { 'read B 200 (setup)': (r) => r.status === 200 });
 
@@ -120,6 +137,12 @@ export default function (data) {
   );
   check(tr, { 'transfer 200': (r) => r.status === 200 });
 
+  // the transfer's own version is the token; once it is projected, read the accounts as they are
+  const version = extractVersion(tr);
+  if (version !== null) {
+    const rT = readAt(`/api/transfers/${txid}`, '/api/transfers/{id}', version);
+    check(rT, { 'read transfer 200': (r) => r.status === 200 });
+  }
   const rA = readAccount(A);
   const rB = readAccount(B);
   check(rA, { 'read A 200': (r) => r.status === 200 });
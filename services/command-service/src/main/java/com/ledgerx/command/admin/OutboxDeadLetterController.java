@@ -0,0 +1,38 @@
+package com.ledgerx.command.admin;
+
+import com.ledgerx.command.outbox.OutboxDeadLetters;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin/outbox/dead-letters")
+public class OutboxDeadLetterController {
+  private final OutboxDeadLetters deadLetters;
+
+  public OutboxDeadLetterController(OutboxDeadLetters deadLetters){ this.deadLetters = deadLetters; }
+
+  @GetMapping
+  public Map<String,Object> list(@RequestParam(required = false) String topic,
+                                 @RequestParam(defaultValue = "0") long afterId,
+                                 @RequestParam(defaultValue = "100") int limit){
+    List<Map<String,Object>> rows = deadLetters.list(topic, afterId, limit);
+    return Map.of("items", rows, "nextAfterId", rows.isEmpty() ? afterId : rows.get(rows.size() - 1).get("id"));
+  }
+
+  @PostMapping("/{id}/replay")
+  public Map<String,Object> replay(@PathVariable long id){
+    return Map.of("replayed", deadLetters.replay(id));
+  }
+
+  @PostMapping("/replay")
+  public Map<String,Object> replayAll(@RequestParam(required = false) String topic){
+    return Map.of("replayed", deadLetters.replayAll(topic));
+  }
+
+  @DeleteMapping("/{id}")
+  public Map<String,Object> discard(@PathVariable long id){
+    return Map.of("discarded", deadLetters.discard(id));
+  }
+}
@@ -0,0 +1,66 @@
+package com.ledgerx.command.admin;
+
+import com.ledgerx.command.replay.EventReplayer;
+import com.ledgerx.command.replay.ReplayJobs;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+/** fromId/toId are event_store ids (fromId exclusive); fromTime/toTime bound event_timestamp (toTime exclusive). */
+record ReplayReq(String aggregateType, String aggregateId, Long fromId, Long toId,
+                 OffsetDateTime fromTime, OffsetDateTime toTime, Integer ratePerSec) {}
+
+@RestController
+@RequestMapping("/admin")
+public class ReplayController {
+  private final ReplayJobs jobs;
+  private final EventReplayer replayer;
+
+  public ReplayController(ReplayJobs jobs, EventReplayer replayer){ this.jobs = jobs; this.replayer = replayer; }
+
+  @PostMapping("/replay")
+  public ResponseEntity<Map<String,Object>> start(@RequestBody ReplayReq req){
+    long id = jobs.create(req.aggregateType(), req.aggregateId(), req.fromId() == null ? 0 : req.fromId(), req.toId(),
+        req.fromTime(), req.toTime(), req.ratePerSec() == null ? 0 : req.ratePerSec());
+    replayer.poll();
+    return ResponseEntity.accepted().body(jobs.get(id));
+  }
+
+  /** Kept for existing scripts: replays every Account event as a background job. */
+  @PostMapping("/backfill/accounts")
+  public ResponseEntity<Map<String,Object>> backfillAccounts(){
+    return start(new ReplayReq("Account", null, null, null, null, null, null));
+  }
+
+  @GetMapping("/replay")
+  public Map<String,Object> list(@RequestParam(defaultValue = "50") int limit){
+    List<Map<String,Object>> rows = jobs.list(limit);
+    return Map.of("items", rows);
+  }
+
+  @GetMapping("/replay/{id}")
+  public ResponseEntity<Map<String,Object>> status(@PathVariable long id){
+    var job = jobs.get(id);
+    return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+  }
+
+  @PostMapping("/replay/{id}/pause")
+  public Map<String,Object> pause(@PathVariable long id){
+    return Map.of("paused", jobs.pause(id));
+  }
+
+  @PostMapping("/replay/{id}/resume")
+  public Map<String,Object> resume(@PathVariable long id){
+    boolean resumed = jobs.resume(id);
+    if (resumed) replayer.poll();
+    return Map.of("resumed", resumed);
+  }
+
+  @PostMapping("/replay/{id}/cancel")
+  public Map<String,Object> cancel(@PathVariable long id){
+    return Map.of("cancelled", jobs.cancel(id));
+  }
+}
@@ -0,0 +1,29 @@
+package com.ledgerx.command.admin;
+
+import com.ledgerx.command.app.AccountSnapshots;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin/snapshots/accounts")
+public class SnapshotController {
+  private final AccountSnapshots snapshots;
+
+  public SnapshotController(AccountSnapshots snapshots){ this.snapshots = snapshots; }
+
+  @PostMapping("/rebuild")
+  public Map<String,Object> rebuildAll(){
+    return snapshots.rebuildAll();
+  }
+
+  @PostMapping("/{id}/rebuild")
+  public Map<String,Object> rebuild(@PathVariable String id){
+    return snapshots.rebuild(id);
+  }
+
+  @GetMapping("/{id}/verify")
+  public Map<String,Object> verify(@PathVariable String id){
+    return snapshots.verify(id);
+  }
+}
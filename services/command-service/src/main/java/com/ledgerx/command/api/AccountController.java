@@ -1,9 +1,12 @@
 package com.ledgerx.command.api;
 
+import com.ledgerx.command.app.AccountMailboxes;
 import com.ledgerx.command.app.AccountService;
+import com.ledgerx.command.app.GroupCommitter;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.function.Supplier;
 
 record OpenReq(String accountId, String currency) {}
 record MoneyReq(long amountCents, String currency, String idempotencyKey) {}
@@ -12,20 +15,29 @@ record MoneyReq(long amountCents, String currency, String idempotencyKey) {}
 @RequestMapping("/api/accounts")
 public class AccountController {
   private final AccountService svc;
-  public AccountController(AccountService svc){ this.svc = svc; }
+  private final GroupCommitter commands;
+  private final AccountMailboxes mailboxes;
+  public AccountController(AccountService svc, GroupCommitter commands, AccountMailboxes mailboxes){
+    this.svc = svc; this.commands = commands; this.mailboxes = mailboxes;
+  }
 
   @PostMapping
   public Map<String,Object> open(@RequestBody OpenReq req){
-    return svc.open(req.accountId(), req.currency());
+    return dispatch(req.accountId(), null, () -> svc.open(req.accountId(), req.currency()));
   }
 
   @PostMapping("/{id}/credit")
   public Map<String,Object> credit(@PathVariable String id, @RequestBody MoneyReq req){
-    return svc.credit(id, req.amountCents(), req.currency(), req.idempotencyKey());
+    return dispatch(id, req.idempotencyKey(), () -> svc.credit(id, req.amountCents(), req.currency(), req.idempotencyKey()));
   }
 
   @PostMapping("/{id}/debit")
   public Map<String,Object> debit(@PathVariable String id, @RequestBody MoneyReq req){
-    return svc.debit(id, req.amountCents(), req.currency(), req.idempotencyKey());
+    return dispatch(id, req.idempotencyKey(), () -> svc.debit(id, req.amountCents(), req.currency(), req.idempotencyKey()));
+  }
+
+  // account mailbox outermost: the mailbox serializes per account, group commit batches across accounts
+  private Map<String,Object> dispatch(String accountId, String idemKey, Supplier<Map<String,Object>> op){
+    return mailboxes.call(accountId, () -> commands.run(idemKey, accountId, op));
   }
 }
\ No newline at end of file
@@ -1,10 +1,15 @@
 package com.ledgerx.command.api;
 
+import com.ledgerx.command.store.ConcurrencyConflictException;
+import org.postgresql.util.PSQLException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestControllerAdvice
 public class ApiExceptionHandler {
@@ -16,6 +21,33 @@ public class ApiExceptionHandler {
     return ResponseEntity.status(status).body(Map.of("status","error","message",ex.getMessage()));
   }
 
+  /** Lost optimistic-concurrency race after the retry policy gave up; safe for the client to retry. */
+  @ExceptionHandler(ConcurrencyConflictException.class)
+  public ResponseEntity<Map<String,Object>> conflict(ConcurrencyConflictException ex){
+    var c = ex.conflict();
+    return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status","conflict","message",ex.getMessage(),
+        "expectedVersion", c.expectedVersion(), "actualVersion", c.actualVersion(), "retryable", true));
+  }
+
+  /**
+   * A unique violation on the stream tables is a version race the conditional append did not catch
+   * (e.g. a stream whose head row is missing) and is retryable like any other conflict. Any other
+   * duplicate key is not something a retry fixes, so it is reported as the error it is.
+   */
+  @ExceptionHandler(DuplicateKeyException.class)
+  public ResponseEntity<Map<String,Object>> duplicate(DuplicateKeyException ex){
+    if (!(ex.getMostSpecificCause() instanceof PSQLException p) || p.getServerErrorMessage() == null
+        || !STREAM_TABLES.contains(String.valueOf(p.getServerErrorMessage().getTable()))) return other(ex);
+    return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status","conflict","message","concurrent append to the same stream","retryable", true));
+  }
+
+  private static final Set<String> STREAM_TABLES = Set.of("event_store", "event_streams");
+
+  @ExceptionHandler(RejectedExecutionException.class)
+  public ResponseEntity<Map<String,Object>> overloaded(RejectedExecutionException ex){
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("status","error","message",ex.getMessage(),"retryable", true));
+  }
+
   @ExceptionHandler(Exception.class)
   public ResponseEntity<Map<String,Object>> other(Exception ex){
     return ResponseEntity.status(500).body(Map.of("status","error","message",ex.getMessage()));
@@ -1,6 +1,8 @@
 package com.ledgerx.command.api;
 
+import com.ledgerx.command.events.LedgerEvent.FundsCredited;
 import com.ledgerx.command.store.EventStoreRepository;
+import com.ledgerx.command.store.NewEvent;
 import com.ledgerx.command.store.OutboxRepository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
@@ -22,18 +24,12 @@ public class DemoController {
   @PostMapping("/event")
   @Transactional
   public Map<String, Object> writeDummyEvent(@RequestParam(defaultValue = "acc_001") String aggregateId) {
-    // Use next version (prevents unique-constraint errors on re-post)
-    long version = store.load("Account", aggregateId).size() + 1L;
-
-    Map<String, Object> payload = Map.of(
-        "accountId", aggregateId,
-        "amountCents", 500L,
-        "currency", "USD"
-    );
+    var payload = new FundsCredited(aggregateId, 500L, "USD");
     Map<String, Object> meta = Map.of("correlationId", UUID.randomUUID().toString());
 
-    // Append to event store
-    store.append("Account", aggregateId, version, "FundsCredited", payload, meta);
+    // Append at the current head (no read of the stream, no unique-constraint errors on re-post)
+    long version = store.append("Account", aggregateId, EventStoreRepository.ANY_VERSION,
+        new NewEvent(payload, meta)).orThrow();
 
     // Stage for outbox -> Kafka (include version for idempotent projections)
     Map<String, Object> value = Map.of(
@@ -1,9 +1,11 @@
 package com.ledgerx.command.api;
 
+import com.ledgerx.command.app.GroupCommitter;
 import com.ledgerx.command.app.TransferService;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.function.Supplier;
 
 record TransferReq(String transferId, String fromAccount, String toAccount,
                    long amountCents, String currency, String idempotencyKey) {}
@@ -12,11 +14,12 @@ record TransferReq(String transferId, String fromAccount, String toAccount,
 @RequestMapping("/api/transfers")
 public class TransferController {
   private final TransferService transfers;
-  public TransferController(TransferService transfers){ this.transfers = transfers; }
+  private final GroupCommitter commands;
+  public TransferController(TransferService transfers, GroupCommitter commands){ this.transfers = transfers; this.commands = commands; }
 
   @PostMapping
   public Map<String,Object> start(@RequestBody TransferReq req){
-    return transfers.transfer(
+    Supplier<Map<String,Object>> op = () -> transfers.transfer(
         req.transferId(),
         req.fromAccount(),
         req.toAccount(),
@@ -24,5 +27,9 @@ public class TransferController {
         req.currency(),
         req.idempotencyKey()
     );
+    // a saga commits its own steps, so only atomic transfers go through group commit
+    // AtomicTransfers locks the lower account id first
+    String firstLock = req.fromAccount().compareTo(req.toAccount()) <= 0 ? req.fromAccount() : req.toAccount();
+    return transfers.joinsCallerTransaction() ? commands.run(req.idempotencyKey(), firstLock, op) : op.get();
   }
 }
\ No newline at end of file
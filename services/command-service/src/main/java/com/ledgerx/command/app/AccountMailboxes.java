@@ -0,0 +1,88 @@
+package com.ledgerx.command.app;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer dispatch for account commands. Each account id hashes to one of {@code shards}
+ * mailboxes; a mailbox runs its commands one at a time on a virtual thread, so commands for one account
+ * never race each other in this process (no version-conflict retries) while different shards run in
+ * parallel. Conflicts with other instances are still caught by the optimistic append. When disabled,
+ * {@link #call} runs inline.
+ */
+@Component
+public class AccountMailboxes {
+  private final boolean enabled;
+  private final Mailbox[] mailboxes;
+  private final Timer waitTimer;
+  private static final ThreadLocal<Mailbox> CURRENT = new ThreadLocal<>();
+
+  private static final class Mailbox {
+    final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    final AtomicInteger depth = new AtomicInteger();
+    final AtomicBoolean draining = new AtomicBoolean();
+  }
+
+  public AccountMailboxes(MeterRegistry meter,
+                          @Value("${ledgerx.mailbox.enabled:false}") boolean enabled,
+                          @Value("${ledgerx.mailbox.shards:256}") int shards){
+    this.enabled = enabled;
+    this.mailboxes = new Mailbox[Math.max(1, shards)];
+    for (int i = 0; i < mailboxes.length; i++) mailboxes[i] = new Mailbox();
+    this.waitTimer = Timer.builder("ledgerx.mailbox.wait").publishPercentileHistogram().register(meter);
+    meter.gauge("ledgerx.mailbox.depth", this, m -> Arrays.stream(m.mailboxes).mapToInt(b -> b.depth.get()).sum());
+    meter.gauge("ledgerx.mailbox.depth.max", this, m -> Arrays.stream(m.mailboxes).mapToInt(b -> b.depth.get()).max().orElse(0));
+  }
+
+  /** Runs {@code op} in the mailbox owning {@code accountId} and waits for its result. */
+  public <T> T call(String accountId, Supplier<T> op){
+    if (!enabled) return op.get();
+    Mailbox mb = mailboxes[Math.floorMod(accountId.hashCode(), mailboxes.length)];
+    if (CURRENT.get() == mb) return op.get(); // re-entrant call from this mailbox's own thread
+
+    var future = new CompletableFuture<T>();
+    long enqueuedAt = System.nanoTime();
+    mb.depth.incrementAndGet();
+    mb.queue.add(() -> {
+      waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+      try { future.complete(op.get()); }
+      catch (Throwable t) { future.completeExceptionally(t); }
+      finally { mb.depth.decrementAndGet(); }
+    });
+    if (mb.draining.compareAndSet(false, true)) Thread.ofVirtual().name("ledgerx-mailbox").start(() -> drain(mb));
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) throw re;
+      if (e.getCause() instanceof Error err) throw err;
+      throw e;
+    }
+  }
+
+  private static void drain(Mailbox mb){
+    CURRENT.set(mb);
+    try {
+      while (true) {
+        Runnable r;
+        while ((r = mb.queue.poll()) != null) r.run();
+        mb.draining.set(false);
+        // a submitter may have enqueued after our last poll but lost the CAS; take over again if so
+        if (mb.queue.isEmpty() || !mb.draining.compareAndSet(false, true)) return;
+      }
+    } finally {
+      CURRENT.remove();
+    }
+  }
+}
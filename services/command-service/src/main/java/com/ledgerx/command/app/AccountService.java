@@ -1,100 +1,114 @@
 package com.ledgerx.command.app;
 
+import com.ledgerx.command.events.LedgerEvent;
+import com.ledgerx.command.events.LedgerEvent.AccountOpened;
+import com.ledgerx.command.events.LedgerEvent.FundsCredited;
+import com.ledgerx.command.events.LedgerEvent.FundsDebited;
 import com.ledgerx.command.idempotency.IdempotencyRepository;
+import com.ledgerx.command.idempotency.RequestFingerprint;
+import com.ledgerx.command.store.ConcurrencyConflictException;
 import com.ledgerx.command.store.EventStoreRepository;
+import com.ledgerx.command.store.NewEvent;
 import com.ledgerx.command.store.OutboxRepository;
+import com.ledgerx.command.store.UnitOfWork;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Service
 public class AccountService {
   private final EventStoreRepository store;
   private final OutboxRepository outbox;
   private final IdempotencyRepository idem;
-  private static final String TOPIC = "ledgerx.accounts.events.v2";
+  private final AccountSnapshots snapshots;
+  private final AppendRetryPolicy retry;
+  private final AccountStateCache cache;
+  private final TransactionTemplate tx;
+  public static final String TOPIC = "ledgerx.accounts.events.v2";
 
-  public AccountService(EventStoreRepository store, OutboxRepository outbox, IdempotencyRepository idem){
-    this.store = store; this.outbox = outbox; this.idem = idem;
+  public AccountService(EventStoreRepository store, OutboxRepository outbox, IdempotencyRepository idem,
+                        AccountSnapshots snapshots, AppendRetryPolicy retry, AccountStateCache cache,
+                        TransactionTemplate tx){
+    this.store = store; this.outbox = outbox; this.idem = idem; this.snapshots = snapshots; this.retry = retry;
+    this.cache = cache; this.tx = tx;
   }
 
   @Transactional
   public Map<String,Object> open(String id, String currency){
-    List<Map<String,Object>> hist = store.load("Account", id);
-    if (!hist.isEmpty()) throw new IllegalStateException("Account already opened");
-    long version = 1L;
-    Map<String,Object> payload = Map.<String,Object>of("accountId", id, "currency", currency);
-    append("AccountOpened", id, version, payload, Map.<String,Object>of());
+    long version;
+    try { version = append(new AccountOpened(id, currency), id, 0L, Map.<String,Object>of()); }
+    catch (ConcurrencyConflictException e) { throw new IllegalStateException("Account already opened"); }
+    cache.put(id, new AccountSnapshots.AccountState(version, 0L, currency, 0, Optional.empty()));
     Map<String,Object> resp = Map.<String,Object>of("status","ok","accountId", id, "version", version);
     return resp;
   }
 
   @Transactional
   public Map<String,Object> credit(String id, long amountCents, String currency, String idemKey){
-    Map<String,Object> body = Map.<String,Object>of("op","credit","id",id,"amountCents",amountCents,"currency",currency);
-    String hash = sha256(body.toString());
+    String hash = RequestFingerprint.of("credit", id, amountCents, currency);
     var existing = idem.beginOrGet(idemKey, hash);
     if (existing.isPresent()) return existing.get(); // already processed or in-flight
 
-    long version = store.load("Account", id).size() + 1L;
-    Map<String,Object> payload = Map.<String,Object>of("accountId", id, "amountCents", amountCents, "currency", currency);
-    append("FundsCredited", id, version, payload, Map.<String,Object>of("idempotencyKey", idemKey));
+    // A credit has no invariant on prior state, so it appends at the current head without reading it.
+    long version = append(new FundsCredited(id, amountCents, currency), id, EventStoreRepository.ANY_VERSION, Map.<String,Object>of("idempotencyKey", idemKey));
+    cache.advance(id, version, amountCents);
+    snapshots.afterBlindAppend(id, version);
 
     Map<String,Object> resp = Map.<String,Object>of("status","ok","accountId", id, "version", version, "newBalanceDelta", amountCents);
     idem.complete(idemKey, resp);
     return resp;
   }
 
-  @Transactional
+  /**
+   * Each attempt is its own transaction, and a lost race is retried after it has rolled back, so the
+   * retry backoff never sleeps while the attempt's locks are held. Inside a caller's transaction
+   * (group commit) the attempt joins it and is not retried (see {@link AppendRetryPolicy}).
+   */
   public Map<String,Object> debit(String id, long amountCents, String currency, String idemKey){
-    Map<String,Object> body = Map.<String,Object>of("op","debit","id",id,"amountCents",amountCents,"currency",currency);
-    String hash = sha256(body.toString());
+    String hash = RequestFingerprint.of("debit", id, amountCents, currency);
+    return retry.run(() -> tx.execute(s -> debitOnce(id, amountCents, currency, idemKey, hash)));
+  }
+
+  private Map<String,Object> debitOnce(String id, long amountCents, String currency, String idemKey, String hash){
     var existing = idem.beginOrGet(idemKey, hash);
     if (existing.isPresent()) return existing.get();
 
-    var hist = store.load("Account", id);
-    if (hist.isEmpty()) throw new IllegalStateException("Account not opened");
-    long balance = computeBalance(hist);
+    var event = new FundsDebited(id, amountCents, currency);
+    var cached = cache.get(id);
+    var state = cached.orElseGet(() -> snapshots.load(id)); // snapshot + tail, not the full history
+    if (cached.isPresent() && amountCents > state.balanceCents()) {
+      // never reject on a cached balance: a credit from elsewhere may not be in it yet
+      var fresh = snapshots.load(id);
+      if (fresh.version() != state.version()) cache.markStale(id);
+      state = fresh;
+    }
+    if (!state.exists()) throw new IllegalStateException("Account not opened");
+    long balance = state.balanceCents();
     if (amountCents > balance) throw new IllegalStateException("Insufficient funds");
 
-    long version = hist.size() + 1L;
-    Map<String,Object> payload = Map.<String,Object>of("accountId", id, "amountCents", amountCents, "currency", currency);
-    append("FundsDebited", id, version, payload, Map.<String,Object>of("idempotencyKey", idemKey));
+    // the balance check only holds if nobody appended since we loaded; for a cached state this
+    // append is also what validates the entry against the stored version
+    long version;
+    try { version = append(event, id, state.version(), Map.<String,Object>of("idempotencyKey", idemKey)); }
+    catch (ConcurrencyConflictException e) {
+      if (cached.isPresent()) cache.markStale(id);
+      throw e;
+    }
+    cache.put(id, snapshots.afterAppend(id, state, version, balance - amountCents));
 
     Map<String,Object> resp = Map.<String,Object>of("status","ok","accountId", id, "version", version, "newBalanceDelta", -amountCents);
     idem.complete(idemKey, resp);
     return resp;
   }
 
-  private void append(String type, String aggId, long version, Map<String,Object> payload, Map<String,Object> meta){
-    store.append("Account", aggId, version, type, payload, meta);
-    Map<String,Object> value = Map.<String,Object>of("eventType", type, "aggregateId", aggId, "version", version,
-                       "payload", payload, "metadata", meta);
-    outbox.stage(TOPIC, aggId, value, Map.<String,Object>of());
-  }
-
-  private static long computeBalance(List<Map<String,Object>> events){
-    long cents = 0;
-    for (var e: events){
-      String t = (String)e.get("event_type");
-      Map<?,?> p = (Map<?,?>) e.get("payload");
-      if ("FundsCredited".equals(t)) cents += ((Number)p.get("amountCents")).longValue();
-      else if ("FundsDebited".equals(t)) cents -= ((Number)p.get("amountCents")).longValue();
-    }
-    return cents;
-  }
-
-  private static String sha256(String s){
-    try {
-      var md = MessageDigest.getInstance("SHA-256");
-      byte[] d = md.digest(s.getBytes(StandardCharsets.UTF_8));
-      StringBuilder sb = new StringBuilder();
-      for (byte b : d) sb.append(String.format("%02x", b));
-      return sb.toString();
-    } catch (Exception e){ throw new RuntimeException(e); }
+  /** Appends at expectedVersion + 1 with its outbox record; throws ConcurrencyConflictException on a lost race. */
+  private long append(LedgerEvent event, String aggId, long expectedVersion, Map<String,Object> meta){
+    var uow = new UnitOfWork(store, outbox);
+    uow.append("Account", aggId, expectedVersion, TOPIC, new NewEvent(event, meta));
+    uow.flush();
+    return uow.version("Account", aggId);
   }
-}
\ No newline at end of file
+}
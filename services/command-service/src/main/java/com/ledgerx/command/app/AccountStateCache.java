@@ -0,0 +1,90 @@
+package com.ledgerx.command.app;
+
+import com.ledgerx.command.app.AccountSnapshots.AccountState;
+import com.ledgerx.command.store.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded LRU of Account state (balance, version, currency) so hot accounts skip the snapshot + tail
+ * load. Entries are written through only after the appending transaction commits, and never move
+ * backwards. An entry is a hint, not a source of truth: debits append at the cached version, so a stale
+ * entry fails the optimistic append instead of approving an overdraft, and a rejection is always
+ * confirmed against the store first.
+ */
+@Component
+public class AccountStateCache {
+  private final boolean enabled;
+  private final Map<String, AccountState> entries;
+  private final Counter hits, misses, evictions, stale;
+
+  public AccountStateCache(MeterRegistry meter,
+                           @Value("${ledgerx.account-cache.enabled:true}") boolean enabled,
+                           @Value("${ledgerx.account-cache.max-size:10000}") int maxSize){
+    this.enabled = enabled;
+    this.hits      = meter.counter("ledgerx.account.cache.hits");
+    this.misses    = meter.counter("ledgerx.account.cache.misses");
+    this.evictions = meter.counter("ledgerx.account.cache.evictions");
+    this.stale     = meter.counter("ledgerx.account.cache.stale");
+    int capacity = Math.max(1, maxSize);
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, AccountState> eldest){
+        if (size() <= capacity) return false;
+        evictions.increment();
+        return true;
+      }
+    };
+    meter.gauge("ledgerx.account.cache.size", this, AccountStateCache::size);
+  }
+
+  public Optional<AccountState> get(String id){
+    if (!enabled) return Optional.empty();
+    AccountState s;
+    synchronized (entries) { s = entries.get(id); }
+    (s == null ? misses : hits).increment();
+    return Optional.ofNullable(s);
+  }
+
+  /** Caches {@code state} once the current transaction commits (immediately without one). */
+  public void put(String id, AccountState state){
+    if (!enabled) return;
+    AfterCommit.run(() -> {
+      synchronized (entries) {
+        entries.merge(id, state, (old, s) -> s.version() > old.version() ? s : old);
+      }
+    });
+  }
+
+  /** Applies a blind credit to the cached entry if it was exactly one version behind, else drops it. */
+  public void advance(String id, long newVersion, long deltaCents){
+    if (!enabled) return;
+    AfterCommit.run(() -> {
+      synchronized (entries) {
+        entries.computeIfPresent(id, (k, old) -> old.version() == newVersion - 1
+            ? new AccountState(newVersion, old.balanceCents() + deltaCents, old.currency(), 0, old.snapshot())
+            : old.version() >= newVersion ? old : null);
+      }
+    });
+  }
+
+  /** Drops an entry found to be behind the store. */
+  public void markStale(String id){
+    if (!enabled) return;
+    stale.increment();
+    invalidate(id);
+  }
+
+  public void invalidate(String id){
+    synchronized (entries) { entries.remove(id); }
+  }
+
+  int size(){
+    synchronized (entries) { return entries.size(); }
+  }
+}
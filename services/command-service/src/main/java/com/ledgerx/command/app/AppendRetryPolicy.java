@@ -0,0 +1,53 @@
+package com.ledgerx.command.app;
+
+import com.ledgerx.command.store.ConcurrencyConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs a read-decide-append step when the append lost an optimistic-concurrency race.
+ * Backoff is exponential with full jitter, capped at {@code max-backoff}. Inside a group-commit batch
+ * the step runs once and a conflict fails it straight away (see {@link GroupCommitter}).
+ */
+@Component
+public class AppendRetryPolicy {
+  private final int maxAttempts;
+  private final Duration backoff;
+  private final Duration maxBackoff;
+  private final Counter retried, exhausted;
+
+  public AppendRetryPolicy(@Value("${ledgerx.append.retry.max-attempts:5}") int maxAttempts,
+                           @Value("${ledgerx.append.retry.backoff:PT0.005S}") Duration backoff,
+                           @Value("${ledgerx.append.retry.max-backoff:PT0.1S}") Duration maxBackoff,
+                           MeterRegistry meter){
+    this.maxAttempts = Math.max(1, maxAttempts); this.backoff = backoff; this.maxBackoff = maxBackoff;
+    this.retried   = meter.counter("ledgerx.append.conflicts", "outcome", "retried");
+    this.exhausted = meter.counter("ledgerx.append.conflicts", "outcome", "exhausted");
+  }
+
+  public <T> T run(Supplier<T> attempt){
+    int attempts = GroupCommitter.inBatch() ? 1 : maxAttempts;
+    for (int i = 1; ; i++) {
+      try {
+        return attempt.get();
+      } catch (ConcurrencyConflictException e) {
+        if (i >= attempts) { exhausted.increment(); throw e; }
+        retried.increment();
+        sleep(i);
+      }
+    }
+  }
+
+  private void sleep(int attempt){
+    long cap = Math.min(maxBackoff.toMillis(), backoff.toMillis() << Math.min(attempt - 1, 16));
+    if (cap <= 0) return;
+    try { Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1)); }
+    catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+  }
+}
@@ -0,0 +1,99 @@
+package com.ledgerx.command.app;
+
+import com.ledgerx.command.events.LedgerEvent.*;
+import com.ledgerx.command.idempotency.IdempotencyRepository;
+import com.ledgerx.command.store.EventStoreRepository;
+import com.ledgerx.command.store.NewEvent;
+import com.ledgerx.command.store.OutboxRepository;
+import com.ledgerx.command.store.UnitOfWork;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transfer engine that debits, credits and records the transfer in one transaction (one commit).
+ * Both account stream heads are row-locked in account-id order before anything is read, so opposite
+ * transfers between the same pair cannot deadlock and the balance check cannot race. Responses match
+ * the saga in {@link TransferService}. Selected with {@code ledgerx.transfer.mode=atomic}.
+ */
+@Service
+public class AtomicTransfers {
+  private final EventStoreRepository store;
+  private final OutboxRepository outbox;
+  private final IdempotencyRepository idem;
+  private final AccountSnapshots snapshots;
+  private final AppendRetryPolicy retry;
+  private final AccountStateCache cache;
+  private final TransactionTemplate tx;
+
+  public AtomicTransfers(EventStoreRepository store, OutboxRepository outbox, IdempotencyRepository idem,
+                         AccountSnapshots snapshots, AppendRetryPolicy retry, AccountStateCache cache,
+                         TransactionTemplate tx){
+    this.store = store; this.outbox = outbox; this.idem = idem;
+    this.snapshots = snapshots; this.retry = retry; this.cache = cache; this.tx = tx;
+  }
+
+  // a conflict can only come from a stream that did not exist when we locked (e.g. a new destination
+  // account or a concurrent duplicate transfer id); the whole transaction is rolled back and re-run.
+  // Inside a caller's transaction the caller owns commit and retry, so it runs as-is.
+  public Map<String,Object> transfer(String transferId, String from, String to, long amountCents,
+                                     String currency, String idemKey, String requestHash){
+    if (TransactionSynchronizationManager.isActualTransactionActive())
+      return inTransaction(transferId, from, to, amountCents, currency, idemKey, requestHash);
+    return retry.run(() -> tx.execute(s -> inTransaction(transferId, from, to, amountCents, currency, idemKey, requestHash)));
+  }
+
+  private Map<String,Object> inTransaction(String transferId, String from, String to, long amountCents,
+                                           String currency, String idemKey, String requestHash){
+    var existing = idem.beginOrGet(idemKey, requestHash);
+    if (existing.isPresent()) return existing.get();
+
+    Map<String,Long> heads = store.lockStreams("Account", List.of(from, to));
+    var uow = new UnitOfWork(store, outbox);
+    long version = store.currentVersion("Transfer", transferId);
+    version = uow.append("Transfer", transferId, version, TransferService.TRANSFER_TOPIC, new NewEvent(
+        new TransferRequested(transferId, from, to, amountCents, currency), Map.<String,Object>of("idempotencyKey", idemKey)));
+
+    String reason = null;
+    var source = loadLocked(from, heads.getOrDefault(from, 0L));
+    if (!heads.containsKey(from) || !source.exists()) reason = "Account not opened";
+    else if (amountCents > source.balanceCents()) reason = "Insufficient funds";
+    if (reason != null) {
+      version = uow.append("Transfer", transferId, version, TransferService.TRANSFER_TOPIC,
+          new NewEvent(new TransferFailed(reason), Map.<String,Object>of()));
+      uow.flush();
+      Map<String,Object> resp = Map.<String,Object>of("status","failed","transferId",transferId,"version",version,"reason",reason);
+      idem.complete(idemKey, resp);
+      return resp;
+    }
+
+    long creditVersion = heads.getOrDefault(to, 0L) + 1;
+    long debitVersion = uow.append("Account", from, source.version(), AccountService.TOPIC, new NewEvent(
+        new FundsDebited(from, amountCents, currency), Map.<String,Object>of("idempotencyKey", transferId + ":debit")));
+    uow.append("Account", to, heads.getOrDefault(to, 0L), AccountService.TOPIC, new NewEvent(
+        new FundsCredited(to, amountCents, currency), Map.<String,Object>of("idempotencyKey", transferId + ":credit")));
+    version = uow.append("Transfer", transferId, version, TransferService.TRANSFER_TOPIC,
+        new NewEvent(new SourceDebited(from, amountCents), Map.<String,Object>of()),
+        new NewEvent(new DestinationCredited(to, amountCents), Map.<String,Object>of()),
+        new NewEvent(new TransferCompleted(), Map.<String,Object>of()));
+    uow.flush();
+    cache.put(from, snapshots.afterAppend(from, source, debitVersion, source.balanceCents() - amountCents));
+    cache.advance(to, creditVersion, amountCents);
+    snapshots.afterBlindAppend(to, creditVersion); // the credit leg does not load the destination, like a credit
+
+    Map<String,Object> resp = Map.<String,Object>of("status","ok","transferId",transferId,"version",version);
+    idem.complete(idemKey, resp);
+    return resp;
+  }
+
+  // the stream head is locked, so a cached entry at exactly that version is current
+  private AccountSnapshots.AccountState loadLocked(String id, long head){
+    var cached = cache.get(id);
+    if (cached.isPresent() && cached.get().version() == head) return cached.get();
+    if (cached.isPresent()) cache.markStale(id);
+    return snapshots.load(id);
+  }
+}
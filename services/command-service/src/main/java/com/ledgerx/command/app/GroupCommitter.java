@@ -0,0 +1,207 @@
+package com.ledgerx.command.app;
+
+import com.ledgerx.command.store.AfterCommit;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Optional group-commit stage for commands. When enabled, callers enqueue a command and block on its
+ * future; a single writer drains the queue in micro-batches (up to {@code max-batch} commands or
+ * {@code max-wait} after the first one) and runs the whole batch in one transaction. Each command runs in
+ * its own savepoint, so a failing command (insufficient funds, conflict, ...) is rolled back and reported
+ * to its caller alone. Futures complete only after the shared commit. Commands reusing an idempotency key
+ * already in the batch wait for the next one. When disabled, {@link #run} executes inline.
+ *
+ * A command in a batch gets one attempt: {@link AppendRetryPolicy} does not back off and re-run inside
+ * the shared transaction ({@link #inBatch}), since every other command of the batch would wait for it;
+ * a lost race fails that command alone. Saga transfers commit step by step and never run in a batch
+ * (see {@link TransferService}).
+ *
+ * A batch holds every lock its commands take until the shared commit, so batches on two instances
+ * could deadlock if they locked the same accounts in opposite orders. Each batch therefore runs its
+ * commands in the order of the account they lock first (the {@code lockKey} passed to {@link #run}), which
+ * rules that out for single-account commands. A transfer's second account can still come later than
+ * another command's; if Postgres picks such a command as the deadlock victim (40P01), only its
+ * savepoint is rolled back, which releases its locks, and it is retried in the next batch, up to
+ * {@link #DEADLOCK_ATTEMPTS} times. Once {@link #stop} is called, commands are rejected rather than queued.
+ */
+@Component
+public class GroupCommitter {
+  private static final Logger log = LoggerFactory.getLogger(GroupCommitter.class);
+  private static final ThreadLocal<Boolean> IN_BATCH = new ThreadLocal<>();
+  static final int DEADLOCK_ATTEMPTS = 3;
+  private static final Comparator<Pending<?>> LOCK_ORDER =
+      Comparator.comparing((Pending<?> p) -> p.lockKey, Comparator.nullsLast(Comparator.naturalOrder()));
+
+  private final boolean enabled;
+  private final int maxBatch;
+  private final Duration maxWait;
+  private final BlockingQueue<Pending<?>> queue;
+  private final ArrayDeque<Pending<?>> carry = new ArrayDeque<>();
+  private final TransactionTemplate tx, nested;
+  private final DistributionSummary batchSize;
+  private final Timer queueWait, commitTimer;
+  private volatile boolean running;
+  private Thread writer;
+
+  private static final class Pending<T> {
+    final String key, lockKey; final Supplier<T> op; final long enqueuedAt = System.nanoTime();
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    T result; RuntimeException error; int attempts;
+    Pending(String key, String lockKey, Supplier<T> op){ this.key = key; this.lockKey = lockKey; this.op = op; }
+    void run(TransactionTemplate nested){
+      // hooks of a command whose savepoint is rolled back must not fire on the shared commit
+      IN_BATCH.set(true);
+      try { result = AfterCommit.scoped(() -> nested.execute(s -> op.get())); } catch (RuntimeException e) { error = e; }
+      finally { IN_BATCH.remove(); }
+    }
+    void complete(){ if (error == null) future.complete(result); else future.completeExceptionally(error); }
+  }
+
+  public GroupCommitter(PlatformTransactionManager txm, MeterRegistry meter,
+                        @Value("${ledgerx.group-commit.enabled:false}") boolean enabled,
+                        @Value("${ledgerx.group-commit.max-batch:64}") int maxBatch,
+                        @Value("${ledgerx.group-commit.max-wait:PT0.002S}") Duration maxWait,
+                        @Value("${ledgerx.group-commit.queue-capacity:10000}") int capacity){
+    this.enabled = enabled; this.maxBatch = Math.max(1, maxBatch); this.maxWait = maxWait;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.tx = new TransactionTemplate(txm);
+    this.nested = new TransactionTemplate(txm);
+    this.nested.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+    this.batchSize   = DistributionSummary.builder("ledgerx.groupcommit.batch.size").publishPercentileHistogram().register(meter);
+    this.queueWait   = Timer.builder("ledgerx.groupcommit.queue.wait").publishPercentileHistogram().register(meter);
+    this.commitTimer = meter.timer("ledgerx.groupcommit.commit.latency");
+    meter.gauge("ledgerx.groupcommit.queue.depth", queue, BlockingQueue::size);
+  }
+
+  @PostConstruct
+  void start(){
+    if (!enabled) return;
+    running = true;
+    writer = Thread.ofPlatform().name("ledgerx-group-commit").daemon().start(this::loop);
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    if (writer != null) writer.join(5_000);
+    if (writer != null && writer.isAlive()) return; // still draining; it completes what it takes
+    for (Pending<?> p; (p = queue.poll()) != null; ) p.future.completeExceptionally(new RejectedExecutionException("group commit stopped"));
+  }
+
+  /** True while the current thread runs a command inside a group-commit batch. */
+  public static boolean inBatch(){ return IN_BATCH.get() != null; }
+
+  /**
+   * Runs {@code op} (which must not manage its own transaction boundaries) in the next group commit,
+   * ordered within the batch by {@code lockKey}, the id of the first account it locks.
+   */
+  public <T> T run(String idemKey, String lockKey, Supplier<T> op){
+    if (!enabled) return op.get();
+    if (!running) throw new RejectedExecutionException("group commit stopped");
+    var p = new Pending<>(idemKey, lockKey, op);
+    if (!queue.offer(p)) throw new RejectedExecutionException("group commit queue full");
+    // stopped meanwhile: if the writer did not take it, nobody will
+    if (!running && queue.remove(p)) throw new RejectedExecutionException("group commit stopped");
+    try {
+      return p.future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) throw re;
+      throw e;
+    }
+  }
+
+  private void loop(){
+    while (running || !queue.isEmpty() || !carry.isEmpty()) {
+      try {
+        List<Pending<?>> batch = nextBatch();
+        if (!batch.isEmpty()) execute(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        log.error("group commit writer failed", e);
+      }
+    }
+  }
+
+  private List<Pending<?>> nextBatch() throws InterruptedException {
+    List<Pending<?>> batch = new ArrayList<>(maxBatch);
+    // carried commands (deadlock victims, repeated keys) first, then the queue; sorted in execute
+    Set<String> keys = new HashSet<>();
+    ArrayDeque<Pending<?>> deferred = new ArrayDeque<>();
+    while (!carry.isEmpty() && batch.size() < maxBatch) admit(carry.poll(), batch, keys, deferred);
+    if (batch.isEmpty()) {
+      Pending<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+      if (first == null) { carry.addAll(deferred); return batch; }
+      admit(first, batch, keys, deferred);
+    }
+    long deadline = batch.get(0).enqueuedAt + maxWait.toNanos();
+    while (batch.size() < maxBatch) {
+      long left = deadline - System.nanoTime();
+      Pending<?> p = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+      if (p == null) break;
+      admit(p, batch, keys, deferred);
+    }
+    carry.addAll(deferred);
+    return batch;
+  }
+
+  private static void admit(Pending<?> p, List<Pending<?>> batch, Set<String> keys, ArrayDeque<Pending<?>> deferred){
+    if (p.key != null && !keys.add(p.key)) deferred.add(p);
+    else batch.add(p);
+  }
+
+  private void execute(List<Pending<?>> batch){
+    long now = System.nanoTime();
+    for (var p : batch) queueWait.record(now - p.enqueuedAt, TimeUnit.NANOSECONDS);
+    batchSize.record(batch.size());
+    batch.sort(LOCK_ORDER);
+    List<Pending<?>> retry = new ArrayList<>();
+    try {
+      commitTimer.record(() -> tx.executeWithoutResult(s -> { for (var p : batch) p.run(nested); }));
+      for (var p : batch) {
+        if (p.error == null || !deadlocked(p.error) || ++p.attempts >= DEADLOCK_ATTEMPTS) continue;
+        p.error = null; // its savepoint was rolled back: nothing of it was committed
+        retry.add(p);
+      }
+    } catch (RuntimeException e) {
+      // the shared commit failed: nobody's writes are durable
+      for (var p : batch) if (p.error == null) p.error = e;
+    }
+    for (var p : batch) if (!retry.contains(p)) p.complete();
+    if (!retry.isEmpty()) log.warn("{} group-commit commands lost a deadlock, retrying them in the next batch", retry.size());
+    for (int i = retry.size() - 1; i >= 0; i--) carry.addFirst(retry.get(i));
+  }
+
+  private static boolean deadlocked(Throwable e){
+    for (Throwable t = e; t != null; t = t.getCause()) if (t instanceof SQLException sql && "40P01".equals(sql.getSQLState())) return true;
+    return false;
+  }
+}
@@ -1,9 +1,19 @@
 package com.ledgerx.command.app;
 
+import com.ledgerx.command.events.LedgerEvent;
+import com.ledgerx.command.events.LedgerEvent.*;
 import com.ledgerx.command.idempotency.IdempotencyRepository;
+import com.ledgerx.command.idempotency.RequestFingerprint;
 import com.ledgerx.command.store.EventStoreRepository;
+import com.ledgerx.command.store.NewEvent;
 import com.ledgerx.command.store.OutboxRepository;
+import com.ledgerx.command.store.StoredEvent;
+import com.ledgerx.command.store.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Map;
@@ -14,68 +24,111 @@ public class TransferService {
   private final OutboxRepository outbox;
   private final IdempotencyRepository idem;
   private final AccountService accounts;
+  private final AtomicTransfers atomic;
+  private final AccountMailboxes mailboxes;
+  private final TransactionTemplate tx;
+  private final boolean atomicMode;
 
-  private static final String TRANSFER_TOPIC = "ledgerx.transfers.events.v1";
+  public static final String TRANSFER_TOPIC = "ledgerx.transfers.events.v1";
+  private static final Logger log = LoggerFactory.getLogger(TransferService.class);
 
   public TransferService(EventStoreRepository store,
                          OutboxRepository outbox,
                          IdempotencyRepository idem,
-                         AccountService accounts) {
-    this.store = store; this.outbox = outbox; this.idem = idem; this.accounts = accounts;
+                         AccountService accounts,
+                         AtomicTransfers atomic,
+                         AccountMailboxes mailboxes,
+                         TransactionTemplate tx,
+                         @Value("${ledgerx.transfer.mode:saga}") String mode,
+                         @Value("${ledgerx.group-commit.enabled:false}") boolean groupCommit) {
+    this.store = store; this.outbox = outbox; this.idem = idem; this.accounts = accounts; this.atomic = atomic;
+    this.mailboxes = mailboxes; this.tx = tx;
+    if (!mode.equals("saga") && !mode.equals("atomic")) throw new IllegalArgumentException("ledgerx.transfer.mode must be saga or atomic: " + mode);
+    this.atomicMode = mode.equals("atomic");
+    if (groupCommit && !atomicMode)
+      log.info("ledgerx.group-commit.enabled applies to account commands only: saga transfers commit step by step and bypass it"
+          + " (set ledgerx.transfer.mode=atomic to batch transfers too)");
   }
 
+  /**
+   * Whether a transfer may run inside a caller's transaction, such as a group-commit batch. Only atomic
+   * transfers can: a saga commits each step itself and must not be wrapped in one.
+   */
+  public boolean joinsCallerTransaction(){ return atomicMode; }
+
   public Map<String,Object> transfer(String transferId, String from, String to, long amountCents,
                                      String currency, String idemKey) {
     if (from.equals(to)) throw new IllegalStateException("from == to");
     if (amountCents <= 0) throw new IllegalStateException("amount must be > 0");
 
-    Map<String,Object> body = Map.<String,Object>of("op","transfer","transferId",transferId,"from",from,"to",to,"amountCents",amountCents,"currency",currency);
-    var existing = idem.beginOrGet(idemKey, sha256(body.toString()));
+    String hash = RequestFingerprint.of("transfer", transferId, from, to, amountCents, currency);
+    if (atomicMode) return atomic.transfer(transferId, from, to, amountCents, currency, idemKey, hash);
+
+    // saga: request, debit, credit and completion each commit on their own
+    var existing = idem.beginOrGet(idemKey, hash);
     if (existing.isPresent()) return existing.get();
 
     try {
-      // 1) Request
-      long v1 = nextVersion(transferId);
-      Map<String,Object> reqPayload = Map.<String,Object>of("transferId", transferId, "from", from, "to", to, "amountCents", amountCents, "currency", currency);
-      appendTransfer("TransferRequested", transferId, v1, reqPayload, Map.<String,Object>of("idempotencyKey", idemKey));
+      // 1) Request. Transfer events are buffered and flushed at each saga boundary, before the next
+      // account step runs, so no debit or credit happens without the transfer event that led to it
+      // being durable; the events between two boundaries share one flush. A conflict at flush means a
+      // concurrent writer on the same transfer id and is surfaced as-is.
+      var uow = new UnitOfWork(store, outbox);
+      long version = store.currentVersion("Transfer", transferId);
+      // a retry after a crash resumes after the last recorded step; the account steps are idempotent
+      List<LedgerEvent> recorded = version == 0 ? List.of() : store.load("Transfer", transferId).stream().map(StoredEvent::event).toList();
+      var request = new TransferRequested(transferId, from, to, amountCents, currency);
+      if (!recorded.isEmpty() && !request.equals(recorded.get(0))) throw new IllegalStateException("transfer " + transferId + " exists with other details");
+      LedgerEvent last = recorded.isEmpty() ? null : recorded.get(recorded.size() - 1);
+      if (last instanceof TransferCompleted || last instanceof TransferFailed) {
+        Map<String,Object> resp = recordedResponse(transferId, version, last);
+        idem.complete(idemKey, resp);
+        return resp;
+      }
+      if (last == null) {
+        version = appendTransfer(uow, request, transferId, version, Map.<String,Object>of("idempotencyKey", idemKey));
+        flush(uow);
+      }
 
       // 2) Debit source
       try {
-        accounts.debit(from, amountCents, currency, transferId + ":debit"); // idempotent
+        mailboxes.call(from, () -> accounts.debit(from, amountCents, currency, transferId + ":debit")); // idempotent
       } catch (IllegalStateException ex) {
         // insufficient funds or not opened → fail
-        long vFail = nextVersion(transferId);
-        appendTransfer("TransferFailed", transferId, vFail, Map.<String,Object>of("reason", ex.getMessage()), Map.<String,Object>of());
-        Map<String,Object> resp = Map.<String,Object>of("status","failed","transferId",transferId,"reason",ex.getMessage());
+        version = appendTransfer(uow, new TransferFailed(ex.getMessage()), transferId, version, Map.<String,Object>of());
+        Map<String,Object> resp = Map.<String,Object>of("status","failed","transferId",transferId,"version",version,"reason",ex.getMessage());
+        flush(uow);
         idem.complete(idemKey, resp);
         return resp;
       }
 
-      long v2 = nextVersion(transferId);
-      appendTransfer("SourceDebited", transferId, v2, Map.<String,Object>of("from", from, "amountCents", amountCents), Map.<String,Object>of());
+      if (!(last instanceof SourceDebited)) {
+        version = appendTransfer(uow, new SourceDebited(from, amountCents), transferId, version, Map.<String,Object>of());
+        flush(uow);
+      }
 
       // 3) Credit destination
       try {
-        accounts.credit(to, amountCents, currency, transferId + ":credit");
+        mailboxes.call(to, () -> accounts.credit(to, amountCents, currency, transferId + ":credit"));
       } catch (Exception ex) {
         // 3b) Compensate: credit source back
-        try { accounts.credit(from, amountCents, currency, transferId + ":comp"); }
+        try { mailboxes.call(from, () -> accounts.credit(from, amountCents, currency, transferId + ":comp")); }
         catch (Exception ignore) { /* best-effort; real system would alert */ }
 
-        long vFail = nextVersion(transferId);
-        appendTransfer("TransferFailed", transferId, vFail, Map.<String,Object>of("reason", "credit_failed:" + ex.getMessage()), Map.<String,Object>of("compensated", true));
-        Map<String,Object> resp = Map.<String,Object>of("status","failed","transferId",transferId,"reason","credit_failed","compensated", true);
+        version = appendTransfer(uow, new TransferFailed("credit_failed:" + ex.getMessage()), transferId, version, Map.<String,Object>of("compensated", true));
+        Map<String,Object> resp = Map.<String,Object>of("status","failed","transferId",transferId,"version",version,"reason","credit_failed","compensated", true);
+        flush(uow);
         idem.complete(idemKey, resp);
         return resp;
       }
 
-      long v3 = nextVersion(transferId);
-      appendTransfer("DestinationCredited", transferId, v3, Map.<String,Object>of("to", to, "amountCents", amountCents), Map.<String,Object>of());
+      version = appendTransfer(uow, new DestinationCredited(to, amountCents), transferId, version, Map.<String,Object>of());
 
-      long v4 = nextVersion(transferId);
-      appendTransfer("TransferCompleted", transferId, v4, Map.<String,Object>of(), Map.<String,Object>of());
+      version = appendTransfer(uow, new TransferCompleted(), transferId, version, Map.<String,Object>of());
 
-      Map<String,Object> resp = Map.<String,Object>of("status","ok","transferId",transferId);
+      // version doubles as a read-your-writes token: GET /api/transfers/{id}?minVersion=
+      Map<String,Object> resp = Map.<String,Object>of("status","ok","transferId",transferId,"version",version);
+      flush(uow);
       idem.complete(idemKey, resp);
       return resp;
 
@@ -85,26 +138,21 @@ public class TransferService {
     }
   }
 
-  private long nextVersion(String transferId){
-    List<Map<String,Object>> hist = store.load("Transfer", transferId);
-    return hist.size() + 1L;
+  /** The response of a saga that finished before a crash lost it. */
+  private static Map<String,Object> recordedResponse(String transferId, long version, LedgerEvent terminal){
+    if (!(terminal instanceof TransferFailed f)) return Map.<String,Object>of("status","ok","transferId",transferId,"version",version);
+    if (f.reason().startsWith("credit_failed:"))
+      return Map.<String,Object>of("status","failed","transferId",transferId,"version",version,"reason","credit_failed","compensated", true);
+    return Map.<String,Object>of("status","failed","transferId",transferId,"version",version,"reason",f.reason());
   }
 
-  private void appendTransfer(String type, String transferId, long version,
-                              Map<String,Object> payload, Map<String,Object> meta){
-    store.append("Transfer", transferId, version, type, payload, meta);
-    Map<String,Object> value = Map.<String,Object>of("eventType", type, "aggregateId", transferId, "version", version,
-        "payload", payload, "metadata", meta);
-    outbox.stage(TRANSFER_TOPIC, transferId, value, Map.<String,Object>of());
+  /** Writes the buffered transfer events and their outbox rows in one transaction. */
+  private void flush(UnitOfWork uow){
+    tx.executeWithoutResult(t -> uow.flush());
   }
 
-  private static String sha256(String input){
-    try {
-      var md = java.security.MessageDigest.getInstance("SHA-256");
-      byte[] hash = md.digest(input.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-      StringBuilder sb = new StringBuilder(hash.length * 2);
-      for (byte b : hash) sb.append(String.format("%02x", b));
-      return sb.toString();
-    } catch (Exception e) { throw new RuntimeException(e); }
+  private static long appendTransfer(UnitOfWork uow, LedgerEvent event, String transferId, long expectedVersion,
+                                     Map<String,Object> meta){
+    return uow.append("Transfer", transferId, expectedVersion, TRANSFER_TOPIC, new NewEvent(event, meta));
   }
-}
\ No newline at end of file
+}
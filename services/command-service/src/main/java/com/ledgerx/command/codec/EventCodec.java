@@ -0,0 +1,290 @@
+package com.ledgerx.command.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ledgerx.command.events.LedgerEvent;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary encoding of outbox event envelopes ({@code eventType, aggregateId, version, payload, metadata})
+ * for Kafka, described by the local schema file {@code schemas/ledgerx-events.v1.schema}. A record is
+ * the schema version byte, the type id, aggregate id and version as varints, a presence bitmap and the
+ * listed payload fields in schema order without names, then any unlisted payload fields and the metadata
+ * as tagged key/value pairs. Topics listed in {@code ledgerx.kafka.binary-topics} are sent this way
+ * with header {@link #HEADER}={@link #BINARY_V1}; records without the header are JSON, so consumers
+ * that read both can be rolled out before a topic is switched.
+ */
+@Component
+public class EventCodec {
+  public static final String HEADER = "ledgerx-encoding";
+  public static final String BINARY_V1 = "bin/1";
+  static final int VERSION = 1;
+
+  private static final int T_NULL = 0, T_STRING = 1, T_LONG = 2, T_TRUE = 3, T_FALSE = 4, T_DOUBLE = 5, T_JSON = 6;
+
+  enum FieldType { STRING, LONG, BOOL }
+  record Field(String name, FieldType type) {}
+  record EventSchema(int id, String type, List<Field> fields) {}
+
+  private final ObjectMapper om;
+  private final Set<String> binaryTopics;
+  private final Map<String, EventSchema> byType = new HashMap<>();
+  private final Map<Integer, EventSchema> byId = new HashMap<>();
+
+  public EventCodec(ObjectMapper om, @Value("${ledgerx.kafka.binary-topics:}") List<String> binaryTopics){
+    this.om = om; this.binaryTopics = new HashSet<>(binaryTopics);
+    for (var s : load("schemas/ledgerx-events.v" + VERSION + ".schema")) { byType.put(s.type(), s); byId.put(s.id(), s); }
+  }
+
+  /** Whether records for {@code topic} are staged and sent in the binary encoding. */
+  public boolean binary(String topic){ return binaryTopics.contains(topic); }
+
+  /** A Kafka record for one outbox row: {@code binary} as-is with the encoding header, otherwise the JSON text. */
+  public static ProducerRecord<String,byte[]> record(String topic, String key, String json, byte[] binary){
+    if (binary == null) return new ProducerRecord<>(topic, key, json.getBytes(StandardCharsets.UTF_8));
+    var rec = new ProducerRecord<String,byte[]>(topic, key, binary);
+    rec.headers().add(HEADER, BINARY_V1.getBytes(StandardCharsets.UTF_8));
+    return rec;
+  }
+
+  /** Encodes an outbox envelope; returns null if {@code value} is not one, so the caller keeps it as JSON. */
+  public byte[] encode(Object value){
+    if (!(value instanceof Map<?,?> env) || !(env.get("eventType") instanceof String type)
+        || !(env.get("aggregateId") instanceof String aggId) || !(env.get("version") instanceof Number version)) return null;
+    Map<?,?> payload = switch (env.get("payload")) {
+      case Map<?,?> m -> m;
+      case LedgerEvent e -> fields(e);
+      case null, default -> Map.of();
+    };
+    Map<?,?> metadata = env.get("metadata") instanceof Map<?,?> m ? m : Map.of();
+
+    var out = new Out();
+    out.write(VERSION);
+    EventSchema schema = byType.get(type);
+    if (schema == null) { out.varint(0); out.string(type); } else out.varint(schema.id());
+    out.string(aggId);
+    out.varint(version.longValue());
+
+    List<Field> fields = schema == null ? List.of() : schema.fields();
+    long present = 0;
+    for (int i = 0; i < fields.size(); i++) if (fits(fields.get(i), payload.get(fields.get(i).name()))) present |= 1L << i;
+    out.varint(present);
+    for (int i = 0; i < fields.size(); i++) {
+      if ((present & (1L << i)) == 0) continue;
+      Object v = payload.get(fields.get(i).name());
+      switch (fields.get(i).type()) {
+        case STRING -> out.string((String) v);
+        case LONG -> out.zigzag(((Number) v).longValue());
+        case BOOL -> out.write((Boolean) v ? 1 : 0);
+      }
+    }
+    int extras = 0;
+    for (var e : payload.entrySet()) if (!listed(fields, present, e.getKey())) extras++;
+    out.varint(extras);
+    for (var e : payload.entrySet()) if (!listed(fields, present, e.getKey())) { out.string(String.valueOf(e.getKey())); tagged(out, e.getValue()); }
+    out.varint(metadata.size());
+    for (var e : metadata.entrySet()) { out.string(String.valueOf(e.getKey())); tagged(out, e.getValue()); }
+    return out.toByteArray();
+  }
+
+  /** Decodes a record back into the envelope map it was encoded from. */
+  public Map<String,Object> decode(byte[] bytes){
+    var in = new In(bytes);
+    int version = in.read();
+    if (version != VERSION) throw new IllegalArgumentException("unsupported event encoding version " + version);
+    int id = (int) in.varint();
+    EventSchema schema = id == 0 ? null : byId.get(id);
+    if (id != 0 && schema == null) throw new IllegalArgumentException("unknown event type id " + id);
+    String type = schema == null ? in.string() : schema.type();
+    Map<String,Object> env = new LinkedHashMap<>();
+    env.put("eventType", type);
+    env.put("aggregateId", in.string());
+    env.put("version", in.varint());
+
+    Map<String,Object> payload = new LinkedHashMap<>();
+    long present = in.varint();
+    List<Field> fields = schema == null ? List.of() : schema.fields();
+    for (int i = 0; i < fields.size(); i++) {
+      if ((present & (1L << i)) == 0) continue;
+      var f = fields.get(i);
+      payload.put(f.name(), switch (f.type()) {
+        case STRING -> in.string();
+        case LONG -> in.zigzag();
+        case BOOL -> in.read() != 0;
+      });
+    }
+    for (long n = in.varint(); n > 0; n--) payload.put(in.string(), tagged(in));
+    Map<String,Object> metadata = new LinkedHashMap<>();
+    for (long n = in.varint(); n > 0; n--) metadata.put(in.string(), tagged(in));
+    env.put("payload", payload);
+    env.put("metadata", metadata);
+    return env;
+  }
+
+  /** A typed event's payload fields, in the order the schema lists them for known types. */
+  private Map<?,?> fields(LedgerEvent e){
+    return switch (e) {
+      case LedgerEvent.AccountOpened a -> payload("accountId", a.accountId(), "currency", a.currency());
+      case LedgerEvent.FundsCredited c -> payload("accountId", c.accountId(), "amountCents", c.amountCents(), "currency", c.currency());
+      case LedgerEvent.FundsDebited d -> payload("accountId", d.accountId(), "amountCents", d.amountCents(), "currency", d.currency());
+      case LedgerEvent.TransferRequested r ->
+          payload("transferId", r.transferId(), "from", r.from(), "to", r.to(), "amountCents", r.amountCents(), "currency", r.currency());
+      case LedgerEvent.SourceDebited s -> payload("from", s.from(), "amountCents", s.amountCents());
+      case LedgerEvent.DestinationCredited d -> payload("to", d.to(), "amountCents", d.amountCents());
+      case LedgerEvent.TransferCompleted c -> Map.of();
+      case LedgerEvent.TransferFailed f -> payload("reason", f.reason());
+      case LedgerEvent.Unknown u -> {
+        try { yield om.readValue(u.json(), Map.class); } catch (Exception ex) { throw new RuntimeException(ex); }
+      }
+    };
+  }
+
+  /** Alternating names and values; values may be null, unlike {@link Map#of}. */
+  private static Map<String,Object> payload(Object... kv){
+    var out = new LinkedHashMap<String,Object>(kv.length);
+    for (int i = 0; i < kv.length; i += 2) out.put((String) kv[i], kv[i + 1]);
+    return out;
+  }
+
+  private static boolean fits(Field f, Object v){
+    return switch (f.type()) {
+      case STRING -> v instanceof String;
+      case LONG -> v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte;
+      case BOOL -> v instanceof Boolean;
+    };
+  }
+
+  private static boolean listed(List<Field> fields, long present, Object key){
+    for (int i = 0; i < fields.size(); i++) if ((present & (1L << i)) != 0 && fields.get(i).name().equals(key)) return true;
+    return false;
+  }
+
+  private void tagged(Out out, Object v){
+    if (v == null) out.write(T_NULL);
+    else if (v instanceof String s) { out.write(T_STRING); out.string(s); }
+    else if (v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte) { out.write(T_LONG); out.zigzag(((Number) v).longValue()); }
+    else if (v instanceof Boolean b) out.write(b ? T_TRUE : T_FALSE);
+    else if (v instanceof Double || v instanceof Float) { out.write(T_DOUBLE); out.fixed64(Double.doubleToLongBits(((Number) v).doubleValue())); }
+    else {
+      try { out.write(T_JSON); out.string(om.writeValueAsString(v)); }
+      catch (Exception e) { throw new RuntimeException(e); }
+    }
+  }
+
+  private Object tagged(In in){
+    int tag = in.read();
+    return switch (tag) {
+      case T_NULL -> null;
+      case T_STRING -> in.string();
+      case T_LONG -> in.zigzag();
+      case T_TRUE -> true;
+      case T_FALSE -> false;
+      case T_DOUBLE -> Double.longBitsToDouble(in.fixed64());
+      case T_JSON -> {
+        try { yield om.readValue(in.string(), Object.class); }
+        catch (Exception e) { throw new RuntimeException(e); }
+      }
+      default -> throw new IllegalArgumentException("unknown value tag " + tag);
+    };
+  }
+
+  static List<EventSchema> load(String resource){
+    var stream = EventCodec.class.getClassLoader().getResourceAsStream(resource);
+    if (stream == null) throw new IllegalStateException("missing event schema " + resource);
+    List<EventSchema> out = new ArrayList<>();
+    try (var reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+      for (String line; (line = reader.readLine()) != null; ) {
+        line = line.strip();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+        String[] parts = line.split("\\s+");
+        List<Field> fields = new ArrayList<>();
+        for (String f : Arrays.copyOfRange(parts, 2, parts.length)) {
+          String[] nt = f.split(":");
+          fields.add(new Field(nt[0], FieldType.valueOf(nt[1].toUpperCase(Locale.ROOT))));
+        }
+        if (fields.size() > 63) throw new IllegalStateException("too many fields for " + parts[1]);
+        out.add(new EventSchema(Integer.parseInt(parts[0]), parts[1], List.copyOf(fields)));
+      }
+    } catch (java.io.IOException e) {
+      throw new RuntimeException(e);
+    }
+    return out;
+  }
+
+  private static final class Out {
+    private byte[] buf = new byte[128];
+    private int len;
+
+    void write(int b){ ensure(1); buf[len++] = (byte) b; }
+
+    void varint(long v){
+      ensure(10);
+      while ((v & ~0x7FL) != 0) { buf[len++] = (byte) ((v & 0x7F) | 0x80); v >>>= 7; }
+      buf[len++] = (byte) v;
+    }
+
+    void zigzag(long v){ varint((v << 1) ^ (v >> 63)); }
+
+    void fixed64(long v){ ensure(8); for (int i = 0; i < 8; i++) buf[len++] = (byte) (v >>> (8 * i)); }
+
+    void string(String s){
+      byte[] b = s.getBytes(StandardCharsets.UTF_8);
+      varint(b.length);
+      ensure(b.length);
+      System.arraycopy(b, 0, buf, len, b.length);
+      len += b.length;
+    }
+
+    private void ensure(int n){ if (len + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n)); }
+
+    byte[] toByteArray(){ return Arrays.copyOf(buf, len); }
+  }
+
+  private static final class In {
+    private final byte[] buf;
+    private int pos;
+
+    In(byte[] buf){ this.buf = buf; }
+
+    int read(){
+      if (pos >= buf.length) throw new IllegalArgumentException("truncated event record");
+      return buf[pos++] & 0xFF;
+    }
+
+    long varint(){
+      long v = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = read();
+        v |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) return v;
+      }
+      throw new IllegalArgumentException("malformed varint");
+    }
+
+    long zigzag(){ long v = varint(); return (v >>> 1) ^ -(v & 1); }
+
+    long fixed64(){ long v = 0; for (int i = 0; i < 8; i++) v |= (long) read() << (8 * i); return v; }
+
+    String string(){
+      int n = (int) varint();
+      if (n < 0 || pos + n > buf.length) throw new IllegalArgumentException("truncated event record");
+      String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+      pos += n;
+      return s;
+    }
+  }
+}
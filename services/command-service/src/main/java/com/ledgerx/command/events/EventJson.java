@@ -0,0 +1,128 @@
+package com.ledgerx.command.events;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.ledgerx.command.events.LedgerEvent.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * Streaming JSON codec for {@link LedgerEvent} payloads. Reading walks the parser's tokens once,
+ * keeps the handful of scalar fields any event has and skips everything else, so replaying a stream
+ * allocates one record per event and no intermediate tree or map.
+ *
+ * Legacy shapes are upcast here, once: the v1 type names ({@code ACCOUNT_CREATED}, {@code CREDITED},
+ * ...) and field names ({@code amount}, {@code curr}), and a missing credit/debit currency, which v1
+ * producers left out for USD.
+ */
+public final class EventJson {
+  private static final JsonFactory JSON = new JsonFactory();
+
+  private EventJson(){}
+
+  /** Maps legacy type names onto the current ones; anything unrecognised is returned as-is. */
+  public static String canonicalType(String type){
+    return switch (type.toUpperCase(Locale.ROOT)) {
+      case "ACCOUNTOPENED", "ACCOUNT_OPENED", "ACCOUNTCREATED", "ACCOUNT_CREATED" -> "AccountOpened";
+      case "FUNDSCREDITED", "FUNDS_CREDITED", "ACCOUNTCREDITED", "ACCOUNT_CREDITED", "CREDITED" -> "FundsCredited";
+      case "FUNDSDEBITED", "FUNDS_DEBITED", "ACCOUNTDEBITED", "ACCOUNT_DEBITED", "DEBITED" -> "FundsDebited";
+      default -> type;
+    };
+  }
+
+  public static LedgerEvent read(String type, String json){
+    try (JsonParser p = JSON.createParser(json)) {
+      p.nextToken();
+      return read(type, p, json);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Reads the payload object the parser is positioned on; {@code raw} is kept for unknown types if given. */
+  static LedgerEvent read(String type, JsonParser p, String raw) throws IOException {
+    var f = new Fields();
+    if (p.currentToken() == JsonToken.START_OBJECT) {
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String name = p.currentName();
+        JsonToken t = p.nextToken();
+        if (t.isStructStart()) { p.skipChildren(); continue; }
+        if (t == JsonToken.VALUE_NULL) continue;
+        switch (name) {
+          case "accountId" -> f.accountId = p.getText();
+          case "transferId" -> f.transferId = p.getText();
+          case "from" -> f.from = p.getText();
+          case "to" -> f.to = p.getText();
+          case "currency", "curr" -> f.currency = p.getText();
+          case "reason" -> f.reason = p.getText();
+          case "amountCents", "amount" -> f.amountCents = t.isNumeric() ? p.getLongValue() : Long.parseLong(p.getText());
+          default -> { }
+        }
+      }
+    } else if (p.currentToken() != null && p.currentToken().isStructStart()) {
+      p.skipChildren();
+    }
+    return f.toEvent(canonicalType(type), raw);
+  }
+
+  public static String write(LedgerEvent e){
+    var out = new StringWriter(64);
+    try (JsonGenerator g = JSON.createGenerator(out)) {
+      write(e, g);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return out.toString();
+  }
+
+  static void write(LedgerEvent e, JsonGenerator g) throws IOException {
+    if (e instanceof Unknown u) { g.writeRawValue(u.json()); return; }
+    g.writeStartObject();
+    switch (e) {
+      case AccountOpened a -> { g.writeStringField("accountId", a.accountId()); g.writeStringField("currency", a.currency()); }
+      case FundsCredited c -> { g.writeStringField("accountId", c.accountId()); g.writeNumberField("amountCents", c.amountCents()); g.writeStringField("currency", c.currency()); }
+      case FundsDebited d -> { g.writeStringField("accountId", d.accountId()); g.writeNumberField("amountCents", d.amountCents()); g.writeStringField("currency", d.currency()); }
+      case TransferRequested r -> {
+        g.writeStringField("transferId", r.transferId()); g.writeStringField("from", r.from()); g.writeStringField("to", r.to());
+        g.writeNumberField("amountCents", r.amountCents()); g.writeStringField("currency", r.currency());
+      }
+      case SourceDebited s -> { g.writeStringField("from", s.from()); g.writeNumberField("amountCents", s.amountCents()); }
+      case DestinationCredited d -> { g.writeStringField("to", d.to()); g.writeNumberField("amountCents", d.amountCents()); }
+      case TransferCompleted c -> { }
+      case TransferFailed f -> g.writeStringField("reason", f.reason());
+      case Unknown u -> throw new IllegalStateException("unreachable");
+    }
+    g.writeEndObject();
+  }
+
+  /** Lets any ObjectMapper write events (e.g. inside staged outbox envelopes). */
+  public static final class Serializer extends JsonSerializer<LedgerEvent> {
+    @Override public void serialize(LedgerEvent e, JsonGenerator g, SerializerProvider p) throws IOException { write(e, g); }
+  }
+
+  private static final class Fields {
+    String accountId, transferId, from, to, currency, reason;
+    long amountCents;
+
+    LedgerEvent toEvent(String type, String raw){
+      return switch (type) {
+        case "AccountOpened" -> new AccountOpened(accountId, currency);
+        case "FundsCredited" -> new FundsCredited(accountId, amountCents, currency == null ? "USD" : currency);
+        case "FundsDebited" -> new FundsDebited(accountId, amountCents, currency == null ? "USD" : currency);
+        case "TransferRequested" -> new TransferRequested(transferId, from, to, amountCents, currency);
+        case "SourceDebited" -> new SourceDebited(from, amountCents);
+        case "DestinationCredited" -> new DestinationCredited(to, amountCents);
+        case "TransferCompleted" -> new TransferCompleted();
+        case "TransferFailed" -> new TransferFailed(reason);
+        default -> new Unknown(type, raw == null ? "{}" : raw);
+      };
+    }
+  }
+}
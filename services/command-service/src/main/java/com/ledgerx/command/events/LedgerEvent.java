@@ -0,0 +1,29 @@
+package com.ledgerx.command.events;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Payloads of the events in the Account and Transfer streams. The record name is the stored
+ * {@code event_type}; the components are the payload fields. {@link EventJson} reads and writes them
+ * without building a tree, and upcasts legacy shapes when reading. Any ObjectMapper writes them
+ * through EventJson too, so staged envelopes and the event store agree on the payload shape.
+ */
+@JsonSerialize(using = EventJson.Serializer.class)
+public sealed interface LedgerEvent {
+
+  /** The stored {@code event_type}. */
+  default String type(){ return getClass().getSimpleName(); }
+
+  record AccountOpened(String accountId, String currency) implements LedgerEvent {}
+  record FundsCredited(String accountId, long amountCents, String currency) implements LedgerEvent {}
+  record FundsDebited(String accountId, long amountCents, String currency) implements LedgerEvent {}
+
+  record TransferRequested(String transferId, String from, String to, long amountCents, String currency) implements LedgerEvent {}
+  record SourceDebited(String from, long amountCents) implements LedgerEvent {}
+  record DestinationCredited(String to, long amountCents) implements LedgerEvent {}
+  record TransferCompleted() implements LedgerEvent {}
+  record TransferFailed(String reason) implements LedgerEvent {}
+
+  /** An event type this build does not know; its payload is kept verbatim. */
+  record Unknown(String type, String json) implements LedgerEvent {}
+}
@@ -2,9 +2,20 @@ package com.ledgerx.command.idempotency;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.ledgerx.command.store.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.List;
@@ -12,10 +23,25 @@ import java.util.List;
 @Repository
 public class IdempotencyRepository {
   private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
   private final ObjectMapper om;
+  private final Map<String, Completed> completed;
+  private final Counter localReplays, dbReplays;
+  private final int retentionDays;
 
-  public IdempotencyRepository(JdbcTemplate jdbc, ObjectMapper om){
-    this.jdbc = jdbc; this.om = om;
+  /** A finished request as seen by this process; responses are immutable maps and can be shared. */
+  private record Completed(String requestHash, Map<String,Object> response, LocalDate createdOn) {}
+
+  public IdempotencyRepository(JdbcTemplate jdbc, TransactionTemplate tx, ObjectMapper om, MeterRegistry meter,
+                               @Value("${ledgerx.idempotency.replay-cache-size:10000}") int replayCacheSize,
+                               @Value("${ledgerx.idempotency.retention-days:7}") int retentionDays){
+    this.jdbc = jdbc; this.tx = tx; this.om = om; this.retentionDays = Math.max(1, retentionDays);
+    int capacity = Math.max(0, replayCacheSize);
+    this.completed = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, Completed> eldest){ return size() > capacity; }
+    };
+    this.localReplays = meter.counter("ledgerx.idempotency.replays", "source", "local");
+    this.dbReplays    = meter.counter("ledgerx.idempotency.replays", "source", "db");
   }
 
   /**
@@ -24,31 +50,125 @@ public class IdempotencyRepository {
    *   - if stored response is not null: return it (idempotent replay)
    *   - if stored response is null: allow retry (return empty so caller can process again)
    *     This handles previous crashes between reserve and complete.
+   * Responses completed by this process are replayed from memory without touching Postgres.
+   * Keys are honoured for {@code retention-days} full UTC days after the day they were first seen
+   * (see {@link IdempotencyRetention}); an older key is treated as new whether or not its partition has
+   * been dropped yet.
    */
   public Optional<Map<String,Object>> beginOrGet(String idemKey, String requestHash){
+    Completed local;
+    synchronized (completed) { local = completed.get(idemKey); }
+    if (local != null && local.createdOn().isBefore(windowStart())) {
+      synchronized (completed) { completed.remove(idemKey); }
+      local = null;
+    }
+    if (local != null) {
+      checkHash(requestHash, local.requestHash(), true);
+      localReplays.increment();
+      return Optional.of(local.response());
+    }
+
+    List<Map<String,Object>> rows = tx.execute(s -> reserve(idemKey, requestHash));
+    if (rows == null || rows.isEmpty()) return Optional.empty(); // should not happen
+
+    Map<String,Object> row = rows.get(0);
+    String storedHash = (String) row.get("request_hash");
+    String respJson = (String) row.get("response");
+    checkHash(requestHash, storedHash, respJson != null);
+    if (respJson == null) {
+      // Reserved now, or a previous attempt didn't finish; either way the caller proceeds
+      return Optional.empty();
+    }
+    Map<String,Object> parsed = parse(respJson);
+    remember(idemKey, new Completed(storedHash, parsed, createdOn(row)));
+    dbReplays.increment();
+    return Optional.of(parsed);
+  }
+
+  /**
+   * Reserve-or-return: the stored row if the key is live, else the reserved row. The primary key is
+   * per day, so two first requests for a key either side of UTC midnight would both insert; the
+   * transaction-scoped advisory lock orders them, and because it is taken in its own statement the
+   * window lookup that follows sees the row the other one committed, whichever day it landed on.
+   * Joins the caller's transaction when there is one, so the lock is held until that commits. Outside a
+   * transaction each statement would commit on its own and release the lock before the insert, so that
+   * is refused rather than run unordered.
+   */
+  private List<Map<String,Object>> reserve(String idemKey, String requestHash){
+    if (!TransactionSynchronizationManager.isActualTransactionActive())
+      throw new IllegalTransactionStateException("idempotency reservation needs a transaction to hold its advisory lock");
+    jdbc.query("SELECT pg_advisory_xact_lock(hashtextextended(?, 0))", (RowCallbackHandler) rs -> {}, idemKey);
+    List<Map<String,Object>> rows = jdbc.queryForList("""
+        WITH prior AS (
+          SELECT request_hash, response::text AS response, created_on FROM idempotency_keys
+          WHERE idem_key=? AND created_on >= (NOW() AT TIME ZONE 'UTC')::date - ?::int
+          ORDER BY created_on LIMIT 1
+        ), ins AS (
+          INSERT INTO idempotency_keys(idem_key, request_hash, response)
+          SELECT ?, ?, NULL WHERE NOT EXISTS (SELECT 1 FROM prior)
+          ON CONFLICT (idem_key, created_on) DO NOTHING
+          RETURNING request_hash, created_on
+        )
+        SELECT request_hash, NULL::text AS response, created_on FROM ins
+        UNION ALL
+        SELECT request_hash, response, created_on FROM prior
+      """, idemKey, retentionDays, idemKey, requestHash);
+    if (!rows.isEmpty()) return rows;
+    // the conflicting row was committed after this statement's snapshot was taken; read it now
+    return jdbc.queryForList("""
+        SELECT request_hash, response::text AS response, created_on FROM idempotency_keys
+        WHERE idem_key=? AND created_on >= (NOW() AT TIME ZONE 'UTC')::date - ?::int
+        ORDER BY created_on LIMIT 1
+      """, idemKey, retentionDays);
+  }
+
+  public void complete(String idemKey, Map<String,Object> response){
+    List<Map<String,Object>> rows;
     try {
-      // Reserve without throwing on duplicates; creates the row if new.
-      jdbc.update("""
-        INSERT INTO idempotency_keys(idem_key, request_hash, response)
-        VALUES (?,?, NULL)
-        ON CONFLICT (idem_key) DO NOTHING
-      """, idemKey, requestHash);
+      rows = jdbc.queryForList("""
+        UPDATE idempotency_keys
+        SET response = ?::jsonb
+        WHERE idem_key = ? AND created_on >= (NOW() AT TIME ZONE 'UTC')::date - ?::int
+          AND response IS NULL
+        RETURNING request_hash, created_on
+      """, om.writeValueAsString(response), idemKey, retentionDays);
+    } catch (Exception e){
+      throw new RuntimeException(e);
+    }
+    if (rows.isEmpty()) return; // already completed by an earlier attempt
+    var done = new Completed((String) rows.get(0).get("request_hash"), response, createdOn(rows.get(0)));
+    // only cache what is durable: a rolled-back completion must stay retryable
+    AfterCommit.run(() -> remember(idemKey, done));
+  }
+
+  private void remember(String idemKey, Completed done){
+    synchronized (completed) { completed.put(idemKey, done); }
+  }
 
-      // Load current state for this key
-      List<Map<String,Object>> rows = jdbc.queryForList(
-        "SELECT request_hash, response::text AS response FROM idempotency_keys WHERE idem_key=?", idemKey);
-      if (rows.isEmpty()) return Optional.empty(); // should not happen
+  private LocalDate windowStart(){
+    return LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+  }
 
-      Map<String,Object> row = rows.get(0);
-      String storedHash = (String) row.get("request_hash");
-      if (!requestHash.equals(storedHash)) {
-        throw new IllegalStateException("Idempotency key reuse with different payload");
-      }
-      String respJson = (String) row.get("response");
-      if (respJson == null) {
-        // Previous attempt didn't finish; allow retry to proceed
-        return Optional.empty();
-      }
+  private static LocalDate createdOn(Map<String,Object> row){
+    return ((java.sql.Date) row.get("created_on")).toLocalDate();
+  }
+
+  /**
+   * A key reserved before fingerprints were versioned cannot vouch for the payload. Its completed
+   * response is still replayed, so a retry that spans the deploy gets its answer until the key leaves the
+   * retention window; an unfinished one is refused rather than run again with a payload it cannot check.
+   */
+  private static void checkHash(String requestHash, String storedHash, boolean completed){
+    if (requestHash.equals(storedHash)) return;
+    boolean legacy = RequestFingerprint.isLegacy(storedHash);
+    if (legacy && completed) return;
+    throw new IllegalStateException(legacy
+        ? "Idempotency key reuse; stored request predates fingerprints and cannot be verified"
+        : "Idempotency key reuse with different payload");
+  }
+
+  private Map<String,Object> parse(String respJson){
+    try {
       Map<String,Object> parsed = om.readValue(respJson, new TypeReference<Map<String,Object>>() {});
       // Normalize numeric fields so Map.equals works across stored vs live responses
       Object v = parsed.get("version");
@@ -59,21 +179,9 @@ public class IdempotencyRepository {
       if (d instanceof Number num2 && !(num2 instanceof Long)) {
         parsed.put("newBalanceDelta", num2.longValue());
       }
-      return Optional.of(parsed);
+      return Map.copyOf(parsed);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
-
-  public void complete(String idemKey, Map<String,Object> response){
-    try {
-      jdbc.update("""
-        UPDATE idempotency_keys
-        SET response = ?::jsonb
-        WHERE idem_key = ? AND response IS NULL
-      """, om.writeValueAsString(response), idemKey);
-    } catch (Exception e){
-      throw new RuntimeException(e);
-    }
-  }
-}
\ No newline at end of file
+}
@@ -0,0 +1,106 @@
+package com.ledgerx.command.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the daily partitions of {@code idempotency_keys} (V14) in shape: creates the next few days
+ * ahead of time and detaches and drops every partition whose whole day is older than
+ * {@code retention-days}, instead of deleting rows one by one. DDL runs with a short lock timeout so a
+ * busy table is retried on the next run rather than stalling requests. Rows that ended up in the
+ * default partition are moved into their day's partition when it is created late, and otherwise are
+ * the only ones ever deleted row by row.
+ */
+@Component
+@ConditionalOnProperty(name = "ledgerx.idempotency.retention.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyRetention {
+  private static final Logger log = LoggerFactory.getLogger(IdempotencyRetention.class);
+  static final String PARTITION_PREFIX = "idempotency_keys_p";
+  private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final int retentionDays;
+  private final int daysAhead;
+  private final Counter dropped;
+
+  public IdempotencyRetention(JdbcTemplate jdbc, TransactionTemplate tx, MeterRegistry meter,
+                              @Value("${ledgerx.idempotency.retention-days:7}") int retentionDays,
+                              @Value("${ledgerx.idempotency.retention.days-ahead:3}") int daysAhead){
+    this.jdbc = jdbc; this.tx = tx;
+    this.retentionDays = Math.max(1, retentionDays); this.daysAhead = Math.max(1, daysAhead);
+    this.dropped = meter.counter("ledgerx.idempotency.partitions.dropped");
+  }
+
+  @Scheduled(initialDelay = 0, fixedDelayString = "${ledgerx.idempotency.retention.interval:PT1H}")
+  public void run(){
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    for (int i = 0; i <= daysAhead; i++) create(today.plusDays(i));
+
+    LocalDate windowStart = today.minusDays(retentionDays);
+    int droppedNow = 0;
+    for (String name : partitions()) {
+      LocalDate day = LocalDate.parse(name.substring(PARTITION_PREFIX.length()), DAY);
+      if (day.isBefore(windowStart) && drop(name)) droppedNow++;
+    }
+    int purged = jdbc.update("DELETE FROM idempotency_keys_default WHERE created_on < ?", windowStart);
+    if (droppedNow > 0 || purged > 0)
+      log.info("idempotency retention: dropped {} partitions, purged {} default rows before {}", droppedNow, purged, windowStart);
+  }
+
+  private List<String> partitions(){
+    return jdbc.queryForList("""
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        JOIN pg_class p ON p.oid = i.inhparent
+        WHERE p.relname = 'idempotency_keys' AND c.relname ~ '^idempotency_keys_p[0-9]{8}$'
+        ORDER BY c.relname
+      """, String.class);
+  }
+
+  private void create(LocalDate day){
+    String name = PARTITION_PREFIX + day.format(DAY);
+    if (Boolean.TRUE.equals(jdbc.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name))) return;
+    // If the job was down, the day's rows are in the default partition and CREATE ... PARTITION OF
+    // would fail on them; build the table, move them in and attach it, all in one transaction.
+    ddl("create " + name,
+        "CREATE TABLE %s (LIKE idempotency_keys INCLUDING DEFAULTS INCLUDING CONSTRAINTS)".formatted(name),
+        "INSERT INTO %s SELECT * FROM idempotency_keys_default WHERE created_on = '%s'".formatted(name, day),
+        "DELETE FROM idempotency_keys_default WHERE created_on = '%s'".formatted(day),
+        "ALTER TABLE idempotency_keys ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')".formatted(name, day, day.plusDays(1)));
+  }
+
+  private boolean drop(String name){
+    // one transaction, so a failure never leaves a detached table behind
+    boolean ok = ddl("drop " + name, "ALTER TABLE idempotency_keys DETACH PARTITION " + name, "DROP TABLE " + name);
+    if (ok) dropped.increment();
+    return ok;
+  }
+
+  // names are built from dates only, so the statements are safe to format
+  private boolean ddl(String what, String... statements){
+    try {
+      tx.executeWithoutResult(s -> {
+        jdbc.execute("SET LOCAL lock_timeout = '2s'");
+        for (String sql : statements) jdbc.execute(sql);
+      });
+      return true;
+    } catch (RuntimeException e) {
+      log.warn("idempotency retention: {} failed, will retry: {}", what, e.toString());
+      return false;
+    }
+  }
+}
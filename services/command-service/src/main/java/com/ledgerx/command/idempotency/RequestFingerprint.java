@@ -0,0 +1,44 @@
+package com.ledgerx.command.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Canonical request hash for idempotency checks. Callers pass the operation and its fields in a fixed
+ * order, so the result does not depend on map iteration order; each field is length-prefixed so
+ * ("ab","c") and ("a","bc") differ, and null is encoded without a length so it differs from "".
+ * Hashes carry a {@code f1:} prefix so rows written with the old {@code sha256(Map.toString())}
+ * scheme can be recognised.
+ */
+public final class RequestFingerprint {
+  static final String PREFIX = "f1:";
+  private static final HexFormat HEX = HexFormat.of();
+  private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+    try { return MessageDigest.getInstance("SHA-256"); }
+    catch (NoSuchAlgorithmException e) { throw new RuntimeException(e); }
+  });
+
+  private RequestFingerprint(){}
+
+  public static String of(String op, Object... fields){
+    StringBuilder sb = new StringBuilder(64);
+    append(sb, op);
+    for (Object f : fields) {
+      if (f == null) sb.append("-;");
+      else append(sb, f.toString());
+    }
+    byte[] d = SHA256.get().digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+    return PREFIX + HEX.formatHex(d);
+  }
+
+  /** True for hashes stored before fingerprints were versioned; those cannot be compared with a request. */
+  static boolean isLegacy(String hash){
+    return !hash.startsWith(PREFIX);
+  }
+
+  private static void append(StringBuilder sb, String s){
+    sb.append(s.length()).append(':').append(s).append(';');
+  }
+}
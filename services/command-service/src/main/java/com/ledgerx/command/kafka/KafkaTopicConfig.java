@@ -1,25 +1,38 @@
 package com.ledgerx.command.kafka;
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
 
+/**
+ * The event topics. KafkaAdmin ({@code spring.kafka.admin.auto-create}) creates them at startup with
+ * {@code ledgerx.kafka.partitions}, and adds partitions to an existing topic when the setting is raised;
+ * it cannot remove any. Where topics are managed outside the service instead, set auto-create to false
+ * and create or resize them by hand, e.g. {@code rpk topic add-partitions ledgerx.accounts.events.v2 --num 12}.
+ *
+ * Events are keyed by aggregate id, so a fixed partition count keeps an aggregate on one partition. Adding
+ * partitions moves some aggregates, and their next events can be consumed before the older ones still
+ * queued on the old partition. The projections hold such events until the missing versions arrive; for
+ * other consumers, resize drained: stop the outbox publishers ({@code ledgerx.outbox.enabled=false}),
+ * wait until every consumer group's lag is zero, raise the setting (or add the partitions), then restart.
+ */
 @Configuration
 public class KafkaTopicConfig {
 
   @Bean
-  public NewTopic accountsTopicV2() {
+  public NewTopic accountsTopicV2(@Value("${ledgerx.kafka.partitions.accounts:1}") int partitions) {
     return TopicBuilder.name("ledgerx.accounts.events.v2")
-        .partitions(1)
+        .partitions(partitions)
         .replicas(1)
         .build();
   }
 
   @Bean
-  public NewTopic transfersTopicV1() {
+  public NewTopic transfersTopicV1(@Value("${ledgerx.kafka.partitions.transfers:1}") int partitions) {
     return TopicBuilder.name("ledgerx.transfers.events.v1")
-        .partitions(1)
+        .partitions(partitions)
         .replicas(1)
         .build();
   }
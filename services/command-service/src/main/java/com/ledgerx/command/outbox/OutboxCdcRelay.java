@@ -0,0 +1,317 @@
+package com.ledgerx.command.outbox;
+
+import com.ledgerx.command.outbox.PgOutputDecoder.Begin;
+import com.ledgerx.command.outbox.PgOutputDecoder.Commit;
+import com.ledgerx.command.outbox.PgOutputDecoder.Insert;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import com.ledgerx.command.codec.EventCodec;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Outbox relay that tails the WAL instead of querying the outbox table. It reads inserts into
+ * {@code outbox} from a pgoutput logical replication slot through the publication created in V16,
+ * one source transaction at a time. It sends each transaction's rows in commit order, waits for every
+ * ack, and only then confirms the transaction's end LSN to the slot. There is no polling, no
+ * {@code sent_at} update and no backlog scan; rows relayed this way keep {@code sent_at} NULL.
+ *
+ * A restart resumes at the last confirmed LSN, so nothing is lost. A clean stop only happens between
+ * messages, after the last published transaction was confirmed, so nothing is re-sent. A crash or a
+ * failed send between the first ack and the confirm re-sends that one transaction, so delivery is
+ * at least once, as in the poll mode: the records carry the same {@code ledgerx-outbox-id} header, and
+ * the query-side projections drop re-sent events as at or below their {@code last_applied_version}.
+ * A transaction that keeps failing is retried with the poll mode's backoff ({@code ledgerx.outbox.retry.*});
+ * on its last attempt its rows are sent one by one and those that still fail move to
+ * {@code outbox_dead_letters}, so the slot moves on instead of restarting at the same LSN forever.
+ * A slot has one active reader at a time, so with several instances one relays and the others keep
+ * retrying to attach. Selected with {@code ledgerx.outbox.mode=cdc}; needs {@code wal_level=logical}
+ * and a role with REPLICATION.
+ */
+@Component
+@ConditionalOnProperty(name = "ledgerx.outbox.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnProperty(name = "ledgerx.outbox.mode", havingValue = "cdc")
+public class OutboxCdcRelay {
+  private static final Logger log = LoggerFactory.getLogger(OutboxCdcRelay.class);
+  static final String PUBLICATION = "ledgerx_outbox";
+  static final String ID_HEADER = "ledgerx-outbox-id";
+  private static final int BACKFILL_CHUNK = 1_000;
+  private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long RECORD_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate snapshotTx;
+  private final KafkaTemplate<String,byte[]> kafka;
+  private final MeterRegistry registry;
+  private final Timer publishTimer, endToEndTimer;
+  private final String url, username, password, slot;
+  private final Duration sendTimeout, backoff, maxBackoff;
+  private final int maxAttempts;
+  private final AtomicLong unsentGauge;
+  private final Counter quarantined;
+  private volatile boolean running;
+  private Thread thread;
+  // the source transaction that failed to send, and how often; kept across restarts of the stream
+  private long failingLsn;
+  private int failingAttempts;
+
+  public OutboxCdcRelay(JdbcTemplate jdbc, PlatformTransactionManager txm, KafkaTemplate<String,byte[]> kafka, MeterRegistry meter,
+                        @Value("${spring.datasource.url}") String url,
+                        @Value("${spring.datasource.username:}") String username,
+                        @Value("${spring.datasource.password:}") String password,
+                        @Value("${ledgerx.outbox.cdc.slot:ledgerx_outbox}") String slot,
+                        @Value("${ledgerx.outbox.send-timeout:PT12S}") Duration sendTimeout,
+                        @Value("${ledgerx.outbox.retry.max-attempts:10}") int maxAttempts,
+                        @Value("${ledgerx.outbox.retry.backoff:PT1S}") Duration backoff,
+                        @Value("${ledgerx.outbox.retry.max-backoff:PT5M}") Duration maxBackoff){
+    this.jdbc = jdbc; this.kafka = kafka; this.registry = meter;
+    this.snapshotTx = new TransactionTemplate(txm);
+    this.snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    this.snapshotTx.setReadOnly(true);
+    this.url = url; this.username = username; this.password = password; this.slot = slot;
+    this.sendTimeout = sendTimeout;
+    this.maxAttempts = Math.max(1, maxAttempts); this.backoff = backoff; this.maxBackoff = maxBackoff;
+    this.publishTimer = meter.timer("ledgerx.outbox.publish.latency");
+    this.endToEndTimer = meter.timer("ledgerx.outbox.end_to_end.latency");
+    this.unsentGauge = meter.gauge("ledgerx.outbox.unsent", new AtomicLong(0)); // newest staged id - relayed id
+    this.quarantined = meter.counter("ledgerx.outbox.quarantined");
+  }
+
+  @PostConstruct
+  void start(){
+    running = true;
+    thread = Thread.ofPlatform().name("ledgerx-outbox-cdc").daemon().start(this::loop);
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false; // the relay finishes the message in hand, so an acked transaction is confirmed first
+    if (thread != null) thread.join(sendTimeout.toMillis() + 5_000);
+  }
+
+  private void loop(){
+    while (running) {
+      try {
+        ensureSlot();
+        relay();
+      } catch (Exception e) {
+        if (!running) return;
+        log.warn("outbox CDC relay stopped, restarting from the last confirmed LSN: {}", e.toString());
+        try { Thread.sleep(retryDelay().toMillis()); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); return; }
+      }
+    }
+  }
+
+  /**
+   * Creates the slot on first use and backfills rows the poll publisher left unsent. The backfill reads
+   * the snapshot exported with the slot, so it covers exactly the rows committed before the slot's
+   * starting point. If a backfill did not finish, the slot has not relayed anything yet (relaying only
+   * starts afterwards), so it is dropped and the whole step redone.
+   */
+  private void ensureSlot() throws Exception {
+    Integer n = jdbc.queryForObject("SELECT COUNT(*) FROM pg_replication_slots WHERE slot_name=?", Integer.class, slot);
+    boolean slotExists = n != null && n > 0;
+    List<Map<String,Object>> state = jdbc.queryForList("SELECT backfilled_at FROM outbox_relay_slots WHERE slot_name=?", slot);
+    if (slotExists && !state.isEmpty() && state.get(0).get("backfilled_at") != null) return;
+
+    if (slotExists) {
+      log.warn("replication slot {} was never backfilled, recreating it", slot);
+      jdbc.queryForList("SELECT pg_drop_replication_slot(?)", slot);
+    }
+    jdbc.update("""
+      INSERT INTO outbox_relay_slots(slot_name) VALUES (?)
+      ON CONFLICT (slot_name) DO UPDATE SET backfilled_at = NULL
+    """, slot);
+    try (Connection repl = replicationConnection()) {
+      var info = repl.unwrap(PGConnection.class).getReplicationAPI().createReplicationSlot().logical()
+          .withSlotName(slot).withOutputPlugin("pgoutput").make();
+      List<Map<String,Object>> backlog = snapshotTx.execute(s -> {
+        jdbc.execute("SET TRANSACTION SNAPSHOT '" + info.getSnapshotName() + "'");
+        return jdbc.queryForList("SELECT id, topic, key, value::text AS value, value_bin FROM outbox WHERE sent_at IS NULL ORDER BY id");
+      });
+      log.info("created logical replication slot {}, backfilling {} unsent outbox rows", slot, backlog.size());
+      for (int i = 0; i < backlog.size(); i += BACKFILL_CHUNK) {
+        var chunk = backlog.subList(i, Math.min(backlog.size(), i + BACKFILL_CHUNK));
+        send(chunk);
+        jdbc.update(con -> {
+          var ps = con.prepareStatement("UPDATE outbox SET sent_at=NOW(), attempts=attempts+1 WHERE id = ANY(?)");
+          ps.setArray(1, con.createArrayOf("bigint", chunk.stream().map(r -> r.get("id")).toArray()));
+          return ps;
+        });
+      }
+    }
+    jdbc.update("UPDATE outbox_relay_slots SET backfilled_at=NOW() WHERE slot_name=?", slot);
+  }
+
+  private Connection replicationConnection() throws Exception {
+    Properties props = new Properties();
+    PGProperty.USER.set(props, username);
+    PGProperty.PASSWORD.set(props, password);
+    PGProperty.ASSUME_MIN_SERVER_VERSION.set(props, "10");
+    PGProperty.REPLICATION.set(props, "database");
+    PGProperty.PREFER_QUERY_MODE.set(props, "simple");
+    return DriverManager.getConnection(url, props);
+  }
+
+  private void relay() throws Exception {
+    try (Connection c = replicationConnection()) {
+      PGReplicationStream stream = c.unwrap(PGConnection.class).getReplicationAPI()
+          .replicationStream().logical()
+          .withSlotName(slot)
+          .withSlotOption("proto_version", 1)
+          .withSlotOption("publication_names", PUBLICATION)
+          .withStatusInterval(10, TimeUnit.SECONDS)
+          .start();
+      var decoder = new PgOutputDecoder();
+      List<Map<String,?>> txRows = new ArrayList<>();
+      long relayedId = 0, recordedAt = 0;
+      while (running) {
+        var buf = stream.readPending();
+        if (buf == null) { LockSupport.parkNanos(POLL_NANOS); continue; }
+        var msg = decoder.decode(buf);
+        if (msg instanceof Begin) txRows.clear();
+        else if (msg instanceof Insert ins && ins.table().endsWith(".outbox")) txRows.add(ins.columns());
+        else if (msg instanceof Commit commit) {
+          if (!txRows.isEmpty()) {
+            deliver(commit.endLsn(), txRows);
+            long nowMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+            endToEndTimer.record(Math.max(0, nowMicros - commit.commitTimeMicros()), TimeUnit.MICROSECONDS);
+          }
+          var lsn = LogSequenceNumber.valueOf(commit.endLsn());
+          stream.setAppliedLSN(lsn);
+          stream.setFlushedLSN(lsn);
+          stream.forceUpdateStatus();
+          for (var cols : txRows) relayedId = Math.max(relayedId, Long.parseLong((String) cols.get("id")));
+          txRows.clear();
+          if (relayedId > 0 && System.nanoTime() - recordedAt > RECORD_NANOS) {
+            recordRelayed(relayedId);
+            recordedAt = System.nanoTime();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends one source transaction's rows, counting the failures of a transaction that does not get
+   * through. On its last attempt the rows are sent one at a time and the ones that fail are quarantined.
+   */
+  private void deliver(long lsn, List<Map<String,?>> rows) throws Exception {
+    if (lsn == failingLsn && failingAttempts >= maxAttempts - 1) {
+      List<Long> ids = new ArrayList<>();
+      List<String> errors = new ArrayList<>();
+      for (var cols : rows) {
+        try { send(List.of(cols)); }
+        catch (Exception e) { ids.add(Long.parseLong((String) cols.get("id"))); errors.add(e.toString()); }
+      }
+      if (!ids.isEmpty()) quarantine(ids, errors);
+    } else {
+      try { send(rows); }
+      catch (Exception e) {
+        if (lsn != failingLsn) { failingLsn = lsn; failingAttempts = 0; }
+        failingAttempts++;
+        throw e;
+      }
+    }
+    failingLsn = 0; failingAttempts = 0;
+  }
+
+  /** The poll publisher's backoff for the failing transaction: half to all of {@code backoff * 2^attempts}, capped. */
+  private Duration retryDelay(){
+    if (failingAttempts == 0) return Duration.ofSeconds(1);
+    Duration full = backoff.multipliedBy(1L << Math.min(failingAttempts - 1, 20));
+    if (full.compareTo(maxBackoff) > 0) full = maxBackoff;
+    return Duration.ofMillis((long) (full.toMillis() * (0.5 + ThreadLocalRandom.current().nextDouble() / 2)));
+  }
+
+  /** Moves rows out of attempts to {@code outbox_dead_letters}, like the poll publisher does. */
+  private void quarantine(List<Long> ids, List<String> errors){
+    int moved = jdbc.update(con -> {
+      var ps = con.prepareStatement("""
+        WITH moved AS (
+          DELETE FROM outbox o USING unnest(?::bigint[], ?::text[]) AS f(id, err) WHERE o.id = f.id
+          RETURNING o.id, o.topic, o.key, o.value, o.value_bin, o.headers, o.created_at, f.err
+        )
+        INSERT INTO outbox_dead_letters(id, topic, key, value, value_bin, headers, created_at, attempts, last_error)
+        SELECT id, topic, key, value, value_bin, headers, created_at, ?, err FROM moved
+      """);
+      ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+      ps.setArray(2, con.createArrayOf("text", errors.toArray()));
+      ps.setInt(3, maxAttempts);
+      return ps;
+    });
+    quarantined.increment(moved);
+    log.error("Outbox CDC relay quarantined {} rows after {} attempts (ids {}); see /admin/outbox/dead-letters", moved, maxAttempts, ids);
+  }
+
+  /**
+   * Persists the highest confirmed id for {@link OutboxRetention}, at most every few seconds so it adds
+   * nothing per transaction, and refreshes the backlog estimate from it.
+   */
+  private void recordRelayed(long relayedId){
+    Long last = jdbc.queryForObject("""
+      WITH r AS (UPDATE outbox_relay_slots SET relayed_id = GREATEST(COALESCE(relayed_id, 0), ?) WHERE slot_name = ?)
+      SELECT last_value FROM outbox_id_seq
+    """, Long.class, relayedId, slot);
+    if (last != null) unsentGauge.set(Math.max(0, last - relayedId));
+  }
+
+  /** {@code value_bin} as read by JDBC, or in bytea hex text form as decoded from pgoutput. */
+  private static byte[] binary(Object v){
+    if (v == null || v instanceof byte[]) return (byte[]) v;
+    String hex = (String) v;
+    return HexFormat.of().parseHex(hex, 2, hex.length()); // bytea hex output starts with \x
+  }
+
+  /** Sends rows in order and returns once all are acked; throws otherwise. */
+  private void send(List<? extends Map<String,?>> rows) throws Exception {
+    List<CompletableFuture<SendResult<String,byte[]>>> sends = new ArrayList<>(rows.size());
+    for (var cols : rows) {
+      var rec = EventCodec.record((String) cols.get("topic"), (String) cols.get("key"), (String) cols.get("value"), binary(cols.get("value_bin")));
+      rec.headers().add(ID_HEADER, String.valueOf(cols.get("id")).getBytes(StandardCharsets.UTF_8));
+      long sentAt = System.nanoTime();
+      sends.add(kafka.send(rec).whenComplete((res, err) -> publishTimer.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS)));
+    }
+    kafka.flush();
+    long deadline = System.nanoTime() + sendTimeout.toNanos();
+    for (int i = 0; i < sends.size(); i++) {
+      var meta = sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).getRecordMetadata();
+      registry.counter("ledgerx.outbox.publish.total",
+          "topic", (String) rows.get(i).get("topic"),
+          "partition", meta != null ? String.valueOf(meta.partition()) : "na",
+          "result", "success",
+          "error", "none").increment();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.ledgerx.command.outbox;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outbox rows quarantined by {@link OutboxPublisher} or {@link OutboxCdcRelay} after running out of
+ * attempts (V18). Replaying moves a row back into {@code outbox} under a new id, so it is published after
+ * whatever its key has sent in the meantime; consumers that need strict per-key order should check versions.
+ */
+@Component
+public class OutboxDeadLetters {
+  private final JdbcTemplate jdbc;
+
+  public OutboxDeadLetters(JdbcTemplate jdbc){ this.jdbc = jdbc; }
+
+  public List<Map<String,Object>> list(String topic, long afterId, int limit){
+    return jdbc.queryForList("""
+      SELECT id, topic, key, value::text AS value, value_bin IS NOT NULL AS binary, created_at, attempts, last_error, quarantined_at
+      FROM outbox_dead_letters
+      WHERE id > ? AND (?::text IS NULL OR topic = ?)
+      ORDER BY id LIMIT ?
+    """, afterId, topic, topic, Math.max(1, Math.min(limit, 1_000)));
+  }
+
+  public int replay(long id){
+    return jdbc.update(MOVE_BACK.formatted("id = ?"), id);
+  }
+
+  /** Replays every quarantined row, or only those of {@code topic}, in their original order. */
+  public int replayAll(String topic){
+    return jdbc.update(MOVE_BACK.formatted("(?::text IS NULL OR topic = ?)"), topic, topic);
+  }
+
+  public int discard(long id){
+    return jdbc.update("DELETE FROM outbox_dead_letters WHERE id = ?", id);
+  }
+
+  private static final String MOVE_BACK = """
+    WITH moved AS (
+      DELETE FROM outbox_dead_letters WHERE %s
+      RETURNING id, topic, key, value, value_bin, headers
+    )
+    INSERT INTO outbox(topic, key, value, value_bin, headers)
+    SELECT topic, key, value, value_bin, headers FROM moved ORDER BY id
+  """;
+}
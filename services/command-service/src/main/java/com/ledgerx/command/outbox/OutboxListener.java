@@ -0,0 +1,82 @@
+package com.ledgerx.command.outbox;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+/**
+ * Wakes {@link OutboxPublisher} when staged outbox rows commit. The {@code outbox_notify} trigger (V15)
+ * sends a NOTIFY on {@code ledgerx_outbox}; this component LISTENs on its own connection, outside the
+ * pool since it is held for the life of the process, and wakes the publisher's workers as soon as a notification arrives.
+ * If the connection drops it reconnects and wakes them once, in case it missed something; the
+ * workers' slow poll covers everything else.
+ */
+@Component
+@ConditionalOnProperty(prefix = "ledgerx.outbox", name = {"enabled", "notify.enabled"}, havingValue = "true", matchIfMissing = true)
+@ConditionalOnProperty(name = "ledgerx.outbox.mode", havingValue = "poll", matchIfMissing = true)
+public class OutboxListener {
+  private static final Logger log = LoggerFactory.getLogger(OutboxListener.class);
+  static final String CHANNEL = "ledgerx_outbox";
+
+  private final OutboxPublisher publisher;
+  private final String url, username, password;
+  private volatile boolean running;
+  private volatile Connection conn;
+  private Thread thread;
+
+  public OutboxListener(OutboxPublisher publisher,
+                        @Value("${spring.datasource.url}") String url,
+                        @Value("${spring.datasource.username:}") String username,
+                        @Value("${spring.datasource.password:}") String password){
+    this.publisher = publisher; this.url = url; this.username = username; this.password = password;
+  }
+
+  @PostConstruct
+  void start(){
+    running = true;
+    thread = Thread.ofPlatform().name("ledgerx-outbox-listener").daemon().start(this::loop);
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    closeQuietly();
+    if (thread != null) thread.join(5_000);
+  }
+
+  private void loop(){
+    while (running) {
+      try (Connection c = DriverManager.getConnection(url, username, password)) {
+        conn = c;
+        try (Statement st = c.createStatement()) { st.execute("LISTEN " + CHANNEL); }
+        PGConnection pg = c.unwrap(PGConnection.class);
+        publisher.wake(); // anything committed while we were not listening
+        while (running) {
+          var notes = pg.getNotifications(1_000);
+          if (notes != null && notes.length > 0) publisher.wake();
+        }
+      } catch (Exception e) {
+        if (!running) return;
+        log.warn("outbox listener lost its connection, reconnecting: {}", e.toString());
+        try { Thread.sleep(1_000); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); return; }
+      } finally {
+        conn = null;
+      }
+    }
+  }
+
+  private void closeQuietly(){
+    Connection c = conn;
+    if (c == null) return;
+    try { c.close(); } catch (Exception ignore) {}
+  }
+}
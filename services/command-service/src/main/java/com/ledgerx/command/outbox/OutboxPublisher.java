@@ -1,82 +1,332 @@
 package com.ledgerx.command.outbox;
 
-import org.apache.kafka.clients.producer.ProducerRecord;
+import com.ledgerx.command.codec.EventCodec;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 
-import java.util.List; import java.util.Map; import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.ArrayList; import java.util.Comparator; import java.util.HashSet; import java.util.List; import java.util.Map; import java.util.Set; import java.util.UUID;
+import java.util.concurrent.CompletableFuture; import java.util.concurrent.ExecutionException; import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
 @Component
 @ConditionalOnProperty(name = "ledgerx.outbox.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnProperty(name = "ledgerx.outbox.mode", havingValue = "poll", matchIfMissing = true)
 public class OutboxPublisher {
   private static final Logger log = LoggerFactory.getLogger(OutboxPublisher.class);
-  private final JdbcTemplate jdbc; private final KafkaTemplate<String,String> kafka;
+  private final JdbcTemplate jdbc; private final KafkaTemplate<String,byte[]> kafka;
+  private final TransactionTemplate tx;
 
   private final Timer publishTimer;
+  private final Timer endToEndTimer;
   
   
   private final MeterRegistry registry;
-  private final AtomicInteger unsentGauge;
+  private final AtomicInteger unsentGauge, retryingGauge, deadLetterGauge;
+  private final Counter quarantined;
 
-  public OutboxPublisher(JdbcTemplate j, KafkaTemplate<String,String> k, MeterRegistry meter){
-    this.jdbc=j; this.kafka=k;
+  private final int batchSize;
+  private final Duration sendTimeout;
+  private final int maxAttempts;
+  private final String backoff, maxBackoff;
+
+  private final OutboxShardLeases leases;
+  private final int workers;
+  private final Duration pollInterval, heartbeatInterval;
+  private final String claimFor;
+  private final String instance = UUID.randomUUID().toString();
+  private final Object signal = new Object();
+  private long generation;
+  private volatile boolean running;
+  private final List<Thread> threads = new ArrayList<>();
+
+  public OutboxPublisher(JdbcTemplate j, KafkaTemplate<String,byte[]> k, MeterRegistry meter, TransactionTemplate tx,
+                         OutboxShardLeases leases,
+                         @Value("${ledgerx.outbox.batch-size:1000}") int batchSize,
+                         @Value("${ledgerx.outbox.send-timeout:PT12S}") Duration sendTimeout,
+                         @Value("${ledgerx.outbox.workers:1}") int workers,
+                         @Value("${ledgerx.outbox.poll-interval:PT0.5S}") Duration pollInterval,
+                         @Value("${ledgerx.outbox.lease-ttl:PT15S}") Duration leaseTtl,
+                         @Value("${ledgerx.outbox.retry.max-attempts:10}") int maxAttempts,
+                         @Value("${ledgerx.outbox.retry.backoff:PT1S}") Duration backoff,
+                         @Value("${ledgerx.outbox.retry.max-backoff:PT5M}") Duration maxBackoff){
+    this.jdbc=j; this.kafka=k; this.tx=tx; this.leases=leases;
+    this.batchSize = Math.max(1, batchSize); this.sendTimeout = sendTimeout;
+    this.workers = Math.max(1, workers); this.pollInterval = pollInterval;
+    this.heartbeatInterval = leaseTtl.dividedBy(3);
+    // outlives the ack wait, so a live worker's claim never runs out while it still sends
+    this.claimFor = sendTimeout.plus(leaseTtl).toMillis() + " milliseconds";
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.backoff = backoff.toMillis() + " milliseconds"; this.maxBackoff = maxBackoff.toMillis() + " milliseconds";
+    Object delivery = k.getProducerFactory().getConfigurationProperties().get(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG);
+    long deliveryMs = delivery == null ? 120_000 : Long.parseLong(String.valueOf(delivery));
+    if (sendTimeout.toMillis() < deliveryMs)
+      throw new IllegalStateException("ledgerx.outbox.send-timeout (" + sendTimeout + ") must be at least the producer's "
+          + "delivery.timeout.ms (" + deliveryMs + " ms), or a record given up on could still be delivered after its key moved on");
     this.registry = meter; 
     this.publishTimer = meter.timer("ledgerx.outbox.publish.latency");
+    this.endToEndTimer = meter.timer("ledgerx.outbox.end_to_end.latency"); // staged -> acked by the broker
     this.unsentGauge = meter.gauge("ledgerx.outbox.unsent", new AtomicInteger(0));
+    this.retryingGauge = meter.gauge("ledgerx.outbox.retrying", new AtomicInteger(0)); // unsent rows backing off
+    this.deadLetterGauge = meter.gauge("ledgerx.outbox.dead_letters", new AtomicInteger(0));
+    this.quarantined = meter.counter("ledgerx.outbox.quarantined");
+  }
+
+  @PostConstruct
+  void start(){
+    running = true;
+    for (int i = 0; i < workers; i++) {
+      String owner = instance + "-" + i;
+      boolean gauge = i == 0;
+      threads.add(Thread.ofPlatform().name("ledgerx-outbox-" + i).daemon().start(() -> work(owner, gauge)));
+    }
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    wake();
+    for (Thread t : threads) t.join(sendTimeout.toMillis() + 5_000);
   }
 
-  @Scheduled(fixedDelay = 500)
-  @Transactional
-  public void publishBatch(){
-    // refresh gauge
+  /**
+   * Wakes every worker to drain its shards now. Called by {@link OutboxListener} as soon as staged rows
+   * commit; without a wake-up workers still drain every {@code poll-interval} as a safety net.
+   */
+  public void wake(){
+    synchronized (signal) { generation++; signal.notifyAll(); }
+  }
+
+  /**
+   * One publisher worker: heartbeats its shard leases, then drains the shards it owns batch after batch
+   * while they come back full, and sleeps until woken or the poll interval passes. Each shard is drained
+   * by one worker at a time in id order, so per-key order holds however many workers there are.
+   */
+  private void work(String owner, boolean gauge){
+    long nextHeartbeat = 0;
     try {
-      Integer c = jdbc.queryForObject("SELECT COUNT(*) FROM outbox WHERE sent_at IS NULL", Integer.class);
-      if (c != null) unsentGauge.set(c);
+      while (running) {
+        long seen;
+        synchronized (signal) { seen = generation; }
+        try {
+          if (System.nanoTime() - nextHeartbeat >= 0) {
+            leases.heartbeat(owner);
+            if (gauge) refreshGauge();
+            nextHeartbeat = System.nanoTime() + heartbeatInterval.toNanos();
+          }
+          Integer n;
+          do { n = publishBatch(owner); }
+          while (running && n != null && n == batchSize && System.nanoTime() - nextHeartbeat < 0);
+          if (n != null && n == batchSize) continue; // heartbeat due with work left
+        } catch (Exception e) {
+          log.warn("outbox worker {} failed, retrying: {}", owner, e.toString());
+        }
+        synchronized (signal) {
+          if (running && generation == seen) signal.wait(pollInterval.toMillis());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      try { leases.leave(owner); } catch (Exception ignore) {}
+    }
+  }
+
+  private void refreshGauge(){
+    try {
+      // unsent is an estimate from the id range still open, not a COUNT(*): the oldest unsent id comes
+      // off a partial index and the newest staged id from the sequence, so it costs the same at any backlog
+      Map<String,Object> c = jdbc.queryForMap("""
+        SELECT COALESCE((SELECT last_value FROM outbox_id_seq) - (SELECT MIN(id) FROM outbox WHERE sent_at IS NULL) + 1, 0) AS unsent,
+               (SELECT COUNT(*) FROM outbox WHERE sent_at IS NULL AND next_attempt_at IS NOT NULL) AS retrying,
+               (SELECT COUNT(*) FROM outbox_dead_letters) AS dead_letters
+      """);
+      unsentGauge.set(((Number) c.get("unsent")).intValue());
+      retryingGauge.set(((Number) c.get("retrying")).intValue());
+      deadLetterGauge.set(((Number) c.get("dead_letters")).intValue());
     } catch (Exception ignore){}
+  }
 
-    List<Map<String,Object>> rows = jdbc.queryForList("""
-      SELECT id, topic, key, value::text AS value
-      FROM outbox WHERE sent_at IS NULL ORDER BY id FOR UPDATE SKIP LOCKED LIMIT 200
-    """);
+  /**
+   * Claims, sends and marks one batch from the shards {@code owner} holds; returns the number of rows
+   * claimed. The claim and the marking are two short transactions; nothing is locked while the batch
+   * is sent and acked.
+   */
+  int publishBatch(String owner){
+    List<Map<String,Object>> rows = tx.execute(s -> claim(owner));
+    if (rows == null || rows.isEmpty()) return 0;
+    long claimedAt = System.nanoTime();
+
+    // 1) hand the whole batch to the producer; it batches per partition and, with idempotence on,
+    //    keeps each partition (and so each key) in send order. A record that fails before it reaches the
+    //    producer (encoding, serialization, buffer full) blocks its key: later records of that key are
+    //    not sent in this run, they stay unsent behind the failed row's backoff.
+    List<CompletableFuture<SendResult<String,byte[]>>> sends = new ArrayList<>(rows.size());
+    Set<List<String>> blockedKeys = new HashSet<>();
     for (var r: rows){
-      Long id = ((Number)r.get("id")).longValue();
+      String topic = (String) r.get("topic");
+      List<String> key = List.of(topic, (String) r.get("key"));
+      if (blockedKeys.contains(key)) { sends.add(null); continue; }
+      long sentAt = System.nanoTime();
+      long ageAtClaim = ((Number) r.get("age_nanos")).longValue(); // DB clock, so app/DB skew does not leak in
+      CompletableFuture<SendResult<String,byte[]>> f;
+      try {
+        f = kafka.send(EventCodec.record(topic, key.get(1), (String) r.get("value"), (byte[]) r.get("value_bin")));
+      } catch (Exception e) {
+        f = CompletableFuture.failedFuture(e);
+      }
+      if (f.isCompletedExceptionally()) blockedKeys.add(key);
+      sends.add(f.whenComplete((res, err) -> {
+        long now = System.nanoTime();
+        publishTimer.record(now - sentAt, TimeUnit.NANOSECONDS);
+        if (err == null) endToEndTimer.record(ageAtClaim + (now - claimedAt), TimeUnit.NANOSECONDS);
+      }));
+    }
+    kafka.flush();
+
+    // 2) wait for every ack. send-timeout is at least the producer's delivery.timeout.ms (checked at
+    //    startup), so every send has succeeded or failed by the deadline; none can still land later. A
+    //    record that fails after reaching the producer fails the idempotent producer's later in-flight
+    //    batches for its partition too (their sequence numbers no longer follow), so a key's later records
+    //    fail with it rather than overtake it. As a backstop they are still left unsent if acked.
+    long deadline = System.nanoTime() + sendTimeout.toNanos();
+    List<Long> sent = new ArrayList<>(rows.size()), failed = new ArrayList<>();
+    List<String> errors = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i++){
+      if (sends.get(i) == null) continue; // held back behind a failed record of its key
+      var r = rows.get(i);
+      long id = ((Number) r.get("id")).longValue();
       String topic = (String) r.get("topic");
       String key = (String) r.get("key");
-      String value = (String) r.get("value");
       try {
-        AtomicInteger part = new AtomicInteger(-1);
-        publishTimer.record(() -> {
-          try {
-            var result = kafka.send(new ProducerRecord<>(topic, key, value)).get(10, TimeUnit.SECONDS);
-            var meta = result.getRecordMetadata();
-            if (meta != null) part.set(meta.partition());
-          } catch (Exception e) { throw new RuntimeException(e); }
-        });
-        jdbc.update("UPDATE outbox SET sent_at=NOW(), attempts=attempts+1 WHERE id=?", id);
-        String partitionLabel = part.get() >= 0 ? String.valueOf(part.get()) : "na";
+        var meta = sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).getRecordMetadata();
+        if (blockedKeys.contains(List.of(topic, key))) continue;
+        sent.add(id);
+        String partitionLabel = meta != null ? String.valueOf(meta.partition()) : "na";
         registry.counter("ledgerx.outbox.publish.total",
         "topic", topic,
         "partition", partitionLabel,
         "result", "success",
         "error", "none").increment();
       } catch (Exception e){
-        jdbc.update("UPDATE outbox SET attempts=attempts+1 WHERE id=?", id);
+        Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+        blockedKeys.add(List.of(topic, key));
+        failed.add(id);
+        errors.add(cause.toString());
         registry.counter("ledgerx.outbox.publish.total",
         "topic", topic,
         "partition", "na",
         "result", "failure",
-        "error", e.getClass().getSimpleName()).increment();
-        log.warn("Outbox publish failed id={} topic={} key={}: {}", id, topic, key, e.toString());
+        "error", cause.getClass().getSimpleName()).increment();
+        log.warn("Outbox publish failed id={} topic={} key={}: {}", id, topic, key, cause.toString());
       }
     }
+
+    // 3) one statement per outcome instead of one per row, in one short transaction; rows held back
+    //    behind a failed record of their key give their claim up
+    List<Long> released = new ArrayList<>();
+    for (var r : rows) released.add(((Number) r.get("id")).longValue());
+    released.removeAll(sent); released.removeAll(failed);
+    tx.executeWithoutResult(s -> {
+      markAll("UPDATE outbox SET sent_at=NOW(), attempts=attempts+1, claimed_until=NULL WHERE id = ANY(?)", sent);
+      if (!failed.isEmpty()) backOff(failed, errors);
+      markAll("UPDATE outbox SET claimed_until=NULL WHERE id = ANY(?)", released);
+    });
+    return rows.size();
+  }
+
+  /**
+   * Claims up to a batch of sendable rows, in id order, from the shards {@code owner} holds: the lease
+   * rows are locked while the claim is taken, so a shard changing hands is never claimed from twice at
+   * once. A row is sendable if it is not backing off or claimed, and no earlier row of its key is; so a
+   * key's rows are only ever in flight in one batch, whoever holds the shard when a claim runs out.
+   */
+  private List<Map<String,Object>> claim(String owner){
+    List<Integer> shards = leases.lockOwned(owner);
+    if (shards.isEmpty()) return List.of();
+    List<Map<String,Object>> rows = new ArrayList<>(jdbc.query(con -> {
+      var ps = con.prepareStatement("""
+        WITH c AS (
+          SELECT id FROM outbox o
+          WHERE sent_at IS NULL AND shard = ANY(?)
+            AND (next_attempt_at IS NULL OR next_attempt_at <= NOW())
+            AND (claimed_until IS NULL OR claimed_until <= NOW())
+            AND NOT EXISTS (SELECT 1 FROM outbox b
+                            WHERE b.sent_at IS NULL AND (b.next_attempt_at > NOW() OR b.claimed_until > NOW())
+                              AND b.topic = o.topic AND b.key = o.key AND b.id < o.id)
+          ORDER BY id FOR UPDATE LIMIT ?
+        )
+        UPDATE outbox o SET claimed_until = NOW() + ?::interval FROM c WHERE o.id = c.id
+        RETURNING o.id, o.topic, o.key, o.value::text AS value, o.value_bin,
+                  (EXTRACT(EPOCH FROM clock_timestamp() - o.created_at) * 1e9)::bigint AS age_nanos
+      """);
+      ps.setArray(1, con.createArrayOf("smallint", shards.toArray()));
+      ps.setInt(2, batchSize);
+      ps.setString(3, claimFor);
+      return ps;
+    }, new ColumnMapRowMapper()));
+    rows.sort(Comparator.comparingLong(r -> ((Number) r.get("id")).longValue())); // RETURNING has no order
+    return rows;
+  }
+
+  /**
+   * Schedules the next attempt of failed rows with exponential backoff and jitter (half to all of
+   * {@code backoff * 2^attempts}, capped at {@code max-backoff}); later rows of the same key wait with
+   * them. Rows out of attempts move to {@code outbox_dead_letters}, which lets their key move on.
+   */
+  private void backOff(List<Long> ids, List<String> errors){
+    jdbc.update(con -> {
+      var ps = con.prepareStatement("""
+        UPDATE outbox o SET attempts = o.attempts + 1, last_error = f.err, claimed_until = NULL,
+               next_attempt_at = NOW() + LEAST(?::interval * power(2, LEAST(o.attempts, 20)), ?::interval) * (0.5 + random() / 2)
+        FROM unnest(?::bigint[], ?::text[]) AS f(id, err)
+        WHERE o.id = f.id
+      """);
+      ps.setString(1, backoff);
+      ps.setString(2, maxBackoff);
+      ps.setArray(3, con.createArrayOf("bigint", ids.toArray()));
+      ps.setArray(4, con.createArrayOf("text", errors.toArray()));
+      return ps;
+    });
+    int moved = jdbc.update(con -> {
+      var ps = con.prepareStatement("""
+        WITH moved AS (
+          DELETE FROM outbox WHERE id = ANY(?) AND attempts >= ?
+          RETURNING id, topic, key, value, value_bin, headers, created_at, attempts, last_error
+        )
+        INSERT INTO outbox_dead_letters(id, topic, key, value, value_bin, headers, created_at, attempts, last_error)
+        SELECT id, topic, key, value, value_bin, headers, created_at, attempts, last_error FROM moved
+      """);
+      ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+      ps.setInt(2, maxAttempts);
+      return ps;
+    });
+    if (moved > 0) {
+      quarantined.increment(moved);
+      log.error("Outbox quarantined {} rows after {} attempts; see /admin/outbox/dead-letters", moved, maxAttempts);
+    }
+  }
+
+  private void markAll(String sql, List<Long> ids){
+    if (ids.isEmpty()) return;
+    jdbc.update(con -> {
+      var ps = con.prepareStatement(sql);
+      ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+      return ps;
+    });
   }
-}
\ No newline at end of file
+}
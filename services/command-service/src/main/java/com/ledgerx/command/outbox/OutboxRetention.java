@@ -0,0 +1,140 @@
+package com.ledgerx.command.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the daily partitions of {@code outbox} (V19) in shape: creates the next few days ahead of time
+ * and drops a partition once its whole day is older than {@code retention.days} and every row in it was
+ * published. Published means {@code sent_at} is set in poll mode; in cdc mode, where relayed rows keep
+ * {@code sent_at} NULL, it means the relay has confirmed the partition's highest id. A partition still
+ * holding a row that is backing off stays until that row is sent or quarantined. Rows that landed in
+ * the default partition move into their day's partition when it is created late.
+ */
+@Component
+@ConditionalOnProperty(name = "ledgerx.outbox.retention.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRetention {
+  private static final Logger log = LoggerFactory.getLogger(OutboxRetention.class);
+  static final String PARTITION_PREFIX = "outbox_p";
+  private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final int retentionDays;
+  private final int daysAhead;
+  private final boolean cdc;
+  private final String slot;
+  private final Counter dropped;
+
+  public OutboxRetention(JdbcTemplate jdbc, TransactionTemplate tx, MeterRegistry meter,
+                         @Value("${ledgerx.outbox.retention.days:2}") int retentionDays,
+                         @Value("${ledgerx.outbox.retention.days-ahead:3}") int daysAhead,
+                         @Value("${ledgerx.outbox.mode:poll}") String mode,
+                         @Value("${ledgerx.outbox.cdc.slot:ledgerx_outbox}") String slot){
+    this.jdbc = jdbc; this.tx = tx;
+    this.retentionDays = Math.max(1, retentionDays); this.daysAhead = Math.max(1, daysAhead);
+    this.cdc = "cdc".equals(mode); this.slot = slot;
+    this.dropped = meter.counter("ledgerx.outbox.partitions.dropped");
+  }
+
+  @Scheduled(initialDelay = 0, fixedDelayString = "${ledgerx.outbox.retention.interval:PT1H}")
+  public void run(){
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    for (int i = 0; i <= daysAhead; i++) create(today.plusDays(i));
+
+    LocalDate windowStart = today.minusDays(retentionDays);
+    long relayed = relayedId();
+    int droppedNow = 0, kept = 0;
+    for (String name : partitions()) {
+      LocalDate day = LocalDate.parse(name.substring(PARTITION_PREFIX.length()), DAY);
+      if (!day.isBefore(windowStart)) continue;
+      if (!published(name, relayed)) kept++;
+      else if (drop(name)) droppedNow++;
+    }
+    OffsetDateTime cutoff = windowStart.atStartOfDay().atOffset(ZoneOffset.UTC);
+    int purged = cdc
+        ? jdbc.update("DELETE FROM outbox_default WHERE created_at < ? AND id <= ?", cutoff, relayed)
+        : jdbc.update("DELETE FROM outbox_default WHERE created_at < ? AND sent_at IS NOT NULL", cutoff);
+    if (droppedNow > 0 || purged > 0 || kept > 0)
+      log.info("outbox retention: dropped {} partitions, kept {} with unpublished rows, purged {} default rows before {}",
+          droppedNow, kept, purged, windowStart);
+  }
+
+  /** Highest id the CDC relay has confirmed; -1 when not relaying, so nothing counts as published by it. */
+  private long relayedId(){
+    if (!cdc) return -1;
+    List<Long> ids = jdbc.queryForList("SELECT relayed_id FROM outbox_relay_slots WHERE slot_name=?", Long.class, slot);
+    return ids.isEmpty() || ids.get(0) == null ? -1 : ids.get(0);
+  }
+
+  // names come from the catalog and match outbox_p<yyyymmdd>, so they are safe to format
+  private boolean published(String name, long relayed){
+    if (cdc) {
+      Long max = jdbc.queryForObject("SELECT MAX(id) FROM " + name, Long.class);
+      return max == null || max <= relayed;
+    }
+    Boolean unsent = jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM " + name + " WHERE sent_at IS NULL)", Boolean.class);
+    return !Boolean.TRUE.equals(unsent);
+  }
+
+  private List<String> partitions(){
+    return jdbc.queryForList("""
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        JOIN pg_class p ON p.oid = i.inhparent
+        WHERE p.relname = 'outbox' AND c.relname ~ '^outbox_p[0-9]{8}$'
+        ORDER BY c.relname
+      """, String.class);
+  }
+
+  private void create(LocalDate day){
+    String name = PARTITION_PREFIX + day.format(DAY);
+    if (Boolean.TRUE.equals(jdbc.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name))) return;
+    // If the job was down (or the clock ran ahead), the day's rows are in outbox_default and CREATE ...
+    // PARTITION OF would fail on them every run; build the table, move them in and attach it, all in one
+    // transaction. shard is generated, so the copy names the other columns. The table is not published
+    // until attached, so in cdc mode the moved rows are not relayed again.
+    String from = day + " 00:00+00", to = day.plusDays(1) + " 00:00+00";
+    String columns = "id, topic, key, value, value_bin, headers, created_at, sent_at, attempts, next_attempt_at, last_error, claimed_until";
+    ddl("create " + name,
+        "CREATE TABLE %s (LIKE outbox INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING GENERATED)".formatted(name),
+        "INSERT INTO %s(%s) SELECT %s FROM outbox_default WHERE created_at >= '%s' AND created_at < '%s'"
+            .formatted(name, columns, columns, from, to),
+        "DELETE FROM outbox_default WHERE created_at >= '%s' AND created_at < '%s'".formatted(from, to),
+        "ALTER TABLE outbox ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')".formatted(name, from, to));
+  }
+
+  private boolean drop(String name){
+    // one transaction, so a failure never leaves a detached table behind
+    boolean ok = ddl("drop " + name, "ALTER TABLE outbox DETACH PARTITION " + name, "DROP TABLE " + name);
+    if (ok) dropped.increment();
+    return ok;
+  }
+
+  private boolean ddl(String what, String... statements){
+    try {
+      tx.executeWithoutResult(s -> {
+        jdbc.execute("SET LOCAL lock_timeout = '2s'");
+        for (String sql : statements) jdbc.execute(sql);
+      });
+      return true;
+    } catch (RuntimeException e) {
+      log.warn("outbox retention: {} failed, will retry: {}", what, e.toString());
+      return false;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.ledgerx.command.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lease-based ownership of the 64 outbox shards (V17) among publisher workers, across threads and pods.
+ * Every worker heartbeats into {@code outbox_publishers}; the live workers, sorted by name, split the
+ * shards round-robin and each one takes the leases of its share as they expire or are released, and
+ * releases shards that moved to someone else. A worker claims rows of a shard only while holding its
+ * lease row locked ({@link #lockOwned}), so a shard changing hands is never claimed from twice at once;
+ * rows already claimed hold back their key until the claim is marked or runs out (V22).
+ */
+@Component
+@ConditionalOnProperty(name = "ledgerx.outbox.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnProperty(name = "ledgerx.outbox.mode", havingValue = "poll", matchIfMissing = true)
+public class OutboxShardLeases {
+  static final int SHARDS = 64;
+
+  private final JdbcTemplate jdbc;
+  private final String ttl;
+
+  public OutboxShardLeases(JdbcTemplate jdbc, @Value("${ledgerx.outbox.lease-ttl:PT15S}") Duration ttl){
+    this.jdbc = jdbc; this.ttl = ttl.toMillis() + " milliseconds";
+  }
+
+  /** Renews membership, then takes this worker's share of the shards and lets go of the rest. */
+  public List<Integer> heartbeat(String owner){
+    jdbc.update("""
+      INSERT INTO outbox_publishers(owner, heartbeat_at) VALUES (?, NOW())
+      ON CONFLICT (owner) DO UPDATE SET heartbeat_at = NOW()
+    """, owner);
+    jdbc.update("DELETE FROM outbox_publishers WHERE heartbeat_at < NOW() - ?::interval", ttl);
+    List<String> live = jdbc.queryForList("SELECT owner FROM outbox_publishers ORDER BY owner", String.class);
+    List<Integer> target = share(live.indexOf(owner), live.size());
+
+    // lock lease rows in shard order, so two workers rebalancing at once cannot deadlock each other
+    jdbc.update(con -> {
+      var ps = con.prepareStatement("""
+        UPDATE outbox_shard_leases SET owner = NULL, expires_at = 'epoch'
+        WHERE shard IN (SELECT shard FROM outbox_shard_leases
+                        WHERE owner = ? AND NOT (shard = ANY(?)) ORDER BY shard FOR UPDATE)
+      """);
+      ps.setString(1, owner);
+      ps.setArray(2, con.createArrayOf("smallint", target.toArray()));
+      return ps;
+    });
+    return jdbc.query(con -> {
+      var ps = con.prepareStatement("""
+        UPDATE outbox_shard_leases SET owner = ?, expires_at = NOW() + ?::interval
+        WHERE shard IN (SELECT shard FROM outbox_shard_leases
+                        WHERE shard = ANY(?) AND (owner = ? OR owner IS NULL OR expires_at < NOW())
+                        ORDER BY shard FOR UPDATE)
+        RETURNING shard
+      """);
+      ps.setString(1, owner);
+      ps.setString(2, ttl);
+      ps.setArray(3, con.createArrayOf("smallint", target.toArray()));
+      ps.setString(4, owner);
+      return ps;
+    }, (rs, i) -> rs.getInt(1));
+  }
+
+  /** Locks and returns the unexpired leases of {@code owner}; call inside the claiming transaction. */
+  public List<Integer> lockOwned(String owner){
+    return jdbc.queryForList("""
+      SELECT shard FROM outbox_shard_leases
+      WHERE owner = ? AND expires_at > NOW() ORDER BY shard FOR UPDATE
+    """, Integer.class, owner);
+  }
+
+  public void leave(String owner){
+    jdbc.update("UPDATE outbox_shard_leases SET owner = NULL, expires_at = 'epoch' WHERE owner = ?", owner);
+    jdbc.update("DELETE FROM outbox_publishers WHERE owner = ?", owner);
+  }
+
+  static List<Integer> share(int index, int members){
+    List<Integer> out = new ArrayList<>();
+    if (index < 0) return out;
+    for (int s = index; s < SHARDS; s += members) out.add(s);
+    return out;
+  }
+}
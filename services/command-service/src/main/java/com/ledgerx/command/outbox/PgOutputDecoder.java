@@ -0,0 +1,86 @@
+package com.ledgerx.command.outbox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal decoder for the pgoutput logical replication protocol (proto_version 1, text tuples). Only
+ * what the CDC relay needs: Begin, Commit, Relation and Insert. Every other message type is skipped.
+ */
+final class PgOutputDecoder {
+  /** Microseconds between the Unix epoch and the Postgres epoch (2000-01-01). */
+  private static final long PG_EPOCH_MICROS = 946_684_800_000_000L;
+
+  sealed interface Message permits Begin, Commit, Insert, Other {}
+  record Begin(long finalLsn, long xid) implements Message {}
+  record Commit(long commitLsn, long endLsn, long commitTimeMicros) implements Message {}
+  record Insert(String table, Map<String,String> columns) implements Message {}
+  record Other(char type) implements Message {}
+
+  private record Relation(String table, String[] columns) {}
+  private final Map<Integer, Relation> relations = new HashMap<>();
+
+  Message decode(ByteBuffer buf){
+    char type = (char) buf.get();
+    switch (type) {
+      case 'B' -> {
+        long finalLsn = buf.getLong();
+        buf.getLong(); // commit timestamp, repeated in Commit
+        return new Begin(finalLsn, Integer.toUnsignedLong(buf.getInt()));
+      }
+      case 'C' -> {
+        buf.get(); // flags
+        long commitLsn = buf.getLong(), endLsn = buf.getLong();
+        return new Commit(commitLsn, endLsn, buf.getLong() + PG_EPOCH_MICROS);
+      }
+      case 'R' -> {
+        int relId = buf.getInt();
+        String namespace = string(buf), name = string(buf);
+        buf.get(); // replica identity
+        String[] cols = new String[buf.getShort()];
+        for (int i = 0; i < cols.length; i++) {
+          buf.get(); // flags
+          cols[i] = string(buf);
+          buf.getInt(); buf.getInt(); // type oid, type modifier
+        }
+        relations.put(relId, new Relation(namespace + "." + name, cols));
+        return new Other(type);
+      }
+      case 'I' -> {
+        Relation rel = relations.get(buf.getInt());
+        if (rel == null) throw new IllegalStateException("pgoutput Insert before its Relation message");
+        buf.get(); // 'N'
+        return new Insert(rel.table(), tuple(buf, rel));
+      }
+      default -> { return new Other(type); }
+    }
+  }
+
+  private static Map<String,String> tuple(ByteBuffer buf, Relation rel){
+    int n = buf.getShort();
+    Map<String,String> out = new HashMap<>(n * 2);
+    for (int i = 0; i < n; i++) {
+      char kind = (char) buf.get();
+      if (kind == 't' || kind == 'b') {
+        byte[] b = new byte[buf.getInt()];
+        buf.get(b);
+        out.put(rel.columns()[i], new String(b, StandardCharsets.UTF_8));
+      } else {
+        out.put(rel.columns()[i], null); // 'n' null, 'u' unchanged toast (never sent for an insert)
+      }
+    }
+    return out;
+  }
+
+  private static String string(ByteBuffer buf){
+    int start = buf.position();
+    while (buf.get() != 0) { /* scan to the terminator */ }
+    byte[] b = new byte[buf.position() - start - 1];
+    buf.position(start);
+    buf.get(b);
+    buf.get(); // terminator
+    return new String(b, StandardCharsets.UTF_8);
+  }
+}
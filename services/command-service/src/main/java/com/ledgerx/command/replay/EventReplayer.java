@@ -0,0 +1,212 @@
+package com.ledgerx.command.replay;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ledgerx.command.app.AccountService;
+import com.ledgerx.command.app.TransferService;
+import com.ledgerx.command.codec.EventCodec;
+import com.ledgerx.command.events.EventJson;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs {@link ReplayJobs} in the background: republishes {@code event_store} to the aggregate's topic,
+ * reading keyset pages by id (by version off the aggregate's index when the job is for one aggregate) and sending asynchronously with at most {@code max-in-flight} unacknowledged
+ * records and at most the job's {@code rate_per_sec}. A page is checkpointed once all of its records are
+ * acknowledged, while the next page is already being sent, so a job that is resumed (by another
+ * instance after this one stops heartbeating, or after a pause) repeats at most a page or two.
+ * Replays are at-least-once: consumers dedupe by aggregate version, as they do for outbox retries.
+ */
+@Component
+@ConditionalOnProperty(name = "ledgerx.replay.enabled", havingValue = "true", matchIfMissing = true)
+public class EventReplayer {
+  private static final Logger log = LoggerFactory.getLogger(EventReplayer.class);
+  private static final Map<String,String> TOPICS = Map.of("Account", AccountService.TOPIC, "Transfer", TransferService.TRANSFER_TOPIC);
+
+  private record Row(long id, String aggregateType, String aggregateId, long version, String eventType, String payload, String metadata) {}
+
+  private final ReplayJobs jobs;
+  private final JdbcTemplate jdbc;
+  private final KafkaTemplate<String,byte[]> kafka;
+  private final ObjectMapper om;
+  private final EventCodec codec;
+  private final Counter publishedCounter;
+
+  private final int pageSize, maxInFlight, workers;
+  private final Duration leaseTtl, sendTimeout;
+  private final String instance = "replay-" + UUID.randomUUID();
+  private final ExecutorService executor;
+  private final AtomicInteger active = new AtomicInteger();
+  private volatile boolean running = true;
+
+  public EventReplayer(ReplayJobs jobs, JdbcTemplate jdbc, KafkaTemplate<String,byte[]> kafka, ObjectMapper om, EventCodec codec,
+                       MeterRegistry meter,
+                       @Value("${ledgerx.replay.page-size:1000}") int pageSize,
+                       @Value("${ledgerx.replay.max-in-flight:5000}") int maxInFlight,
+                       @Value("${ledgerx.replay.workers:1}") int workers,
+                       @Value("${ledgerx.replay.lease-ttl:PT30S}") Duration leaseTtl,
+                       @Value("${ledgerx.replay.send-timeout:PT30S}") Duration sendTimeout){
+    this.jobs = jobs; this.jdbc = jdbc; this.kafka = kafka; this.om = om; this.codec = codec;
+    this.pageSize = Math.max(1, pageSize); this.maxInFlight = Math.max(1, maxInFlight); this.workers = Math.max(1, workers);
+    this.leaseTtl = leaseTtl; this.sendTimeout = sendTimeout;
+    this.executor = Executors.newFixedThreadPool(this.workers, Thread.ofPlatform().name("ledgerx-replay-", 0).daemon().factory());
+    this.publishedCounter = meter.counter("ledgerx.replay.published");
+  }
+
+  /** Starts RUNNING jobs that nobody is working on, up to {@code workers} at a time on this instance. */
+  @Scheduled(initialDelay = 5_000, fixedDelayString = "${ledgerx.replay.poll-interval:PT5S}")
+  public synchronized void poll(){
+    while (running && active.get() < workers) {
+      ReplayJobs.Job job = jobs.claim(instance, leaseTtl);
+      if (job == null) return;
+      active.incrementAndGet();
+      executor.execute(() -> {
+        try { run(job); } finally { active.decrementAndGet(); }
+      });
+    }
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    executor.shutdown();
+    executor.awaitTermination(sendTimeout.toMillis() + 5_000, TimeUnit.MILLISECONDS);
+  }
+
+  private void run(ReplayJobs.Job job){
+    long published = job.published();
+    // keep each page short enough, when throttled, to checkpoint (and so heartbeat) well within the TTL
+    int limit = job.ratePerSec() == 0 ? pageSize
+        : (int) Math.max(1, Math.min(pageSize, job.ratePerSec() * leaseTtl.toSeconds() / 3));
+    long interval = job.ratePerSec() == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / job.ratePerSec();
+    long nextSend = System.nanoTime();
+    var inFlight = new Semaphore(maxInFlight);
+    long cursor = job.checkpointId(), pendingEnd = cursor, versionCursor = 0;
+    List<CompletableFuture<?>> pending = List.of();
+    log.info("replay job {} running from event {} to {}", job.id(), cursor, job.toId());
+    try {
+      while (true) {
+        if (!running) { jobs.release(job.id(), instance); return; }
+        List<Row> rows = page(job, cursor, versionCursor, limit);
+        long end = rows.size() < limit ? job.toId() : rows.get(rows.size() - 1).id();
+        if (!rows.isEmpty()) versionCursor = rows.get(rows.size() - 1).version();
+
+        List<CompletableFuture<?>> acks = new ArrayList<>(rows.size());
+        for (Row r : rows) {
+          String topic = TOPICS.get(r.aggregateType());
+          if (topic == null) continue;
+          if (interval > 0) {
+            long now = System.nanoTime();
+            nextSend = Math.max(nextSend + interval, now - TimeUnit.SECONDS.toNanos(1)); // no more than a second of burst
+            if (nextSend > now) LockSupport.parkNanos(nextSend - now);
+          }
+          inFlight.acquire();
+          CompletableFuture<?> ack;
+          try { ack = kafka.send(record(topic, r)); }
+          catch (RuntimeException e) { inFlight.release(); throw e; }
+          ack.whenComplete((res, ex) -> inFlight.release());
+          acks.add(ack);
+        }
+
+        // the previous page is checkpointed only once all of it is acknowledged
+        published += await(pending);
+        if (!jobs.checkpoint(job.id(), instance, pendingEnd, published)) { await(acks); return; }
+        pending = acks; pendingEnd = end; cursor = end;
+        if (end >= job.toId()) {
+          published += await(pending);
+          jobs.checkpoint(job.id(), instance, end, published);
+          jobs.finish(job.id(), instance, "COMPLETED", null);
+          log.info("replay job {} completed, {} events published", job.id(), published);
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      jobs.release(job.id(), instance);
+    } catch (Exception e) {
+      log.warn("replay job {} failed at event {}: {}", job.id(), pendingEnd, e.toString());
+      jobs.finish(job.id(), instance, "FAILED", e.toString());
+    }
+  }
+
+  private int await(List<CompletableFuture<?>> acks) throws Exception {
+    if (acks.isEmpty()) return 0;
+    CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    publishedCounter.increment(acks.size());
+    return acks.size();
+  }
+
+  /**
+   * The next page after {@code afterId}. A job for all aggregates walks the primary key. A job for one
+   * aggregate reads it off its (aggregate_type, aggregate_id, version) index instead: by version after
+   * {@code afterVersion} when the type is known (a stream's versions and ids ascend together), else in id
+   * order among that id's rows of the replayed types.
+   */
+  private List<Row> page(ReplayJobs.Job job, long afterId, long afterVersion, int limit){
+    if (job.aggregateId() == null) return jdbc.query(SELECT_ROWS + """
+        WHERE id > ? AND id <= ?
+          AND (?::text IS NULL OR aggregate_type = ?)
+      """ + TIME_RANGE + "ORDER BY id LIMIT ?", ROW,
+        afterId, job.toId(), job.aggregateType(), job.aggregateType(), job.fromTime(), job.fromTime(), job.toTime(), job.toTime(), limit);
+    if (job.aggregateType() != null) return jdbc.query(SELECT_ROWS + """
+        WHERE aggregate_type = ? AND aggregate_id = ? AND version > ?
+          AND id > ? AND id <= ?
+      """ + TIME_RANGE + "ORDER BY version LIMIT ?", ROW,
+        job.aggregateType(), job.aggregateId(), afterVersion, afterId, job.toId(), job.fromTime(), job.fromTime(), job.toTime(), job.toTime(), limit);
+    return jdbc.query(SELECT_ROWS + """
+        WHERE aggregate_type IN ('Account', 'Transfer') AND aggregate_id = ?
+          AND id > ? AND id <= ?
+      """ + TIME_RANGE + "ORDER BY id LIMIT ?", ROW,
+        job.aggregateId(), afterId, job.toId(), job.fromTime(), job.fromTime(), job.toTime(), job.toTime(), limit);
+  }
+
+  private static final String SELECT_ROWS = """
+      SELECT id, aggregate_type, aggregate_id, version, event_type, payload::text, metadata::text
+      FROM event_store
+    """;
+  private static final String TIME_RANGE = """
+        AND (?::timestamptz IS NULL OR event_timestamp >= ?)
+        AND (?::timestamptz IS NULL OR event_timestamp < ?)
+    """;
+  private static final RowMapper<Row> ROW = (rs, i) ->
+      new Row(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4), rs.getString(5), rs.getString(6), rs.getString(7));
+
+  private ProducerRecord<String,byte[]> record(String topic, Row r){
+    try {
+      Map<String,Object> value = Map.of(
+          "eventType", EventJson.canonicalType(r.eventType()),
+          "aggregateId", r.aggregateId(),
+          "version", r.version(),
+          "payload", EventJson.read(r.eventType(), r.payload()),
+          "metadata", om.readValue(r.metadata(), new TypeReference<Map<String,Object>>() {}));
+      byte[] binary = codec.binary(topic) ? codec.encode(value) : null;
+      return EventCodec.record(topic, r.aggregateId(), binary == null ? om.writeValueAsString(value) : null, binary);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
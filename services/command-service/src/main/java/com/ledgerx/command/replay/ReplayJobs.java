@@ -0,0 +1,109 @@
+package com.ledgerx.command.replay;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code replay_jobs} table (V21). A RUNNING job belongs to whichever instance last claimed it and
+ * keeps heartbeating; once the heartbeat is older than the lease TTL any instance may claim it and
+ * carry on from {@code checkpoint_id}. Every write by the runner is conditional on still being the
+ * owner of a RUNNING job, so pausing or cancelling a job stops its runner at the next page.
+ */
+@Component
+public class ReplayJobs {
+  /** A job's filters and progress, as the runner needs them. */
+  public record Job(long id, String aggregateType, String aggregateId, long toId,
+                    OffsetDateTime fromTime, OffsetDateTime toTime, int ratePerSec, long checkpointId, long published) {}
+
+  private final JdbcTemplate jdbc;
+
+  public ReplayJobs(JdbcTemplate jdbc){ this.jdbc = jdbc; }
+
+  /**
+   * Creates a RUNNING job over events with {@code fromId < id <= toId}; {@code toId} defaults to the
+   * current head, so events appended while the job runs are left to the outbox.
+   */
+  public long create(String aggregateType, String aggregateId, long fromId, Long toId,
+                     OffsetDateTime fromTime, OffsetDateTime toTime, int ratePerSec){
+    return jdbc.queryForObject("""
+      INSERT INTO replay_jobs(aggregate_type, aggregate_id, from_id, to_id, from_time, to_time, rate_per_sec, checkpoint_id)
+      VALUES (?, ?, ?, COALESCE(?, (SELECT COALESCE(MAX(id), 0) FROM event_store)), ?, ?, ?, ?)
+      RETURNING id
+    """, Long.class, aggregateType, aggregateId, Math.max(0, fromId), toId, fromTime, toTime, Math.max(0, ratePerSec), Math.max(0, fromId));
+  }
+
+  public Map<String,Object> get(long id){
+    List<Map<String,Object>> rows = jdbc.queryForList(STATUS + " WHERE id = ?", id);
+    return rows.isEmpty() ? null : rows.get(0);
+  }
+
+  public List<Map<String,Object>> list(int limit){
+    return jdbc.queryForList(STATUS + " ORDER BY id DESC LIMIT ?", Math.max(1, Math.min(limit, 1_000)));
+  }
+
+  /** Claims one RUNNING job whose owner stopped heartbeating (or never started it). */
+  Job claim(String owner, Duration ttl){
+    List<Job> jobs = jdbc.query("""
+      UPDATE replay_jobs SET owner = ?, heartbeat_at = NOW(), updated_at = NOW()
+      WHERE id = (SELECT id FROM replay_jobs
+                  WHERE status = 'RUNNING' AND heartbeat_at < NOW() - ?::interval
+                  ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED)
+      RETURNING id, aggregate_type, aggregate_id, to_id, from_time, to_time, rate_per_sec, checkpoint_id, published
+    """, (rs, i) -> new Job(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4),
+        rs.getObject(5, OffsetDateTime.class), rs.getObject(6, OffsetDateTime.class), rs.getInt(7), rs.getLong(8), rs.getLong(9)),
+      owner, ttl.toMillis() + " milliseconds");
+    return jobs.isEmpty() ? null : jobs.get(0);
+  }
+
+  /** Records progress; false if the job was paused, cancelled or taken over, so the runner should stop. */
+  boolean checkpoint(long id, String owner, long checkpointId, long published){
+    return jdbc.update("""
+      UPDATE replay_jobs SET checkpoint_id = ?, published = ?, heartbeat_at = NOW(), updated_at = NOW()
+      WHERE id = ? AND owner = ? AND status = 'RUNNING'
+    """, checkpointId, published, id, owner) == 1;
+  }
+
+  void finish(long id, String owner, String status, String error){
+    jdbc.update("""
+      UPDATE replay_jobs SET status = ?, error = ?, owner = NULL, finished_at = NOW(), updated_at = NOW()
+      WHERE id = ? AND owner = ? AND status = 'RUNNING'
+    """, status, error, id, owner);
+  }
+
+  /** Hands a job back when its runner stops early (shutdown), so another instance resumes it at once. */
+  void release(long id, String owner){
+    jdbc.update("UPDATE replay_jobs SET owner = NULL, heartbeat_at = 'epoch' WHERE id = ? AND owner = ?", id, owner);
+  }
+
+  public boolean pause(long id){
+    return jdbc.update("UPDATE replay_jobs SET status = 'PAUSED', owner = NULL, updated_at = NOW() WHERE id = ? AND status = 'RUNNING'", id) == 1;
+  }
+
+  /** Resumes a paused, failed or cancelled job from its checkpoint. */
+  public boolean resume(long id){
+    return jdbc.update("""
+      UPDATE replay_jobs SET status = 'RUNNING', error = NULL, finished_at = NULL, heartbeat_at = 'epoch', updated_at = NOW()
+      WHERE id = ? AND status IN ('PAUSED', 'FAILED', 'CANCELLED')
+    """, id) == 1;
+  }
+
+  public boolean cancel(long id){
+    return jdbc.update("""
+      UPDATE replay_jobs SET status = 'CANCELLED', owner = NULL, finished_at = NOW(), updated_at = NOW()
+      WHERE id = ? AND status IN ('RUNNING', 'PAUSED')
+    """, id) == 1;
+  }
+
+  private static final String STATUS = """
+    SELECT id, status, aggregate_type, aggregate_id, from_id, to_id, from_time, to_time, rate_per_sec,
+           checkpoint_id, published, owner, heartbeat_at, error, created_at, updated_at, finished_at,
+           CASE WHEN to_id <= from_id THEN 1.0
+                ELSE round((LEAST(checkpoint_id, to_id) - from_id)::numeric / (to_id - from_id), 4) END AS progress
+    FROM replay_jobs
+  """;
+}
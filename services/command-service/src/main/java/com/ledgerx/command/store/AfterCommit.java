@@ -0,0 +1,44 @@
+package com.ledgerx.command.store;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Runs in-memory side effects (cache write-through) only once the surrounding transaction commits, or
+ * immediately when there is none. A {@link #scoped} block collects the hooks of one command that shares
+ * an outer transaction with others (group commit) and drops them if that command fails, since its
+ * savepoint is rolled back while the outer transaction still commits.
+ */
+public final class AfterCommit {
+  private static final ThreadLocal<List<Runnable>> SCOPE = new ThreadLocal<>();
+
+  private AfterCommit(){}
+
+  public static void run(Runnable hook){
+    List<Runnable> scope = SCOPE.get();
+    if (scope != null) { scope.add(hook); return; }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) { hook.run(); return; }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override public void afterCommit(){ hook.run(); }
+    });
+  }
+
+  /** Runs {@code op}; its hooks are handed to the enclosing transaction only if it returns normally. */
+  public static <T> T scoped(Supplier<T> op){
+    List<Runnable> outer = SCOPE.get();
+    List<Runnable> hooks = new ArrayList<>();
+    SCOPE.set(hooks);
+    T result;
+    try {
+      result = op.get();
+    } finally {
+      if (outer == null) SCOPE.remove(); else SCOPE.set(outer);
+    }
+    for (Runnable h : hooks) run(h);
+    return result;
+  }
+}
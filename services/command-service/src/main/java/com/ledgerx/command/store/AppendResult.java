@@ -0,0 +1,19 @@
+package com.ledgerx.command.store;
+
+/** Outcome of {@link EventStoreRepository#append(String, String, long, NewEvent...)}. */
+public sealed interface AppendResult permits AppendResult.Appended, AppendResult.ConcurrencyConflict {
+
+  /** @param version version of the last appended event (the new stream head) */
+  record Appended(long version) implements AppendResult {}
+
+  /** The stream head was not at the expected version; nothing was written. */
+  record ConcurrencyConflict(String aggType, String aggId, long expectedVersion, long actualVersion) implements AppendResult {}
+
+  /** Returns the new head version or throws {@link ConcurrencyConflictException}. */
+  default long orThrow(){
+    return switch (this) {
+      case Appended a -> a.version();
+      case ConcurrencyConflict c -> throw new ConcurrencyConflictException(c);
+    };
+  }
+}
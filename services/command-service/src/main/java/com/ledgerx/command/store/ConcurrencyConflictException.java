@@ -0,0 +1,13 @@
+package com.ledgerx.command.store;
+
+public class ConcurrencyConflictException extends RuntimeException {
+  private final AppendResult.ConcurrencyConflict conflict;
+
+  public ConcurrencyConflictException(AppendResult.ConcurrencyConflict conflict){
+    super("Concurrent modification of " + conflict.aggType() + " " + conflict.aggId()
+        + ": expected version " + conflict.expectedVersion() + " but was " + conflict.actualVersion());
+    this.conflict = conflict;
+  }
+
+  public AppendResult.ConcurrencyConflict conflict(){ return conflict; }
+}
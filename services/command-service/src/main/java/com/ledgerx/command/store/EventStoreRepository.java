@@ -1,10 +1,15 @@
 package com.ledgerx.command.store;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.ledgerx.command.events.EventJson;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,40 +19,154 @@ public class EventStoreRepository {
   private final JdbcTemplate jdbc; private final ObjectMapper om;
   public EventStoreRepository(JdbcTemplate jdbc, ObjectMapper om){ this.jdbc=jdbc; this.om=om; }
 
-  public void append(String aggType, String aggId, long version, String eventType,
-                     Object payload, Map<String,Object> metadata){
+  /** Pass as expectedVersion to append at whatever the current head is. */
+  public static final long ANY_VERSION = -1L;
+
+  /** Events for one stream, appended on top of expectedVersion. */
+  public record StreamAppend(String aggType, String aggId, long expectedVersion, List<NewEvent> events) {}
+
+  private static final String HEAD_EXPECTED = """
+      INSERT INTO event_streams AS s (aggregate_type, aggregate_id, version) VALUES (?, ?, ?)
+      ON CONFLICT (aggregate_type, aggregate_id) DO UPDATE SET version = EXCLUDED.version
+      WHERE s.version = ?
+      RETURNING s.version
+    """;
+  private static final String HEAD_ANY = """
+      INSERT INTO event_streams AS s (aggregate_type, aggregate_id, version) VALUES (?, ?, ?)
+      ON CONFLICT (aggregate_type, aggregate_id) DO UPDATE SET version = s.version + EXCLUDED.version
+      RETURNING s.version
+    """;
+  private static final String EVENTS = """
+      )
+      INSERT INTO event_store(aggregate_type, aggregate_id, version, event_type, payload, metadata)
+      SELECT ?, ?, head.version - ? + e.ord, e.event_type, e.payload::jsonb, e.metadata::jsonb
+      FROM head, unnest(?::text[], ?::text[], ?::text[]) WITH ORDINALITY AS e(event_type, payload, metadata, ord)
+    """;
+  private static final String APPEND_EXPECTED = "WITH head AS (" + HEAD_EXPECTED + EVENTS;
+  private static final String APPEND_ANY = "WITH head AS (" + HEAD_ANY + EVENTS + " RETURNING version";
+
+  /**
+   * Appends events at {@code expectedVersion + 1 ..} in one statement. The stream head in
+   * event_streams is moved only if it still equals expectedVersion; otherwise nothing is written and a
+   * {@link AppendResult.ConcurrencyConflict} is returned instead of a unique-constraint exception.
+   * Payloads of existing events are never read.
+   */
+  public AppendResult append(String aggType, String aggId, long expectedVersion, NewEvent... events){
+    var a = new StreamAppend(aggType, aggId, expectedVersion, List.of(events));
+    if (expectedVersion != ANY_VERSION) return appendAll(List.of(a)).get(0);
+    List<Long> versions = jdbc.query(con -> {
+      var ps = con.prepareStatement(APPEND_ANY);
+      bind(con, ps, a);
+      return ps;
+    }, (rs, i) -> rs.getLong(1));
+    return new AppendResult.Appended(versions.stream().mapToLong(Long::longValue).max().getAsLong());
+  }
+
+  /**
+   * Appends to several streams with explicit expected versions as a single JDBC batch (one round trip).
+   * Results are positional; each stream succeeds or conflicts on its own, so callers that need
+   * all-or-nothing must run this inside a transaction and abort on any conflict.
+   */
+  public List<AppendResult> appendAll(List<StreamAppend> appends){
+    if (appends.isEmpty()) return List.of();
+    for (var a : appends) {
+      if (a.events().isEmpty()) throw new IllegalArgumentException("no events to append");
+      if (a.expectedVersion() == ANY_VERSION) throw new IllegalArgumentException("appendAll needs explicit versions");
+    }
+    int[] counts = jdbc.execute((ConnectionCallback<int[]>) con -> {
+      try (var ps = con.prepareStatement(APPEND_EXPECTED)) {
+        for (var a : appends) { bind(con, ps, a); ps.addBatch(); }
+        return ps.executeBatch();
+      }
+    });
+    List<AppendResult> out = new ArrayList<>(appends.size());
+    for (int k = 0; k < appends.size(); k++) {
+      var a = appends.get(k);
+      out.add(counts[k] == 0
+          ? new AppendResult.ConcurrencyConflict(a.aggType(), a.aggId(), a.expectedVersion(), currentVersion(a.aggType(), a.aggId()))
+          : new AppendResult.Appended(a.expectedVersion() + a.events().size()));
+    }
+    return out;
+  }
+
+  private void bind(Connection con, PreparedStatement ps, StreamAppend a) throws SQLException {
+    int n = a.events().size();
+    String[] types = new String[n], payloads = new String[n], metas = new String[n];
     try {
-      jdbc.update("""
-        INSERT INTO event_store(aggregate_type,aggregate_id,version,event_type,payload,metadata)
-        VALUES (?,?,?,?,?::jsonb,?::jsonb)
-      """, aggType, aggId, version, eventType,
-          om.writeValueAsString(payload), om.writeValueAsString(metadata));
+      for (int k = 0; k < n; k++) {
+        var e = a.events().get(k);
+        types[k] = e.type();
+        payloads[k] = EventJson.write(e.event());
+        metas[k] = om.writeValueAsString(e.metadata());
+      }
     } catch (Exception e){ throw new RuntimeException(e); }
+    boolean any = a.expectedVersion() == ANY_VERSION;
+    int p = 1;
+    ps.setString(p++, a.aggType());
+    ps.setString(p++, a.aggId());
+    ps.setLong(p++, any ? n : a.expectedVersion() + n);
+    if (!any) ps.setLong(p++, a.expectedVersion());
+    ps.setString(p++, a.aggType());
+    ps.setString(p++, a.aggId());
+    ps.setLong(p++, n);
+    ps.setArray(p++, con.createArrayOf("text", types));
+    ps.setArray(p++, con.createArrayOf("text", payloads));
+    ps.setArray(p, con.createArrayOf("text", metas));
+  }
+
+  /** Head version of a stream (0 if it has no events), read from event_streams by primary key. */
+  public long currentVersion(String aggType, String aggId){
+    List<Long> v = jdbc.queryForList(
+        "SELECT version FROM event_streams WHERE aggregate_type=? AND aggregate_id=?", Long.class, aggType, aggId);
+    return v.isEmpty() ? 0L : v.get(0);
   }
 
-  /** Loads events and parses JSONB payloads into Maps so callers don't see PGobject. */
-  public List<Map<String,Object>> load(String aggType, String aggId){
+  /**
+   * Row-locks the heads of the given streams in aggregate-id order (deterministic, so two commands locking
+   * the same pair cannot deadlock) and returns their versions. Streams with no events are absent from the map.
+   * Must run inside a transaction.
+   */
+  public Map<String,Long> lockStreams(String aggType, List<String> aggIds){
+    Map<String,Long> out = new HashMap<>();
+    jdbc.query("""
+        SELECT aggregate_id, version FROM event_streams
+        WHERE aggregate_type=? AND aggregate_id = ANY(?)
+        ORDER BY aggregate_id
+        FOR UPDATE
+      """,
+      ps -> {
+        ps.setString(1, aggType);
+        ps.setArray(2, ps.getConnection().createArrayOf("text", aggIds.stream().sorted().toArray()));
+      },
+      rs -> { out.put(rs.getString(1), rs.getLong(2)); });
+    return out;
+  }
+
+  /** Loads a whole stream as typed events. */
+  public List<StoredEvent> load(String aggType, String aggId){
+    return loadAfter(aggType, aggId, 0L);
+  }
+
+  /**
+   * Loads only the events with version &gt; afterVersion (the tail after a snapshot). Payloads are
+   * streamed straight into {@link com.ledgerx.command.events.LedgerEvent} records, upcast if legacy.
+   */
+  public List<StoredEvent> loadAfter(String aggType, String aggId, long afterVersion){
     return jdbc.query("""
-        SELECT event_type, payload::text AS payload
+        SELECT version, event_type, payload::text AS payload
         FROM event_store
-        WHERE aggregate_type=? AND aggregate_id=?
+        WHERE aggregate_type=? AND aggregate_id=? AND version > ?
         ORDER BY version
       """,
-      (rs, i) -> {
-        String eventType = rs.getString("event_type");
-        String payloadJson = rs.getString("payload"); // JSON as text
-        Map<String,Object> payload;
-        try {
-          payload = om.readValue(payloadJson, new TypeReference<Map<String,Object>>() {});
-        } catch (Exception e) {
-          throw new RuntimeException(e);
-        }
-        Map<String,Object> row = new HashMap<>();
-        row.put("event_type", eventType);
-        row.put("payload", payload);
-        return row;
-      },
-      aggType, aggId
+      (rs, i) -> new StoredEvent(rs.getLong(1), EventJson.read(rs.getString(2), rs.getString(3))),
+      aggType, aggId, afterVersion
     );
   }
+
+  /** Distinct aggregate ids of a type, used by admin rebuild tooling. */
+  public List<String> aggregateIds(String aggType){
+    return jdbc.queryForList(
+        "SELECT DISTINCT aggregate_id FROM event_store WHERE aggregate_type=? ORDER BY aggregate_id",
+        String.class, aggType);
+  }
 }
\ No newline at end of file
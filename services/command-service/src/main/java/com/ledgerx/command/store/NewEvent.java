@@ -0,0 +1,10 @@
+package com.ledgerx.command.store;
+
+import com.ledgerx.command.events.LedgerEvent;
+
+import java.util.Map;
+
+/** An event to append; the store assigns its version. */
+public record NewEvent(LedgerEvent event, Map<String,Object> metadata) {
+  public String type(){ return event.type(); }
+}
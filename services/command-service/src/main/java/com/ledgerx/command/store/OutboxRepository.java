@@ -1,22 +1,55 @@
 package com.ledgerx.command.store;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ledgerx.command.codec.EventCodec;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Map;
 
 @Repository
 public class OutboxRepository {
-  private final JdbcTemplate jdbc; private final ObjectMapper om;
-  public OutboxRepository(JdbcTemplate jdbc, ObjectMapper om){ this.jdbc=jdbc; this.om=om; }
+  private final JdbcTemplate jdbc; private final ObjectMapper om; private final EventCodec codec;
+  public OutboxRepository(JdbcTemplate jdbc, ObjectMapper om, EventCodec codec){ this.jdbc=jdbc; this.om=om; this.codec=codec; }
+
+  public record OutboxRecord(String topic, String key, Object value, Map<String,Object> headers) {}
 
   public void stage(String topic, String key, Object value, Map<String,Object> headers){
+    stageAll(List.of(new OutboxRecord(topic, key, value, headers)));
+  }
+
+  /**
+   * Stages several records with one multi-row INSERT; ids follow list order. Event envelopes for
+   * binary topics are encoded here and stored in {@code value_bin}; everything else goes in as JSON.
+   */
+  public void stageAll(List<OutboxRecord> records){
+    if (records.isEmpty()) return;
+    int n = records.size();
+    String[] topics = new String[n], keys = new String[n], values = new String[n], headers = new String[n];
+    byte[][] bins = new byte[n][];
     try {
-      jdbc.update("""
-        INSERT INTO outbox(topic,key,value,headers)
-        VALUES (?,?,?::jsonb,?::jsonb)
-      """, topic, key, om.writeValueAsString(value), om.writeValueAsString(headers));
+      for (int k = 0; k < n; k++) {
+        var r = records.get(k);
+        topics[k] = r.topic(); keys[k] = r.key();
+        if (codec.binary(r.topic())) bins[k] = codec.encode(r.value());
+        if (bins[k] == null) values[k] = om.writeValueAsString(r.value());
+        headers[k] = om.writeValueAsString(r.headers());
+      }
     } catch(Exception e){ throw new RuntimeException(e); }
+    jdbc.update(con -> {
+      var ps = con.prepareStatement("""
+        INSERT INTO outbox(topic,key,value,value_bin,headers)
+        SELECT r.topic, r.key, r.value::jsonb, r.value_bin, r.headers::jsonb
+        FROM unnest(?::text[], ?::text[], ?::text[], ?::bytea[], ?::text[]) WITH ORDINALITY AS r(topic, key, value, value_bin, headers, ord)
+        ORDER BY r.ord
+      """);
+      ps.setArray(1, con.createArrayOf("text", topics));
+      ps.setArray(2, con.createArrayOf("text", keys));
+      ps.setArray(3, con.createArrayOf("text", values));
+      ps.setArray(4, con.createArrayOf("bytea", bins));
+      ps.setArray(5, con.createArrayOf("text", headers));
+      return ps;
+    });
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.ledgerx.command.store;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public class SnapshotRepository {
+  private final JdbcTemplate jdbc;
+  public SnapshotRepository(JdbcTemplate jdbc){ this.jdbc=jdbc; }
+
+  public record AccountSnapshot(String accountId, long version, long balanceCents, String currency, Instant takenAt) {}
+
+  public Optional<AccountSnapshot> latest(String accountId){
+    List<AccountSnapshot> rows = jdbc.query("""
+        SELECT account_id, version, balance_cents, currency, taken_at
+        FROM account_snapshots WHERE account_id=?
+      """,
+      (rs, i) -> new AccountSnapshot(rs.getString("account_id"), rs.getLong("version"),
+          rs.getLong("balance_cents"), rs.getString("currency"), rs.getTimestamp("taken_at").toInstant()),
+      accountId);
+    return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+  }
+
+  /** Upserts the snapshot; an older version never overwrites a newer one. */
+  public void save(String accountId, long version, long balanceCents, String currency){
+    jdbc.update("""
+      INSERT INTO account_snapshots(account_id, version, balance_cents, currency, taken_at)
+      VALUES (?,?,?,?,NOW())
+      ON CONFLICT (account_id) DO UPDATE SET
+        version=EXCLUDED.version,
+        balance_cents=EXCLUDED.balance_cents,
+        currency=COALESCE(EXCLUDED.currency, account_snapshots.currency),
+        taken_at=EXCLUDED.taken_at
+      WHERE account_snapshots.version < EXCLUDED.version
+    """, accountId, version, balanceCents, currency);
+  }
+
+  /** Unconditional overwrite, used by rebuild after a full replay. */
+  public void replace(String accountId, long version, long balanceCents, String currency){
+    jdbc.update("""
+      INSERT INTO account_snapshots(account_id, version, balance_cents, currency, taken_at)
+      VALUES (?,?,?,?,NOW())
+      ON CONFLICT (account_id) DO UPDATE SET
+        version=EXCLUDED.version,
+        balance_cents=EXCLUDED.balance_cents,
+        currency=COALESCE(EXCLUDED.currency, account_snapshots.currency),
+        taken_at=EXCLUDED.taken_at
+    """, accountId, version, balanceCents, currency);
+  }
+}
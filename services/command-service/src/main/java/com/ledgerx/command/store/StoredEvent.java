@@ -0,0 +1,6 @@
+package com.ledgerx.command.store;
+
+import com.ledgerx.command.events.LedgerEvent;
+
+/** An event read back from a stream. */
+public record StoredEvent(long version, LedgerEvent event) {}
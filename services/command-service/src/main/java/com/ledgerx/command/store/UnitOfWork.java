@@ -0,0 +1,88 @@
+package com.ledgerx.command.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buffers the event appends of one command together with their outbox envelopes and writes them at
+ * {@link #flush()}: explicit-version appends as one JDBC batch, {@link EventStoreRepository#ANY_VERSION}
+ * appends one statement each, then every outbox record with one multi-row INSERT. Create one per command;
+ * not thread-safe. Run inside the command's transaction when all-or-nothing is required.
+ */
+public final class UnitOfWork {
+  private final EventStoreRepository store;
+  private final OutboxRepository outbox;
+  private final Map<StreamKey, Pending> pending = new LinkedHashMap<>();
+  private final Map<StreamKey, Long> heads = new HashMap<>();
+
+  private record StreamKey(String aggType, String aggId) {}
+
+  private static final class Pending {
+    final long expectedVersion; final String topic; final List<NewEvent> events = new ArrayList<>();
+    Pending(long expectedVersion, String topic){ this.expectedVersion = expectedVersion; this.topic = topic; }
+  }
+
+  public UnitOfWork(EventStoreRepository store, OutboxRepository outbox){
+    this.store = store; this.outbox = outbox;
+  }
+
+  /**
+   * Buffers events for a stream and their outbox envelopes on {@code topic} (keyed by aggregate id).
+   * A second call for the same stream must continue from the buffered head.
+   * @return the version the last event will get, or ANY_VERSION if it is only known after flush
+   */
+  public long append(String aggType, String aggId, long expectedVersion, String topic, NewEvent... events){
+    var key = new StreamKey(aggType, aggId);
+    var p = pending.get(key);
+    if (p == null) {
+      p = new Pending(expectedVersion, topic);
+      pending.put(key, p);
+    } else if (expectedVersion != (p.expectedVersion == EventStoreRepository.ANY_VERSION
+        ? EventStoreRepository.ANY_VERSION : p.expectedVersion + p.events.size())) {
+      throw new IllegalStateException("append to " + aggType + " " + aggId + " does not continue the buffered stream");
+    }
+    p.events.addAll(Arrays.asList(events));
+    return p.expectedVersion == EventStoreRepository.ANY_VERSION
+        ? EventStoreRepository.ANY_VERSION : p.expectedVersion + p.events.size();
+  }
+
+  /** Writes everything buffered; throws ConcurrencyConflictException if any stream moved. */
+  public void flush(){
+    if (pending.isEmpty()) return;
+    List<StreamKey> keys = new ArrayList<>();
+    List<EventStoreRepository.StreamAppend> batch = new ArrayList<>();
+    pending.forEach((k, p) -> {
+      if (p.expectedVersion == EventStoreRepository.ANY_VERSION) {
+        heads.put(k, store.append(k.aggType(), k.aggId(), p.expectedVersion, p.events.toArray(NewEvent[]::new)).orThrow());
+      } else {
+        keys.add(k);
+        batch.add(new EventStoreRepository.StreamAppend(k.aggType(), k.aggId(), p.expectedVersion, p.events));
+      }
+    });
+    var results = store.appendAll(batch);
+    for (int i = 0; i < results.size(); i++) heads.put(keys.get(i), results.get(i).orThrow());
+
+    List<OutboxRepository.OutboxRecord> records = new ArrayList<>();
+    pending.forEach((k, p) -> {
+      long v = heads.get(k) - p.events.size();
+      for (var e : p.events) {
+        Map<String,Object> value = Map.<String,Object>of("eventType", e.type(), "aggregateId", k.aggId(), "version", ++v,
+            "payload", e.event(), "metadata", e.metadata());
+        records.add(new OutboxRepository.OutboxRecord(p.topic, k.aggId(), value, Map.<String,Object>of()));
+      }
+    });
+    outbox.stageAll(records);
+    pending.clear();
+  }
+
+  /** Head version of a stream written by the last flush. */
+  public long version(String aggType, String aggId){
+    Long v = heads.get(new StreamKey(aggType, aggId));
+    if (v == null) throw new IllegalStateException(aggType + " " + aggId + " was not flushed by this unit of work");
+    return v;
+  }
+}
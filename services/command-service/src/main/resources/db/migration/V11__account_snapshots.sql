@@ -0,0 +1,7 @@
+-- Latest (balance, version) per account so loads replay only the tail of the stream.
+CREATE TABLE IF NOT EXISTS account_snapshots (
+  account_id TEXT PRIMARY KEY,
+  version BIGINT NOT NULL,
+  balance_cents BIGINT NOT NULL,
+  taken_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
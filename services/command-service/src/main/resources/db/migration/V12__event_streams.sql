@@ -0,0 +1,11 @@
+-- One row per stream holding its head version: O(1) version lookup and the optimistic-concurrency check.
+CREATE TABLE IF NOT EXISTS event_streams (
+  aggregate_type TEXT NOT NULL,
+  aggregate_id TEXT NOT NULL,
+  version BIGINT NOT NULL,
+  PRIMARY KEY (aggregate_type, aggregate_id)
+);
+
+INSERT INTO event_streams(aggregate_type, aggregate_id, version)
+SELECT aggregate_type, aggregate_id, MAX(version) FROM event_store GROUP BY aggregate_type, aggregate_id
+ON CONFLICT (aggregate_type, aggregate_id) DO NOTHING;
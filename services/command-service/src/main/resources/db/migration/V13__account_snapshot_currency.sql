@@ -0,0 +1 @@
+ALTER TABLE account_snapshots ADD COLUMN IF NOT EXISTS currency CHAR(3);
@@ -0,0 +1,35 @@
+-- Partition idempotency_keys by UTC day so expired keys are dropped a partition at a time.
+-- The key must be unique within the retention window, and a partitioned table's unique index has to
+-- include the partition column, so partitions are keyed by a day column rather than created_at itself.
+ALTER TABLE idempotency_keys RENAME TO idempotency_keys_legacy;
+ALTER TABLE idempotency_keys_legacy RENAME CONSTRAINT idempotency_keys_pkey TO idempotency_keys_legacy_pkey;
+
+CREATE TABLE idempotency_keys (
+  idem_key TEXT NOT NULL,
+  request_hash TEXT NOT NULL,
+  response JSONB,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  created_on DATE NOT NULL DEFAULT (NOW() AT TIME ZONE 'UTC')::date,
+  PRIMARY KEY (idem_key, created_on)
+) PARTITION BY RANGE (created_on);
+
+-- catches rows for days the retention job has not created a partition for yet
+CREATE TABLE idempotency_keys_default PARTITION OF idempotency_keys DEFAULT;
+
+DO $$
+DECLARE
+  d DATE := COALESCE((SELECT MIN((created_at AT TIME ZONE 'UTC')::date) FROM idempotency_keys_legacy),
+                     (NOW() AT TIME ZONE 'UTC')::date);
+BEGIN
+  WHILE d <= (NOW() AT TIME ZONE 'UTC')::date + 2 LOOP
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF idempotency_keys FOR VALUES FROM (%L) TO (%L)',
+                   'idempotency_keys_p' || to_char(d, 'YYYYMMDD'), d, d + 1);
+    d := d + 1;
+  END LOOP;
+END $$;
+
+INSERT INTO idempotency_keys(idem_key, request_hash, response, created_at, created_on)
+SELECT idem_key, request_hash, response, created_at, (created_at AT TIME ZONE 'UTC')::date
+FROM idempotency_keys_legacy;
+
+DROP TABLE idempotency_keys_legacy;
@@ -0,0 +1,11 @@
+-- Wake the outbox publisher as soon as staged rows commit. Statement-level, so a batch of rows sends one
+-- notification; Postgres also folds identical notifications within a transaction and delivers on commit.
+CREATE OR REPLACE FUNCTION outbox_notify() RETURNS trigger AS $$
+BEGIN
+  PERFORM pg_notify('ledgerx_outbox', '');
+  RETURN NULL;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS outbox_notify ON outbox;
+CREATE TRIGGER outbox_notify AFTER INSERT ON outbox
+  FOR EACH STATEMENT EXECUTE FUNCTION outbox_notify();
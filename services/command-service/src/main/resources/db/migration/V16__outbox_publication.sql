@@ -0,0 +1,14 @@
+-- Publication read by the CDC outbox relay (ledgerx.outbox.mode=cdc). Inserts only: the relay never
+-- needs updates or deletes. Harmless when the relay is not used.
+DO $$
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM pg_publication WHERE pubname = 'ledgerx_outbox') THEN
+    CREATE PUBLICATION ledgerx_outbox FOR TABLE outbox WITH (publish = 'insert');
+  END IF;
+END $$;
+
+-- One row per relay slot; backfilled_at is set once rows left unsent by the poll publisher were sent.
+CREATE TABLE IF NOT EXISTS outbox_relay_slots (
+  slot_name TEXT PRIMARY KEY,
+  backfilled_at TIMESTAMPTZ
+);
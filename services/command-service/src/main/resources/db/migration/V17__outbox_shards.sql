@@ -0,0 +1,19 @@
+-- Fixed set of 64 outbox shards derived from the key hash; publisher workers lease subsets of them.
+-- Same key -> same shard, so per-aggregate order only depends on one shard being drained in id order.
+ALTER TABLE outbox ADD COLUMN IF NOT EXISTS shard SMALLINT
+  GENERATED ALWAYS AS (((hashtext(key) & 2147483647) % 64)::smallint) STORED;
+
+DROP INDEX IF EXISTS idx_outbox_unsent;
+CREATE INDEX IF NOT EXISTS idx_outbox_unsent_shard ON outbox(shard, id) WHERE sent_at IS NULL;
+
+CREATE TABLE IF NOT EXISTS outbox_shard_leases (
+  shard SMALLINT PRIMARY KEY,
+  owner TEXT,
+  expires_at TIMESTAMPTZ NOT NULL DEFAULT 'epoch'
+);
+INSERT INTO outbox_shard_leases(shard) SELECT s FROM generate_series(0, 63) s ON CONFLICT DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS outbox_publishers (
+  owner TEXT PRIMARY KEY,
+  heartbeat_at TIMESTAMPTZ NOT NULL
+);
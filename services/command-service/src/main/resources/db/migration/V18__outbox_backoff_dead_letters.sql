@@ -0,0 +1,22 @@
+-- Retry backoff for outbox rows that failed to publish. NULL means never failed; the publisher only
+-- claims a row once next_attempt_at has passed, and holds back later rows of the same key until then.
+ALTER TABLE outbox ADD COLUMN IF NOT EXISTS next_attempt_at TIMESTAMPTZ;
+ALTER TABLE outbox ADD COLUMN IF NOT EXISTS last_error TEXT;
+
+-- Only rows that are backing off, so the per-key hold-back check stays cheap.
+CREATE INDEX IF NOT EXISTS idx_outbox_backoff ON outbox(topic, key, id)
+  WHERE sent_at IS NULL AND next_attempt_at IS NOT NULL;
+
+-- Rows that failed ledgerx.outbox.retry.max-attempts times. They are moved here so later rows of the
+-- same key can proceed; /admin/outbox/dead-letters lists, replays or discards them.
+CREATE TABLE IF NOT EXISTS outbox_dead_letters (
+  id BIGINT PRIMARY KEY,
+  topic TEXT NOT NULL,
+  key TEXT NOT NULL,
+  value JSONB NOT NULL,
+  headers JSONB NOT NULL DEFAULT '{}'::jsonb,
+  created_at TIMESTAMPTZ NOT NULL,
+  attempts INT NOT NULL,
+  last_error TEXT,
+  quarantined_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
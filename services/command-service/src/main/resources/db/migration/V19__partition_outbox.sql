@@ -0,0 +1,69 @@
+-- Partition the outbox by UTC day of created_at, so published rows are dropped a partition at a time
+-- (OutboxRetention) instead of piling up. Only unsent rows are carried over; sent rows are history.
+-- The publication is pointed at the new table after the copy, so the copy is not relayed again.
+ALTER TABLE outbox RENAME TO outbox_legacy;
+ALTER TABLE outbox_legacy RENAME CONSTRAINT outbox_pkey TO outbox_legacy_pkey;
+DROP INDEX IF EXISTS idx_outbox_unsent_shard;
+DROP INDEX IF EXISTS idx_outbox_backoff;
+DROP TRIGGER IF EXISTS outbox_notify ON outbox_legacy;
+
+CREATE TABLE outbox (
+  id BIGINT NOT NULL DEFAULT nextval('outbox_id_seq'),
+  topic TEXT NOT NULL,
+  key TEXT NOT NULL,
+  value JSONB NOT NULL,
+  headers JSONB NOT NULL DEFAULT '{}'::jsonb,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  sent_at TIMESTAMPTZ,
+  attempts INT NOT NULL DEFAULT 0,
+  shard SMALLINT GENERATED ALWAYS AS (((hashtext(key) & 2147483647) % 64)::smallint) STORED,
+  next_attempt_at TIMESTAMPTZ,
+  last_error TEXT,
+  PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+ALTER SEQUENCE outbox_id_seq OWNED BY outbox.id;
+
+-- catches rows for days the retention job has not created a partition for yet
+CREATE TABLE outbox_default PARTITION OF outbox DEFAULT;
+
+DO $$
+DECLARE
+  d DATE := COALESCE((SELECT MIN((created_at AT TIME ZONE 'UTC')::date) FROM outbox_legacy WHERE sent_at IS NULL),
+                     (NOW() AT TIME ZONE 'UTC')::date);
+BEGIN
+  WHILE d <= (NOW() AT TIME ZONE 'UTC')::date + 2 LOOP
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF outbox FOR VALUES FROM (%L) TO (%L)',
+                   'outbox_p' || to_char(d, 'YYYYMMDD'), d::text || ' 00:00+00', (d + 1)::text || ' 00:00+00');
+    d := d + 1;
+  END LOOP;
+END $$;
+
+CREATE INDEX IF NOT EXISTS idx_outbox_unsent_shard ON outbox(shard, id) WHERE sent_at IS NULL;
+-- lets the backlog estimate find the oldest unsent id without counting rows
+CREATE INDEX IF NOT EXISTS idx_outbox_unsent_id ON outbox(id) WHERE sent_at IS NULL;
+CREATE INDEX IF NOT EXISTS idx_outbox_backoff ON outbox(topic, key, id)
+  WHERE sent_at IS NULL AND next_attempt_at IS NOT NULL;
+
+INSERT INTO outbox(id, topic, key, value, headers, created_at, sent_at, attempts, next_attempt_at, last_error)
+SELECT id, topic, key, value, headers, created_at, sent_at, attempts, next_attempt_at, last_error
+FROM outbox_legacy WHERE sent_at IS NULL;
+
+DROP TABLE outbox_legacy;
+
+CREATE TRIGGER outbox_notify AFTER INSERT ON outbox
+  FOR EACH STATEMENT EXECUTE FUNCTION outbox_notify();
+
+-- Relay inserts under the parent's name rather than the partition's.
+DO $$
+BEGIN
+  IF EXISTS (SELECT 1 FROM pg_publication WHERE pubname = 'ledgerx_outbox') THEN
+    ALTER PUBLICATION ledgerx_outbox SET TABLE outbox;
+    ALTER PUBLICATION ledgerx_outbox SET (publish_via_partition_root = true);
+  ELSE
+    CREATE PUBLICATION ledgerx_outbox FOR TABLE outbox WITH (publish = 'insert', publish_via_partition_root = true);
+  END IF;
+END $$;
+
+-- Highest outbox id the CDC relay has confirmed, persisted periodically; what counts as published in
+-- cdc mode, where relayed rows keep sent_at NULL.
+ALTER TABLE outbox_relay_slots ADD COLUMN IF NOT EXISTS relayed_id BIGINT;
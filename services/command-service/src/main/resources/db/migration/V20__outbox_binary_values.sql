@@ -0,0 +1,8 @@
+-- Records for topics in ledgerx.kafka.binary-topics are staged already encoded (EventCodec) and sent
+-- as-is, so they skip JSON on the way in and out. Exactly one of value / value_bin is set.
+ALTER TABLE outbox ALTER COLUMN value DROP NOT NULL;
+ALTER TABLE outbox ADD COLUMN IF NOT EXISTS value_bin BYTEA;
+ALTER TABLE outbox ADD CONSTRAINT outbox_value_present CHECK ((value IS NULL) <> (value_bin IS NULL));
+
+ALTER TABLE outbox_dead_letters ALTER COLUMN value DROP NOT NULL;
+ALTER TABLE outbox_dead_letters ADD COLUMN IF NOT EXISTS value_bin BYTEA;
@@ -0,0 +1,25 @@
+-- Background replays of event_store to Kafka (/admin/replay). A job walks event_store in id order
+-- within its filters and checkpoints the highest id whose records Kafka acknowledged, so a job that was
+-- interrupted (its owner stopped heartbeating) is picked up by another instance from there.
+CREATE TABLE IF NOT EXISTS replay_jobs (
+  id BIGSERIAL PRIMARY KEY,
+  aggregate_type TEXT,                 -- NULL: every type with a topic
+  aggregate_id TEXT,                   -- NULL: every stream
+  from_id BIGINT NOT NULL DEFAULT 0,   -- event_store.id after which the job starts
+  to_id BIGINT NOT NULL,               -- last event_store.id included; the head when the job was created
+  from_time TIMESTAMPTZ,               -- on event_timestamp, inclusive
+  to_time TIMESTAMPTZ,                 -- exclusive
+  rate_per_sec INT NOT NULL DEFAULT 0, -- 0: unthrottled
+  status TEXT NOT NULL DEFAULT 'RUNNING'
+    CHECK (status IN ('RUNNING', 'PAUSED', 'CANCELLED', 'COMPLETED', 'FAILED')),
+  checkpoint_id BIGINT NOT NULL,       -- every event up to here (within the filters) was acknowledged
+  published BIGINT NOT NULL DEFAULT 0,
+  owner TEXT,
+  heartbeat_at TIMESTAMPTZ NOT NULL DEFAULT 'epoch',
+  error TEXT,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  finished_at TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS idx_replay_jobs_running ON replay_jobs(heartbeat_at) WHERE status = 'RUNNING';
@@ -0,0 +1,9 @@
+-- The poll publisher claims a batch in a short transaction and sends it after that commits, instead of
+-- holding the rows locked through the ack wait. A claimed row is skipped, and holds back later rows of its
+-- key, until claimed_until; the publisher clears it when it marks the row. A claim left by a crashed
+-- worker simply runs out, and the row is sent again.
+ALTER TABLE outbox ADD COLUMN IF NOT EXISTS claimed_until TIMESTAMPTZ;
+
+-- Only rows claimed right now, so the per-key hold-back check stays cheap.
+CREATE INDEX IF NOT EXISTS idx_outbox_claimed ON outbox(topic, key, id)
+  WHERE sent_at IS NULL AND claimed_until IS NOT NULL;
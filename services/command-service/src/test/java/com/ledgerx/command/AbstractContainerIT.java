@@ -0,0 +1,39 @@
+package com.ledgerx.command;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.redpanda.RedpandaContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Postgres and Redpanda for the integration tests. The containers are static fields, so every test
+ * class gets fresh ones started before it and stopped after it; the Spring context goes with them,
+ * otherwise a cached context would keep pointing at stopped containers.
+ */
+@Testcontainers
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public abstract class AbstractContainerIT {
+
+  // logical decoding for OutboxCdcRelayIT; harmless for the rest
+  @Container protected static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(DockerImageName.parse("postgres:16-alpine"))
+      .withDatabaseName("ledgerx").withUsername("ledgerx").withPassword("ledgerx")
+      .withCommand("postgres", "-c", "wal_level=logical");
+
+  @Container protected static final RedpandaContainer KAFKA = new RedpandaContainer("docker.redpanda.com/redpandadata/redpanda:v24.1.7");
+
+  @DynamicPropertySource
+  static void containerProps(DynamicPropertyRegistry r){
+    r.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+    r.add("spring.datasource.username", POSTGRES::getUsername);
+    r.add("spring.datasource.password", POSTGRES::getPassword);
+    r.add("spring.kafka.bootstrap-servers", KAFKA::getBootstrapServers);
+    // isolate Flyway
+    r.add("spring.flyway.table", () -> "flyway_history_command_test");
+    r.add("spring.flyway.baseline-on-migrate", () -> true);
+  }
+}
@@ -0,0 +1,66 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.app.AccountMailboxes;
+import com.ledgerx.command.app.AccountService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** One hot account hammered by many clients next to many cold accounts, dispatched through the mailboxes. */
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {"spring.task.scheduling.enabled=false", "ledgerx.outbox.enabled=false",
+    "ledgerx.mailbox.enabled=true"})
+class AccountMailboxStressIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(AccountMailboxStressIT.class);
+
+  @Autowired AccountService svc;
+  @Autowired AccountMailboxes mailboxes;
+  @Autowired JdbcTemplate jdbc;
+  @Autowired MeterRegistry meter;
+
+  @Test
+  void hot_account_serializes_without_conflicts() throws Exception {
+    String run = "mb_" + System.nanoTime(), hot = run + "_hot";
+    int cold = 200, clients = 64, perClient = 50;
+    svc.open(hot, "USD");
+    svc.credit(hot, 1_000_000L, "USD", hot + ":seed");
+    for (int c = 0; c < cold; c++) svc.open(run + "_cold_" + c, "USD");
+
+    double retriedBefore = meter.counter("ledgerx.append.conflicts", "outcome", "retried").count();
+    long t0 = System.nanoTime();
+    List<Future<?>> fs = new ArrayList<>();
+    try (var pool = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int c = 0; c < clients; c++) {
+        int client = c;
+        fs.add(pool.submit(() -> {
+          for (int k = 0; k < perClient; k++) {
+            String key = run + ":" + client + ":" + k;
+            mailboxes.call(hot, () -> svc.debit(hot, 10L, "USD", key + ":hot"));
+            String acc = run + "_cold_" + ((client * perClient + k) % cold);
+            mailboxes.call(acc, () -> svc.credit(acc, 10L, "USD", key + ":cold"));
+          }
+        }));
+      }
+      for (var f : fs) f.get();
+    }
+    double secs = (System.nanoTime() - t0) / 1e9;
+    double retried = meter.counter("ledgerx.append.conflicts", "outcome", "retried").count() - retriedBefore;
+    var wait = meter.timer("ledgerx.mailbox.wait");
+    log.info("commands={} ops/s={} conflict-retries={} mailbox-wait-max={}ms", 2 * clients * perClient,
+        Math.round(2 * clients * perClient / secs), (long) retried, "%.2f".formatted(wait.max(java.util.concurrent.TimeUnit.MILLISECONDS)));
+
+    Assertions.assertEquals(0.0, retried, "in-process ordering leaves nothing to retry");
+    Long events = jdbc.queryForObject(
+        "SELECT version FROM event_streams WHERE aggregate_type='Account' AND aggregate_id=?", Long.class, hot);
+    Assertions.assertEquals(2L + clients * perClient, events);
+  }
+}
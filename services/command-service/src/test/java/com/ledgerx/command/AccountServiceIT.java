@@ -1,43 +1,20 @@
 package com.ledgerx.command;
 
 import com.ledgerx.command.app.AccountService;
+import com.ledgerx.command.app.AccountSnapshots;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.test.context.DynamicPropertyRegistry;
-import org.springframework.test.context.DynamicPropertySource;
-
-import org.testcontainers.junit.jupiter.Testcontainers;
-import org.testcontainers.junit.jupiter.Container;
-import org.testcontainers.redpanda.RedpandaContainer;
-import org.testcontainers.containers.PostgreSQLContainer;
-import org.testcontainers.utility.DockerImageName;
 
 import java.util.Map;
 
-@Testcontainers
 @SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {"spring.task.scheduling.enabled=false", "ledgerx.outbox.enabled=false"})
-class AccountServiceIT {
-
-  @Container static PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(DockerImageName.parse("postgres:16-alpine"))
-      .withDatabaseName("ledgerx").withUsername("ledgerx").withPassword("ledgerx");
-
-  @Container static RedpandaContainer KAFKA = new RedpandaContainer("docker.redpanda.com/redpandadata/redpanda:v24.1.7");
-
-  @DynamicPropertySource
-  static void props(DynamicPropertyRegistry r){
-    r.add("spring.datasource.url", POSTGRES::getJdbcUrl);
-    r.add("spring.datasource.username", POSTGRES::getUsername);
-    r.add("spring.datasource.password", POSTGRES::getPassword);
-    r.add("spring.kafka.bootstrap-servers", KAFKA::getBootstrapServers);
-    // isolate Flyway
-    r.add("spring.flyway.table", () -> "flyway_history_command_test");
-    r.add("spring.flyway.baseline-on-migrate", () -> true);
-  }
+class AccountServiceIT extends AbstractContainerIT {
 
   @Autowired AccountService svc;
+  @Autowired AccountSnapshots snapshots;
   @Autowired JdbcTemplate jdbc;
 
   @Test
@@ -58,4 +35,17 @@ class AccountServiceIT {
         "SELECT COUNT(*) FROM event_store WHERE aggregate_type='Account' AND aggregate_id=?", Integer.class, acc);
     Assertions.assertEquals(2, count);
   }
-}
\ No newline at end of file
+
+  @Test
+  void credit_only_streams_are_snapshotted() {
+    var acc = "acc_snap_" + System.nanoTime();
+    svc.open(acc, "USD");
+    for (int i = 0; i < 99; i++) svc.credit(acc, 1L, "USD", acc + ":c" + i); // versions 2..100
+
+    var state = snapshots.load(acc);
+    Assertions.assertEquals(100L, state.version());
+    Assertions.assertEquals(99L, state.balanceCents());
+    Assertions.assertEquals(0, state.replayed());
+    Assertions.assertEquals(Boolean.TRUE, snapshots.verify(acc).get("ok"));
+  }
+}
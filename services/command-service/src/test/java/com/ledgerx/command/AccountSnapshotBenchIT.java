@@ -0,0 +1,74 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.app.AccountService;
+import com.ledgerx.command.app.AccountSnapshots;
+import com.ledgerx.command.store.EventStoreRepository;
+import com.ledgerx.command.store.SnapshotRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Debit latency vs. account age. Seeds long histories straight into event_store, then times debits
+ * with the full-replay path (snapshots disabled) and the snapshot + tail path.
+ */
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {"spring.task.scheduling.enabled=false", "ledgerx.outbox.enabled=false"})
+class AccountSnapshotBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(AccountSnapshotBenchIT.class);
+
+  @Autowired AccountService svc;
+  @Autowired AccountSnapshots snapshots;
+  @Autowired EventStoreRepository store;
+  @Autowired SnapshotRepository snapshotRepo;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void debit_latency_stays_flat_as_history_grows() {
+    var fullReplay = new AccountSnapshots(store, snapshotRepo, false, 100, Duration.ofMinutes(10));
+    for (int events : new int[]{1_000, 10_000, 50_000}) {
+      String acc = "acc_bench_" + events + "_" + System.nanoTime();
+      seed(acc, events);
+
+      long t0 = System.nanoTime();
+      fullReplay.load(acc);
+      double replayMs = (System.nanoTime() - t0) / 1e6;
+
+      snapshots.rebuild(acc);
+      List<Double> samples = new ArrayList<>();
+      for (int i = 0; i < 50; i++) {
+        long s = System.nanoTime();
+        svc.debit(acc, 1L, "USD", acc + ":d" + i);
+        samples.add((System.nanoTime() - s) / 1e6);
+      }
+      samples.sort(Double::compare);
+      double p50 = samples.get(samples.size() / 2);
+      log.info("{} events: full replay load {}ms, debit p50 {}ms", events, "%.2f".formatted(replayMs), "%.2f".formatted(p50));
+
+      // the warm path never replays more than the snapshot interval
+      Assertions.assertTrue(snapshots.load(acc).replayed() < 100);
+      Assertions.assertEquals(Boolean.TRUE, snapshots.verify(acc).get("ok"));
+    }
+  }
+
+  private void seed(String acc, int events){
+    jdbc.update("""
+      INSERT INTO event_store(aggregate_type,aggregate_id,version,event_type,payload,metadata)
+      VALUES ('Account', ?, 1, 'AccountOpened', jsonb_build_object('accountId', ?::text, 'currency', 'USD'), '{}'::jsonb)
+    """, acc, acc);
+    jdbc.update("""
+      INSERT INTO event_store(aggregate_type,aggregate_id,version,event_type,payload,metadata)
+      SELECT 'Account', ?, g, 'FundsCredited',
+             jsonb_build_object('accountId', ?::text, 'amountCents', 100, 'currency', 'USD'), '{}'::jsonb
+      FROM generate_series(2, ?) g
+    """, acc, acc, events);
+    jdbc.update("INSERT INTO event_streams(aggregate_type, aggregate_id, version) VALUES ('Account', ?, ?)", acc, events);
+  }
+}
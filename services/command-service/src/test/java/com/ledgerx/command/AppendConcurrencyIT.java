@@ -0,0 +1,61 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.app.AccountService;
+import com.ledgerx.command.store.ConcurrencyConflictException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {"spring.task.scheduling.enabled=false", "ledgerx.outbox.enabled=false",
+    "ledgerx.append.retry.max-attempts=64"})
+class AppendConcurrencyIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(AppendConcurrencyIT.class);
+
+  @Autowired AccountService svc;
+  @Autowired JdbcTemplate jdbc;
+  @Autowired MeterRegistry meter;
+
+  @Test
+  void concurrent_debits_never_overdraw_and_conflicts_are_retried() throws Exception {
+    var acc = "acc_occ_" + System.currentTimeMillis();
+    svc.open(acc, "USD");
+    svc.credit(acc, 10_000L, "USD", acc + ":seed");
+
+    int writers = 32;
+    var ok = new AtomicInteger(); var insufficient = new AtomicInteger(); var conflicts = new AtomicInteger();
+    List<Future<?>> fs = new ArrayList<>();
+    try (var pool = Executors.newFixedThreadPool(writers)) {
+      for (int i = 0; i < writers; i++) {
+        int n = i;
+        fs.add(pool.submit(() -> {
+          try { svc.debit(acc, 500L, "USD", acc + ":d" + n); ok.incrementAndGet(); }
+          catch (ConcurrencyConflictException e) { conflicts.incrementAndGet(); }
+          catch (IllegalStateException e) { insufficient.incrementAndGet(); }
+        }));
+      }
+      for (var f : fs) f.get();
+    }
+    double retried = meter.counter("ledgerx.append.conflicts", "outcome", "retried").count();
+    log.info("ok={} insufficient={} failed-conflict={} retried={}", ok.get(), insufficient.get(), conflicts.get(), (long) retried);
+
+    Assertions.assertEquals(20, ok.get(), "exactly the funded debits succeed");
+    Assertions.assertEquals(0, conflicts.get());
+    Long versions = jdbc.queryForObject(
+        "SELECT MAX(version) FROM event_store WHERE aggregate_type='Account' AND aggregate_id=?", Long.class, acc);
+    Long head = jdbc.queryForObject(
+        "SELECT version FROM event_streams WHERE aggregate_type='Account' AND aggregate_id=?", Long.class, acc);
+    Assertions.assertEquals(22L, versions);
+    Assertions.assertEquals(versions, head);
+  }
+}
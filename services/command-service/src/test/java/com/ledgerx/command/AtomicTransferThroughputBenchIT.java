@@ -0,0 +1,8 @@
+package com.ledgerx.command;
+
+import org.springframework.test.context.TestPropertySource;
+
+/** {@link TransferThroughputBenchIT} against the single-transaction transfer engine. */
+@TestPropertySource(properties = "ledgerx.transfer.mode=atomic")
+class AtomicTransferThroughputBenchIT extends TransferThroughputBenchIT {
+}
@@ -0,0 +1,64 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.app.AccountService;
+import com.ledgerx.command.app.GroupCommitter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Concurrent credits through the same entry point the controllers use. Runs the per-request path;
+ * {@link GroupCommitCreditThroughputBenchIT} runs it with group commit enabled.
+ */
+@Import(JdbcRoundTrips.class)
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {"spring.task.scheduling.enabled=false", "ledgerx.outbox.enabled=false"})
+class CreditThroughputBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(CreditThroughputBenchIT.class);
+
+  @Autowired AccountService accounts;
+  @Autowired GroupCommitter commands;
+
+  @Test
+  void credit_throughput() throws Exception {
+    int clients = 64, perClient = 200;
+    String run = getClass().getSimpleName() + "_" + System.nanoTime();
+    for (int c = 0; c < clients; c++) accounts.open(run + "_" + c, "USD");
+
+    JdbcRoundTrips.reset();
+    List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    long t0 = System.nanoTime();
+    List<Future<?>> fs = new ArrayList<>();
+    try (var pool = Executors.newFixedThreadPool(clients)) {
+      for (int c = 0; c < clients; c++) {
+        String acc = run + "_" + c;
+        fs.add(pool.submit(() -> {
+          for (int k = 0; k < perClient; k++) {
+            String key = acc + ":c" + k;
+            long s = System.nanoTime();
+            var r = commands.run(key, acc, () -> accounts.credit(acc, 1L, "USD", key));
+            latencies.add(System.nanoTime() - s);
+            Assertions.assertEquals("ok", r.get("status"));
+          }
+        }));
+      }
+      for (var f : fs) f.get();
+    }
+    double secs = (System.nanoTime() - t0) / 1e9;
+    int n = clients * perClient;
+    latencies.sort(Long::compare);
+    long commits = JdbcRoundTrips.COMMITS.get();
+    log.info("{}: commands={} ops/s={} commits={} p50={}ms p99={}ms", getClass().getSimpleName(), n, Math.round(n / secs), commits,
+        "%.2f".formatted(latencies.get(n / 2) / 1e6), "%.2f".formatted(latencies.get((int) (n * 0.99)) / 1e6));
+    Assertions.assertTrue(commits <= n, "a credit never takes more than one commit");
+  }
+}
@@ -0,0 +1,8 @@
+package com.ledgerx.command;
+
+import org.springframework.test.context.TestPropertySource;
+
+/** {@link CreditThroughputBenchIT} with commands coalesced by the group-commit writer. */
+@TestPropertySource(properties = "ledgerx.group-commit.enabled=true")
+class GroupCommitCreditThroughputBenchIT extends CreditThroughputBenchIT {
+}
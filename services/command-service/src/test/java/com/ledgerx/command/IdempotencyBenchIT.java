@@ -0,0 +1,54 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.idempotency.IdempotencyRepository;
+import com.ledgerx.command.idempotency.RequestFingerprint;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/** Statements and time per idempotency check for fresh keys, DB replays and in-process replays. */
+@Import(JdbcRoundTrips.class)
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {"spring.task.scheduling.enabled=false", "ledgerx.outbox.enabled=false"})
+class IdempotencyBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(IdempotencyBenchIT.class);
+
+  @Autowired IdempotencyRepository idem;
+
+  @Test
+  void reserve_and_replay_cost() {
+    int n = 2_000;
+    String run = "idem_" + System.nanoTime();
+    Map<String,Object> resp = Map.<String,Object>of("status","ok","version",1L);
+
+    JdbcRoundTrips.reset();
+    long t0 = System.nanoTime();
+    for (int i = 0; i < n; i++) {
+      String key = run + ":" + i;
+      Assertions.assertTrue(idem.beginOrGet(key, RequestFingerprint.of("credit", key, 1L, "USD")).isEmpty());
+      idem.complete(key, resp);
+    }
+    long reserveStatements = JdbcRoundTrips.STATEMENTS.get();
+    long t1 = System.nanoTime();
+
+    JdbcRoundTrips.reset();
+    for (int i = 0; i < n; i++) {
+      String key = run + ":" + i;
+      Assertions.assertEquals(resp, idem.beginOrGet(key, RequestFingerprint.of("credit", key, 1L, "USD")).orElseThrow());
+    }
+    long replayStatements = JdbcRoundTrips.STATEMENTS.get();
+    long t2 = System.nanoTime();
+
+    log.info("reserve+complete={}us ({} stmts), hot replay={}us ({} stmts)",
+        "%.1f".formatted((t1 - t0) / 1e3 / n), "%.2f".formatted(reserveStatements / (double) n),
+        "%.1f".formatted((t2 - t1) / 1e3 / n), "%.2f".formatted(replayStatements / (double) n));
+    // advisory lock + reserve + complete
+    Assertions.assertEquals(3L * n, reserveStatements);
+    Assertions.assertEquals(0L, replayStatements);
+  }
+}
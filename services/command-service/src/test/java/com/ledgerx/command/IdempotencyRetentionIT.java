@@ -0,0 +1,80 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.idempotency.IdempotencyRepository;
+import com.ledgerx.command.idempotency.IdempotencyRetention;
+import com.ledgerx.command.idempotency.RequestFingerprint;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+/** Keys outside the retention window behave as new; their expired partitions are detached and dropped. */
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {
+    "spring.task.scheduling.enabled=false", "ledgerx.outbox.enabled=false", "ledgerx.idempotency.retention-days=7"})
+class IdempotencyRetentionIT extends AbstractContainerIT {
+
+  @Autowired IdempotencyRepository idem;
+  @Autowired IdempotencyRetention retention;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void expired_keys_are_new_and_their_partitions_dropped() {
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    LocalDate old = today.minusDays(30), recent = today.minusDays(2);
+    for (LocalDate d : new LocalDate[]{old, recent})
+      jdbc.execute("CREATE TABLE IF NOT EXISTS idempotency_keys_p" + d.toString().replace("-", "")
+          + " PARTITION OF idempotency_keys FOR VALUES FROM ('" + d + "') TO ('" + d.plusDays(1) + "')");
+    String run = "ret_" + System.nanoTime();
+    jdbc.update("INSERT INTO idempotency_keys(idem_key, request_hash, response, created_on) VALUES (?,?,?::jsonb,?)",
+        run + ":old", RequestFingerprint.of("credit", "x"), "{\"status\":\"ok\"}", old);
+    jdbc.update("INSERT INTO idempotency_keys(idem_key, request_hash, response, created_on) VALUES (?,?,?::jsonb,?)",
+        run + ":recent", RequestFingerprint.of("credit", "y"), "{\"status\":\"ok\"}", recent);
+
+    // outside the window: new, even before the partition is gone
+    Assertions.assertTrue(idem.beginOrGet(run + ":old", RequestFingerprint.of("credit", "x")).isEmpty());
+    Assertions.assertEquals(Map.of("status", "ok"), idem.beginOrGet(run + ":recent", RequestFingerprint.of("credit", "y")).orElseThrow());
+
+    // a pre-fingerprint hash cannot be checked against the payload: its completed response is still
+    // replayed within the window, but an unfinished one is not run again
+    jdbc.update("INSERT INTO idempotency_keys(idem_key, request_hash, response, created_on) VALUES (?,?,?::jsonb,?)",
+        run + ":legacy", "legacy", "{\"status\":\"ok\"}", recent);
+    Assertions.assertEquals(Map.of("status", "ok"), idem.beginOrGet(run + ":legacy", RequestFingerprint.of("credit", "y")).orElseThrow());
+    jdbc.update("INSERT INTO idempotency_keys(idem_key, request_hash, response, created_on) VALUES (?,?,NULL,?)",
+        run + ":legacy-open", "legacy", recent);
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> idem.beginOrGet(run + ":legacy-open", RequestFingerprint.of("credit", "y")));
+    jdbc.update("INSERT INTO idempotency_keys(idem_key, request_hash, response, created_on) VALUES (?,?,?::jsonb,?)",
+        run + ":legacy-old", "legacy", "{\"status\":\"ok\"}", old);
+    Assertions.assertTrue(idem.beginOrGet(run + ":legacy-old", RequestFingerprint.of("credit", "y")).isEmpty());
+
+    retention.run();
+    Integer oldPartitions = jdbc.queryForObject(
+        "SELECT COUNT(*) FROM pg_class WHERE relname = ?", Integer.class, "idempotency_keys_p" + old.toString().replace("-", ""));
+    Assertions.assertEquals(0, oldPartitions);
+    Integer ahead = jdbc.queryForObject(
+        "SELECT COUNT(*) FROM pg_class WHERE relname = ?", Integer.class, "idempotency_keys_p" + today.plusDays(1).toString().replace("-", ""));
+    Assertions.assertEquals(1, ahead);
+    Assertions.assertEquals(Map.of("status", "ok"), idem.beginOrGet(run + ":recent", RequestFingerprint.of("credit", "y")).orElseThrow());
+  }
+
+  @Test
+  void rows_already_in_the_default_partition_move_into_a_late_partition() {
+    LocalDate day = LocalDate.now(ZoneOffset.UTC).plusDays(3);
+    String name = "idempotency_keys_p" + day.toString().replace("-", "");
+    jdbc.execute("DROP TABLE IF EXISTS " + name);
+    String key = "late_" + System.nanoTime();
+    jdbc.update("INSERT INTO idempotency_keys(idem_key, request_hash, response, created_on) VALUES (?,?,?::jsonb,?)",
+        key, "f1:x", "{\"status\":\"ok\"}", day);
+
+    retention.run();
+    Assertions.assertEquals(name, jdbc.queryForObject(
+        "SELECT tableoid::regclass::text FROM idempotency_keys WHERE idem_key = ?", String.class, key));
+    Assertions.assertEquals(0, jdbc.queryForObject(
+        "SELECT COUNT(*) FROM idempotency_keys_default WHERE created_on = ?", Integer.class, day));
+  }
+}
@@ -0,0 +1,61 @@
+package com.ledgerx.command;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test-only DataSource wrapper that counts statement executions (one network round trip each,
+ * a JDBC batch counts once) and commits, explicit or autocommit. Import into a benchmark with {@code @Import(JdbcRoundTrips.class)}.
+ */
+@TestConfiguration
+public class JdbcRoundTrips {
+  public static final AtomicLong STATEMENTS = new AtomicLong();
+  public static final AtomicLong COMMITS = new AtomicLong();
+
+  public static void reset(){ STATEMENTS.set(0); COMMITS.set(0); }
+
+  @Bean
+  static BeanPostProcessor countingDataSource(){
+    return new BeanPostProcessor() {
+      @Override public Object postProcessAfterInitialization(Object bean, String name){
+        if (!(bean instanceof DataSource ds)) return bean;
+        return Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class}, (p, m, a) -> {
+          Object r = invoke(ds, m, a);
+          return r instanceof Connection c ? connection(c) : r;
+        });
+      }
+    };
+  }
+
+  private static Connection connection(Connection c){
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (p, m, a) -> {
+      if (m.getName().equals("commit")) COMMITS.incrementAndGet();
+      Object r = invoke(c, m, a);
+      if (r instanceof Statement s) return statement(s, m.getReturnType());
+      return r;
+    });
+  }
+
+  private static Object statement(Statement s, Class<?> type){
+    return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type}, (p, m, a) -> {
+      if (m.getName().startsWith("execute")) {
+        STATEMENTS.incrementAndGet();
+        if (s.getConnection().getAutoCommit()) COMMITS.incrementAndGet(); // implicit commit
+      }
+      return invoke(s, m, a);
+    });
+  }
+
+  private static Object invoke(Object target, java.lang.reflect.Method m, Object[] a) throws Throwable {
+    try { return m.invoke(target, a); }
+    catch (InvocationTargetException e) { throw e.getCause(); }
+  }
+}
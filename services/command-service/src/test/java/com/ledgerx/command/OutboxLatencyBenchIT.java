@@ -0,0 +1,51 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.store.OutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commit-to-publish latency with LISTEN/NOTIFY wakeups: each row is staged in its own transaction and
+ * timed until the publisher marks it sent. The safety poll is pushed out to a minute so only the
+ * notification path can be what publishes.
+ */
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {"ledgerx.outbox.poll-interval=PT1M"})
+class OutboxLatencyBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(OutboxLatencyBenchIT.class);
+
+  @Autowired OutboxRepository outbox;
+  @Autowired JdbcTemplate jdbc;
+  @Autowired MeterRegistry meter;
+
+  @Test
+  void commit_to_publish_latency() throws Exception {
+    int n = 300;
+    List<Long> latencies = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      String key = "lat_" + System.nanoTime();
+      long t0 = System.nanoTime();
+      outbox.stage("ledgerx.accounts.events.v2", key, Map.<String,Object>of("n", i), Map.<String,Object>of()); // autocommit
+      while (jdbc.queryForObject("SELECT COUNT(*) FROM outbox WHERE key=? AND sent_at IS NOT NULL", Integer.class, key) == 0) {
+        Assertions.assertTrue(System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(10), "not published within 10s");
+      }
+      latencies.add(System.nanoTime() - t0);
+    }
+    latencies.sort(Long::compare);
+    var e2e = meter.get("ledgerx.outbox.end_to_end.latency").timer();
+    log.info("commit->sent p50={}ms p99={}ms; end_to_end timer mean={}ms max={}ms",
+        "%.2f".formatted(latencies.get(n / 2) / 1e6), "%.2f".formatted(latencies.get((int) (n * 0.99)) / 1e6),
+        "%.2f".formatted(e2e.mean(TimeUnit.MILLISECONDS)), "%.2f".formatted(e2e.max(TimeUnit.MILLISECONDS)));
+    Assertions.assertTrue(e2e.count() >= n, "every published row is timed end to end");
+  }
+}
@@ -0,0 +1,74 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.outbox.OutboxRetention;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/** Expired outbox partitions are dropped once fully published, and kept while any row is still unsent. */
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {
+    "spring.task.scheduling.enabled=false", "ledgerx.outbox.enabled=false", "ledgerx.outbox.retention.days=2"})
+class OutboxRetentionIT extends AbstractContainerIT {
+
+  @Autowired OutboxRetention retention;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void published_partitions_are_dropped_and_unpublished_kept() {
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    LocalDate published = today.minusDays(10), pending = today.minusDays(9);
+    for (LocalDate d : new LocalDate[]{published, pending})
+      jdbc.execute("CREATE TABLE IF NOT EXISTS " + partition(d) + " PARTITION OF outbox FOR VALUES FROM ('"
+          + d + " 00:00+00') TO ('" + d.plusDays(1) + " 00:00+00')");
+    jdbc.update("INSERT INTO outbox(topic, key, value, created_at, sent_at) VALUES ('t', 'k1', '{}'::jsonb, ?::timestamptz, NOW())",
+        published + " 12:00+00");
+    jdbc.update("INSERT INTO outbox(topic, key, value, created_at) VALUES ('t', 'k2', '{}'::jsonb, ?::timestamptz)",
+        pending + " 12:00+00");
+
+    retention.run();
+    Assertions.assertEquals(0, exists(partition(published)));
+    Assertions.assertEquals(1, exists(partition(pending)));
+    Assertions.assertEquals(1, exists(partition(today.plusDays(1))));
+
+    jdbc.update("UPDATE outbox SET sent_at = NOW() WHERE key = 'k2'");
+    retention.run();
+    Assertions.assertEquals(0, exists(partition(pending)));
+  }
+
+  @Test
+  void rows_already_in_the_default_partition_move_into_a_late_partition() {
+    LocalDate day = LocalDate.now(ZoneOffset.UTC).plusDays(3);
+    jdbc.execute("DROP TABLE IF EXISTS " + partition(day));
+    String key = "late_" + System.nanoTime();
+    jdbc.update("INSERT INTO outbox(topic, key, value, created_at) VALUES ('t', ?, '{}'::jsonb, ?::timestamptz)",
+        key, day + " 12:00+00");
+    jdbc.update("INSERT INTO outbox(topic, key, value_bin, created_at) VALUES ('t', ?, '\\x01'::bytea, ?::timestamptz)",
+        key + ":bin", day + " 12:00+00");
+    Assertions.assertEquals("outbox_default", partitionOf(key));
+
+    retention.run();
+    Assertions.assertEquals(partition(day), partitionOf(key));
+    Assertions.assertEquals(0, jdbc.queryForObject(
+        "SELECT COUNT(*) FROM outbox_default WHERE key = ?", Integer.class, key));
+    // the generated shard column survives the move, and so does a binary value
+    Assertions.assertNotNull(jdbc.queryForObject("SELECT shard FROM outbox WHERE key = ?", Integer.class, key));
+    Assertions.assertEquals(partition(day), partitionOf(key + ":bin"));
+    Assertions.assertArrayEquals(new byte[]{1}, jdbc.queryForObject("SELECT value_bin FROM outbox WHERE key = ?", byte[].class, key + ":bin"));
+  }
+
+  private String partitionOf(String key){
+    return jdbc.queryForObject("SELECT tableoid::regclass::text FROM outbox WHERE key = ?", String.class, key);
+  }
+
+  private static String partition(LocalDate d){ return "outbox_p" + d.toString().replace("-", ""); }
+
+  private int exists(String relname){
+    Integer n = jdbc.queryForObject("SELECT COUNT(*) FROM pg_class WHERE relname = ?", Integer.class, relname);
+    return n == null ? 0 : n;
+  }
+}
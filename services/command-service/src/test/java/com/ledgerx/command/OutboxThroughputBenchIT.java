@@ -0,0 +1,69 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.outbox.OutboxPublisher;
+import com.ledgerx.command.store.OutboxRepository;
+import com.ledgerx.command.store.OutboxRepository.OutboxRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbox events/sec against a local broker: the old one-synchronous-send-per-row loop on a sample,
+ * then the pipelined publisher draining a larger backlog.
+ */
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {"spring.task.scheduling.enabled=false"})
+class OutboxThroughputBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(OutboxThroughputBenchIT.class);
+
+  @Autowired OutboxPublisher publisher;
+  @Autowired OutboxRepository outbox;
+  @Autowired KafkaTemplate<String,byte[]> kafka;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void publish_throughput() throws Exception {
+    String topic = "ledgerx.accounts.events.v2";
+    int sample = 1_000, backlog = 50_000;
+
+    long t0 = System.nanoTime();
+    for (int i = 0; i < sample; i++)
+      kafka.send(new ProducerRecord<>(topic, "acc_" + (i % 100), ("{\"n\":" + i + "}").getBytes(StandardCharsets.UTF_8))).get(10, TimeUnit.SECONDS);
+    double syncRate = sample / ((System.nanoTime() - t0) / 1e9);
+
+    awaitDrained(); // whatever the context left behind
+    List<OutboxRecord> records = new ArrayList<>(backlog);
+    for (int i = 0; i < backlog; i++) records.add(new OutboxRecord(topic, "acc_" + (i % 100), Map.<String,Object>of("n", i), Map.<String,Object>of()));
+    for (int i = 0; i < backlog; i += 5_000) outbox.stageAll(records.subList(i, i + 5_000));
+
+    long t1 = System.nanoTime();
+    publisher.wake();
+    int unsent = awaitDrained();
+    double pipelinedRate = backlog / ((System.nanoTime() - t1) / 1e9);
+
+    log.info("{}: sync send+get={} events/s, pipelined={} events/s (x{})", getClass().getSimpleName(),
+        Math.round(syncRate), Math.round(pipelinedRate), Math.round(pipelinedRate / syncRate));
+    Assertions.assertEquals(0, unsent);
+  }
+
+  private int awaitDrained() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+    Integer unsent;
+    do {
+      Thread.sleep(20);
+      unsent = jdbc.queryForObject("SELECT COUNT(*) FROM outbox WHERE sent_at IS NULL", Integer.class);
+    } while (unsent != null && unsent > 0 && System.nanoTime() < deadline);
+    return unsent == null ? 0 : unsent;
+  }
+}
@@ -0,0 +1,11 @@
+package com.ledgerx.command;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * The same backlog drained by eight leased publisher workers over a 12-partition topic; compare its
+ * pipelined rate with {@link OutboxThroughputBenchIT}, which runs a single worker.
+ */
+@TestPropertySource(properties = {"ledgerx.outbox.workers=8", "ledgerx.kafka.partitions.accounts=12"})
+class ShardedOutboxThroughputBenchIT extends OutboxThroughputBenchIT {
+}
@@ -0,0 +1,115 @@
+package com.ledgerx.command;
+
+import com.ledgerx.command.app.AccountService;
+import com.ledgerx.command.app.TransferService;
+import com.ledgerx.command.events.LedgerEvent;
+import com.ledgerx.command.events.LedgerEvent.*;
+import com.ledgerx.command.store.EventStoreRepository;
+import com.ledgerx.command.store.NewEvent;
+import com.ledgerx.command.store.OutboxRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Statements, commits, throughput and p99 latency per transfer, for the saga writing each transfer
+ * event on its own (before) and through a unit of work flushed once per saga step (after). Runs the
+ * default (saga) mode; see
+ * {@link AtomicTransferThroughputBenchIT} for the single-transaction mode. Two threads per account pair
+ * transfer in opposite directions so lock ordering is exercised.
+ */
+@Import(JdbcRoundTrips.class)
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {"spring.task.scheduling.enabled=false", "ledgerx.outbox.enabled=false"})
+class TransferThroughputBenchIT extends AbstractContainerIT {
+
+  private static final Logger log = LoggerFactory.getLogger(TransferThroughputBenchIT.class);
+
+  @Autowired AccountService accounts;
+  @Autowired TransferService transfers;
+  @Autowired EventStoreRepository store;
+  @Autowired OutboxRepository outbox;
+
+  record Result(double tps, double p99Ms, double statements, double commits) {}
+
+  @Test
+  void transfer_round_trips_and_throughput() throws Exception {
+    Result before = run("before", this::perEventTransfer);
+    Result after = run("after", (tx, from, to) -> transfers.transfer(tx, from, to, 100L, "USD", tx));
+    log.info("saga transfers before (one write + commit per event): tps={} p99={}ms statements/transfer={} commits/transfer={}",
+        before.tps, before.p99Ms, before.statements, before.commits);
+    log.info("saga transfers after (one flush per saga step): tps={} p99={}ms statements/transfer={} commits/transfer={}",
+        after.tps, after.p99Ms, after.statements, after.commits);
+    Assertions.assertTrue(after.statements < before.statements, "flushing per saga step should take fewer statements than per event");
+    Assertions.assertTrue(after.commits < before.commits, "flushing per saga step should take fewer commits than per event");
+  }
+
+  interface Transfer { Map<String,Object> run(String tx, String from, String to); }
+
+  private Result run(String label, Transfer transfer) throws Exception {
+    int pairs = 8, perPair = 200;
+    List<String[]> accs = new ArrayList<>();
+    for (int i = 0; i < pairs; i++) {
+      String a = label + "_a_" + i + "_" + System.nanoTime(), b = label + "_b_" + i + "_" + System.nanoTime();
+      accounts.open(a, "USD"); accounts.open(b, "USD");
+      accounts.credit(a, 1_000_000L, "USD", a + ":seed");
+      accounts.credit(b, 1_000_000L, "USD", b + ":seed");
+      accs.add(new String[]{a, b});
+      accs.add(new String[]{b, a});
+    }
+
+    JdbcRoundTrips.reset();
+    long t0 = System.nanoTime();
+    List<Future<?>> fs = new ArrayList<>();
+    List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    try (var pool = Executors.newFixedThreadPool(accs.size())) {
+      for (var pair : accs) {
+        fs.add(pool.submit(() -> {
+          for (int k = 0; k < perPair; k++) {
+            String tx = pair[0] + ":tx" + k;
+            long s = System.nanoTime();
+            var r = transfer.run(tx, pair[0], pair[1]);
+            latencies.add(System.nanoTime() - s);
+            Assertions.assertEquals("ok", r.get("status"));
+          }
+        }));
+      }
+      for (var f : fs) f.get();
+    }
+    double secs = (System.nanoTime() - t0) / 1e9;
+    int n = accs.size() * perPair;
+    latencies.sort(Long::compare);
+    return new Result(n / secs, latencies.get((int) (n * 0.99)) / 1e6,
+        JdbcRoundTrips.STATEMENTS.get() / (double) n, JdbcRoundTrips.COMMITS.get() / (double) n);
+  }
+
+  /** The saga as it was before the unit of work: each transfer event appended and staged on its own, autocommit. */
+  private Map<String,Object> perEventTransfer(String tx, String from, String to){
+    long version = store.currentVersion("Transfer", tx);
+    version = append(tx, version, new TransferRequested(tx, from, to, 100L, "USD"));
+    accounts.debit(from, 100L, "USD", tx + ":debit");
+    version = append(tx, version, new SourceDebited(from, 100L));
+    accounts.credit(to, 100L, "USD", tx + ":credit");
+    version = append(tx, version, new DestinationCredited(to, 100L));
+    append(tx, version, new TransferCompleted());
+    return Map.of("status", "ok");
+  }
+
+  private long append(String transferId, long expectedVersion, LedgerEvent event){
+    var e = new NewEvent(event, Map.<String,Object>of());
+    long version = store.append("Transfer", transferId, expectedVersion, e).orThrow();
+    outbox.stage(TransferService.TRANSFER_TOPIC, transferId, Map.<String,Object>of("eventType", e.type(), "aggregateId", transferId,
+        "version", version, "payload", event, "metadata", e.metadata()), Map.<String,Object>of());
+    return version;
+  }
+}
@@ -0,0 +1,64 @@
+package com.ledgerx.command.app;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AccountMailboxesTest {
+
+  @Test
+  void commands_for_one_account_never_overlap() throws Exception {
+    var mb = new AccountMailboxes(new SimpleMeterRegistry(), true, 8);
+    var inFlight = new ConcurrentHashMap<String, AtomicInteger>();
+    var overlaps = new AtomicInteger();
+    List<Future<?>> fs = new ArrayList<>();
+    try (var pool = Executors.newFixedThreadPool(32)) {
+      for (int i = 0; i < 2_000; i++) {
+        String acc = i % 4 == 0 ? "hot" : "cold_" + (i % 50);
+        fs.add(pool.submit(() -> mb.call(acc, () -> {
+          var n = inFlight.computeIfAbsent(acc, k -> new AtomicInteger());
+          if (n.incrementAndGet() > 1) overlaps.incrementAndGet();
+          Thread.onSpinWait();
+          n.decrementAndGet();
+          return null;
+        })));
+      }
+      for (var f : fs) f.get();
+    }
+    Assertions.assertEquals(0, overlaps.get());
+  }
+
+  @Test
+  void different_shards_run_in_parallel() throws Exception {
+    var mb = new AccountMailboxes(new SimpleMeterRegistry(), true, 1024);
+    var bothInside = new CountDownLatch(2);
+    try (var pool = Executors.newFixedThreadPool(2)) {
+      // "a" and "b" hash to different shards of 1024
+      var fa = pool.submit(() -> mb.call("a", () -> { bothInside.countDown(); return await(bothInside); }));
+      var fb = pool.submit(() -> mb.call("b", () -> { bothInside.countDown(); return await(bothInside); }));
+      Assertions.assertTrue(fa.get(5, TimeUnit.SECONDS));
+      Assertions.assertTrue(fb.get(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  void errors_reach_the_caller_and_reentry_runs_inline() {
+    var mb = new AccountMailboxes(new SimpleMeterRegistry(), true, 1);
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> mb.call("x", () -> { throw new IllegalStateException("Insufficient funds"); }));
+    Assertions.assertEquals("inner", mb.call("x", () -> mb.call("y", () -> "inner")));
+  }
+
+  private static boolean await(CountDownLatch l){
+    try { return l.await(5, TimeUnit.SECONDS); } catch (InterruptedException e) { throw new RuntimeException(e); }
+  }
+}
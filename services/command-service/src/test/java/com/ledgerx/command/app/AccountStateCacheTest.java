@@ -0,0 +1,48 @@
+package com.ledgerx.command.app;
+
+import com.ledgerx.command.app.AccountSnapshots.AccountState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+class AccountStateCacheTest {
+
+  private static AccountState state(long version, long balance){
+    return new AccountState(version, balance, "USD", 0, Optional.empty());
+  }
+
+  @Test
+  void evicts_least_recently_used_and_counts() {
+    var meter = new SimpleMeterRegistry();
+    var cache = new AccountStateCache(meter, true, 2);
+    cache.put("a", state(1, 0));
+    cache.put("b", state(1, 0));
+    cache.get("a");
+    cache.put("c", state(1, 0));
+    Assertions.assertTrue(cache.get("a").isPresent());
+    Assertions.assertTrue(cache.get("b").isEmpty());
+    Assertions.assertEquals(1.0, meter.counter("ledgerx.account.cache.evictions").count());
+    Assertions.assertEquals(2.0, meter.counter("ledgerx.account.cache.hits").count());
+    Assertions.assertEquals(1.0, meter.counter("ledgerx.account.cache.misses").count());
+  }
+
+  @Test
+  void never_moves_backwards() {
+    var cache = new AccountStateCache(new SimpleMeterRegistry(), true, 10);
+    cache.put("a", state(5, 500));
+    cache.put("a", state(4, 400));
+    Assertions.assertEquals(5, cache.get("a").orElseThrow().version());
+  }
+
+  @Test
+  void advance_applies_only_the_next_version() {
+    var cache = new AccountStateCache(new SimpleMeterRegistry(), true, 10);
+    cache.put("a", state(3, 100));
+    cache.advance("a", 4, 50);
+    Assertions.assertEquals(state(4, 150), cache.get("a").orElseThrow());
+    cache.advance("a", 6, 50); // version 5 went elsewhere: the entry can no longer be trusted
+    Assertions.assertTrue(cache.get("a").isEmpty());
+  }
+}
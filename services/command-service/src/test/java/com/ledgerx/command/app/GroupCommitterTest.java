@@ -0,0 +1,143 @@
+package com.ledgerx.command.app;
+
+import com.ledgerx.command.store.AppendResult;
+import com.ledgerx.command.store.ConcurrencyConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+class GroupCommitterTest {
+
+  /** Counts outer commits; nested (savepoint) transactions are no-ops. */
+  static class CountingTxManager implements PlatformTransactionManager {
+    final AtomicInteger commits = new AtomicInteger(), rollbacks = new AtomicInteger();
+    @Override public TransactionStatus getTransaction(TransactionDefinition d){
+      return new SimpleTransactionStatus(d == null || d.getPropagationBehavior() != TransactionDefinition.PROPAGATION_NESTED);
+    }
+    @Override public void commit(TransactionStatus s){ if (s.isNewTransaction()) commits.incrementAndGet(); }
+    @Override public void rollback(TransactionStatus s){ if (s.isNewTransaction()) rollbacks.incrementAndGet(); }
+  }
+
+  CountingTxManager txm = new CountingTxManager();
+  GroupCommitter gc = new GroupCommitter(txm, new SimpleMeterRegistry(), true, 16, Duration.ofMillis(50), 100);
+
+  @AfterEach
+  void stop() throws Exception { gc.stop(); }
+
+  @Test
+  void concurrent_commands_share_a_commit_and_fail_individually() throws Exception {
+    gc.start();
+    List<CompletableFuture<String>> fs = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      int n = i;
+      fs.add(CompletableFuture.supplyAsync(() -> gc.run("k" + n, "acc" + n, () -> {
+        if (n == 3) throw new IllegalStateException("Insufficient funds");
+        return "ok" + n;
+      })));
+    }
+    for (int i = 0; i < 8; i++) {
+      if (i == 3) {
+        var ex = Assertions.assertThrows(Exception.class, fs.get(i)::join);
+        Assertions.assertInstanceOf(IllegalStateException.class, ex.getCause());
+      } else {
+        Assertions.assertEquals("ok" + i, fs.get(i).join());
+      }
+    }
+    Assertions.assertTrue(txm.commits.get() < 8, "commands were coalesced into fewer commits");
+    Assertions.assertEquals(0, txm.rollbacks.get());
+  }
+
+  @Test
+  void same_idempotency_key_is_not_admitted_twice_into_one_batch() throws Exception {
+    gc.start();
+    AtomicInteger inBatch = new AtomicInteger();
+    var a = CompletableFuture.supplyAsync(() -> gc.run("dup", "acc", inBatch::incrementAndGet));
+    var b = CompletableFuture.supplyAsync(() -> gc.run("dup", "acc", inBatch::incrementAndGet));
+    Assertions.assertEquals(3, a.join() + b.join());
+    Assertions.assertEquals(2, txm.commits.get());
+  }
+
+  @Test
+  void disabled_runs_inline() {
+    var inline = new GroupCommitter(txm, new SimpleMeterRegistry(), false, 16, Duration.ofMillis(50), 100);
+    Assertions.assertEquals("x", inline.run("k", "acc", () -> "x"));
+    Assertions.assertEquals(0, txm.commits.get());
+  }
+
+  @Test
+  void a_batch_runs_in_lock_key_order() throws Exception {
+    gc.start();
+    var release = new CountDownLatch(1);
+    // holds the writer, so the next three commands queue up and form one batch
+    var blocker = CompletableFuture.supplyAsync(() -> gc.run("blocker", "acc_z", () -> {
+      try { return release.await(5, TimeUnit.SECONDS); } catch (InterruptedException e) { throw new IllegalStateException(e); }
+    }));
+    Thread.sleep(150);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    List<CompletableFuture<Boolean>> fs = new ArrayList<>();
+    for (String acc : new String[]{"acc_c", "acc_a", "acc_b"})
+      fs.add(CompletableFuture.supplyAsync(() -> gc.run(acc, acc, () -> order.add(acc))));
+    Thread.sleep(150);
+    release.countDown();
+    Assertions.assertTrue(blocker.join());
+    fs.forEach(CompletableFuture::join);
+    Assertions.assertEquals(List.of("acc_a", "acc_b", "acc_c"), order);
+  }
+
+  @Test
+  void a_deadlock_victim_is_retried_in_the_next_batch() throws Exception {
+    gc.start();
+    AtomicInteger attempts = new AtomicInteger();
+    String result = gc.run("k", "acc", () -> {
+      if (attempts.incrementAndGet() == 1) throw new RuntimeException(new SQLException("deadlock detected", "40P01"));
+      return "ok";
+    });
+    Assertions.assertEquals("ok", result);
+    Assertions.assertEquals(2, attempts.get());
+
+    attempts.set(0);
+    Assertions.assertThrows(RuntimeException.class, () -> gc.run("k2", "acc", () -> {
+      attempts.incrementAndGet();
+      throw new RuntimeException(new SQLException("deadlock detected", "40P01"));
+    }));
+    Assertions.assertEquals(GroupCommitter.DEADLOCK_ATTEMPTS, attempts.get());
+  }
+
+  @Test
+  void commands_are_rejected_once_stopped() throws Exception {
+    gc.start();
+    gc.stop();
+    Assertions.assertThrows(RejectedExecutionException.class, () -> gc.run("k", "acc", () -> "x"));
+  }
+
+  @Test
+  void append_conflicts_are_not_retried_inside_a_batch() throws Exception {
+    gc.start();
+    var retry = new AppendRetryPolicy(5, Duration.ofMillis(200), Duration.ofSeconds(1), new SimpleMeterRegistry());
+    AtomicInteger attempts = new AtomicInteger();
+    Supplier<String> conflicting = () -> {
+      attempts.incrementAndGet();
+      throw new ConcurrencyConflictException(new AppendResult.ConcurrencyConflict("Account", "a", 1, 2));
+    };
+    Assertions.assertThrows(ConcurrencyConflictException.class, () -> gc.run("k", "acc", () -> retry.run(conflicting)));
+    Assertions.assertEquals(1, attempts.get());
+    Assertions.assertFalse(GroupCommitter.inBatch());
+  }
+}
@@ -0,0 +1,92 @@
+package com.ledgerx.command.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ledgerx.command.events.LedgerEvent.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class EventCodecTest {
+  private final ObjectMapper om = new ObjectMapper();
+  private final EventCodec codec = new EventCodec(om, List.of("ledgerx.accounts.events.v2"));
+
+  @Test
+  void round_trips_schema_fields_extras_and_metadata() {
+    Map<String,Object> env = envelope("FundsCredited", "acc_1", 7,
+        Map.of("accountId", "acc_1", "amountCents", 12_345L, "currency", "USD", "note", "extra"),
+        Map.of("idempotencyKey", "k-1", "compensated", true));
+    Assertions.assertEquals(om.convertValue(env, Map.class), om.convertValue(codec.decode(codec.encode(env)), Map.class));
+  }
+
+  @Test
+  void unknown_types_and_mistyped_fields_still_round_trip() {
+    Map<String,Object> env = envelope("SomethingNew", "x", 1, Map.of("amountCents", "not a number", "n", 1.5), Map.of());
+    Assertions.assertEquals(om.convertValue(env, Map.class), om.convertValue(codec.decode(codec.encode(env)), Map.class));
+    Map<String,Object> wrong = envelope("FundsDebited", "y", 2, Map.of("amountCents", "12"), Map.of());
+    Assertions.assertEquals(om.convertValue(wrong, Map.class), om.convertValue(codec.decode(codec.encode(wrong)), Map.class));
+  }
+
+  /** query-service's EventCodecTest decodes the same fixture; append to it, never change its lines. */
+  @Test
+  void wire_format_is_the_shared_fixture() throws Exception {
+    for (String[] rec : fixture()) {
+      Map<?,?> env = om.readValue(rec[1], Map.class);
+      Assertions.assertEquals(rec[0], HexFormat.of().formatHex(codec.encode(env)), rec[1]);
+      Assertions.assertEquals(om.readTree(rec[1]).toString(), om.writeValueAsString(codec.decode(HexFormat.of().parseHex(rec[0]))), rec[1]);
+    }
+  }
+
+  @Test
+  void typed_payloads_encode_like_their_maps() {
+    Map<String,Object> payload = new LinkedHashMap<>();
+    payload.put("accountId", "acc_1"); payload.put("amountCents", 1500L); payload.put("currency", "USD");
+    Map<String,Object> meta = Map.of("idempotencyKey", "k1");
+    Assertions.assertArrayEquals(codec.encode(envelope("FundsCredited", "acc_1", 7, payload, meta)),
+        codec.encode(envelope("FundsCredited", "acc_1", 7, new FundsCredited("acc_1", 1500, "USD"), meta)));
+    Assertions.assertArrayEquals(codec.encode(envelope("TransferFailed", "tr_1", 3, Collections.singletonMap("reason", null), Map.of())),
+        codec.encode(envelope("TransferFailed", "tr_1", 3, new TransferFailed(null), Map.of())));
+    Assertions.assertArrayEquals(codec.encode(envelope("TransferCompleted", "tr_1", 4, Map.of(), Map.of())),
+        codec.encode(envelope("TransferCompleted", "tr_1", 4, new TransferCompleted(), Map.of())));
+  }
+
+  /** The records of {@code codec/events.v1.compat}: hex bytes and the JSON envelope. */
+  static List<String[]> fixture() throws Exception {
+    try (var in = EventCodecTest.class.getResourceAsStream("/codec/events.v1.compat")) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+          .filter(l -> !l.isBlank() && !l.startsWith("#")).map(l -> l.split(" ", 2)).toList();
+    }
+  }
+
+  @Test
+  void non_envelopes_stay_json() {
+    Assertions.assertNull(codec.encode(Map.of("n", 1)));
+    Assertions.assertTrue(codec.binary("ledgerx.accounts.events.v2"));
+    Assertions.assertFalse(codec.binary("ledgerx.transfers.events.v1"));
+  }
+
+  @Test
+  void binary_is_well_under_half_the_json_size() throws Exception {
+    for (int i : new int[]{0, 1, 999, 123_456}) {
+      Map<String,Object> env = sample(i);
+      int json = om.writeValueAsString(env).getBytes(StandardCharsets.UTF_8).length;
+      Assertions.assertTrue(codec.encode(env).length * 2 < json, "binary should be well under half the JSON size");
+    }
+  }
+
+  private static Map<String,Object> sample(int i){
+    String acc = "acc_" + (i & 1023);
+    return envelope("FundsCredited", acc, i + 1,
+        Map.of("accountId", acc, "amountCents", (long) i * 100, "currency", "USD"),
+        Map.of("idempotencyKey", "tr_" + i + ":credit"));
+  }
+
+  private static Map<String,Object> envelope(String type, String aggId, long version, Object payload, Map<String,Object> meta){
+    return Map.of("eventType", type, "aggregateId", aggId, "version", version, "payload", payload, "metadata", meta);
+  }
+}
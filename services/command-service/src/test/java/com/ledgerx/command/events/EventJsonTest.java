@@ -0,0 +1,46 @@
+package com.ledgerx.command.events;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ledgerx.command.events.LedgerEvent.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+class EventJsonTest {
+  private final ObjectMapper om = new ObjectMapper();
+
+  @Test
+  void round_trips_every_event_type() {
+    List<LedgerEvent> events = List.of(
+        new AccountOpened("acc_1", "EUR"),
+        new FundsCredited("acc_1", 1500, "EUR"),
+        new FundsDebited("acc_1", 700, "EUR"),
+        new TransferRequested("tr_1", "acc_1", "acc_2", 300, "EUR"),
+        new SourceDebited("acc_1", 300),
+        new DestinationCredited("acc_2", 300),
+        new TransferCompleted(),
+        new TransferFailed("insufficient_funds"));
+    for (var e : events) Assertions.assertEquals(e, EventJson.read(e.type(), EventJson.write(e)));
+  }
+
+  @Test
+  void upcasts_legacy_types_and_fields() {
+    Assertions.assertEquals(new FundsCredited("acc_1", 250, "USD"),
+        EventJson.read("CREDITED", "{\"accountId\":\"acc_1\",\"amount\":250}"));
+    Assertions.assertEquals(new FundsDebited("acc_1", 90, "GBP"),
+        EventJson.read("ACCOUNT_DEBITED", "{\"accountId\":\"acc_1\",\"amount\":\"90\",\"curr\":\"GBP\",\"note\":{\"x\":[1,2]}}"));
+    Assertions.assertEquals(new AccountOpened("acc_1", "USD"),
+        EventJson.read("ACCOUNT_CREATED", "{\"accountId\":\"acc_1\",\"currency\":\"USD\"}"));
+    Assertions.assertEquals(new Unknown("SomethingNew", "{\"n\":1}"), EventJson.read("SomethingNew", "{\"n\":1}"));
+  }
+
+  @Test
+  void object_mapper_writes_events_as_their_payload() throws Exception {
+    var e = new FundsCredited("acc_1", 1500, "USD");
+    Assertions.assertEquals(Map.of("accountId", "acc_1", "amountCents", 1500, "currency", "USD"),
+        om.readValue(om.writeValueAsString(e), new TypeReference<Map<String,Object>>() {}));
+  }
+}
@@ -0,0 +1,40 @@
+package com.ledgerx.command.idempotency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+class RequestFingerprintTest {
+
+  @Test
+  void same_fields_same_hash_and_fields_cannot_bleed_into_each_other() {
+    Assertions.assertEquals(RequestFingerprint.of("debit", "a", 100L, "USD"), RequestFingerprint.of("debit", "a", 100L, "USD"));
+    Assertions.assertNotEquals(RequestFingerprint.of("debit", "ab", "c"), RequestFingerprint.of("debit", "a", "bc"));
+    Assertions.assertNotEquals(RequestFingerprint.of("debit", "a", 100L, "USD"), RequestFingerprint.of("credit", "a", 100L, "USD"));
+  }
+
+  @Test
+  void null_and_empty_fields_differ() {
+    Assertions.assertNotEquals(RequestFingerprint.of("credit", "a", 1L, null), RequestFingerprint.of("credit", "a", 1L, ""));
+    Assertions.assertNotEquals(RequestFingerprint.of("credit", null, "a"), RequestFingerprint.of("credit", "", "a"));
+    Assertions.assertEquals(RequestFingerprint.of("credit", "a", 1L, null), RequestFingerprint.of("credit", "a", 1L, null));
+  }
+
+  @Test
+  void legacy_hashes_are_recognised() {
+    Assertions.assertFalse(RequestFingerprint.isLegacy(RequestFingerprint.of("credit", "a", 1L, "USD")));
+    Assertions.assertTrue(RequestFingerprint.isLegacy(legacy(Map.of("op", "credit", "id", "a"))));
+  }
+
+  private static String legacy(Map<String,Object> body){
+    try {
+      byte[] d = MessageDigest.getInstance("SHA-256").digest(body.toString().getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder();
+      for (byte b : d) sb.append(String.format("%02x", b));
+      return sb.toString();
+    } catch (Exception e) { throw new RuntimeException(e); }
+  }
+}
@@ -0,0 +1,64 @@
+package com.ledgerx.command.outbox;
+
+import com.ledgerx.command.AbstractContainerIT;
+import com.ledgerx.command.store.OutboxRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A row the broker always rejects (larger than max.request.size) backs off, holds back the later rows
+ * of its key, is quarantined after max-attempts and then lets them through; other keys never wait.
+ */
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {
+    "ledgerx.outbox.retry.max-attempts=3", "ledgerx.outbox.retry.backoff=PT0.2S", "ledgerx.outbox.poll-interval=PT0.1S"})
+class OutboxDeadLetterIT extends AbstractContainerIT {
+
+  @Autowired OutboxRepository outbox;
+  @Autowired OutboxDeadLetters deadLetters;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void poison_row_is_quarantined_and_its_key_moves_on() throws Exception {
+    String topic = "ledgerx.accounts.events.v2";
+    String poisoned = "acc_" + UUID.randomUUID(), healthy = "acc_" + UUID.randomUUID();
+    outbox.stage(topic, poisoned, Map.of("blob", "x".repeat(2 * 1024 * 1024)), Map.of());
+    outbox.stage(topic, poisoned, Map.of("n", 1), Map.of());
+    outbox.stage(topic, healthy, Map.of("n", 1), Map.of());
+
+    await(() -> unsent(healthy) == 0);
+    Assertions.assertEquals(2, unsent(poisoned), "the later row waits behind the failing one");
+
+    await(() -> unsent(poisoned) == 0);
+    var quarantined = deadLetters.list(topic, 0, 10);
+    Assertions.assertEquals(1, quarantined.size());
+    Assertions.assertEquals(poisoned, quarantined.get(0).get("key"));
+    Assertions.assertEquals(3, ((Number) quarantined.get(0).get("attempts")).intValue());
+
+    long id = ((Number) quarantined.get(0).get("id")).longValue();
+    Assertions.assertEquals(1, deadLetters.replay(id));
+    await(() -> deadLetters.list(topic, 0, 10).size() == 1 && unsent(poisoned) == 0); // fails again
+    long again = ((Number) deadLetters.list(topic, 0, 10).get(0).get("id")).longValue();
+    Assertions.assertEquals(1, deadLetters.discard(again));
+    Assertions.assertTrue(deadLetters.list(topic, 0, 10).isEmpty());
+  }
+
+  private int unsent(String key){
+    Integer n = jdbc.queryForObject("SELECT COUNT(*) FROM outbox WHERE key=? AND sent_at IS NULL", Integer.class, key);
+    return n == null ? 0 : n;
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + 30_000_000_000L;
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) Assertions.fail("timed out");
+      Thread.sleep(50);
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.ledgerx.command.outbox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+class OutboxShardLeasesTest {
+
+  @Test
+  void every_shard_has_exactly_one_owner() {
+    for (int members = 1; members <= 10; members++) {
+      Set<Integer> seen = new HashSet<>();
+      for (int i = 0; i < members; i++) {
+        var share = OutboxShardLeases.share(i, members);
+        Assertions.assertTrue(share.size() >= OutboxShardLeases.SHARDS / members);
+        for (int s : share) Assertions.assertTrue(seen.add(s), "shard " + s + " assigned twice");
+      }
+      Assertions.assertEquals(OutboxShardLeases.SHARDS, seen.size());
+    }
+  }
+
+  @Test
+  void unknown_member_gets_nothing() {
+    Assertions.assertTrue(OutboxShardLeases.share(-1, 3).isEmpty());
+  }
+}
@@ -0,0 +1,61 @@
+package com.ledgerx.command.outbox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+class PgOutputDecoderTest {
+
+  @Test
+  void decodes_relation_then_insert() throws IOException {
+    var d = new PgOutputDecoder();
+    d.decode(msg(out -> {
+      out.writeByte('R'); out.writeInt(42); cstr(out, "public"); cstr(out, "outbox"); out.writeByte('d');
+      out.writeShort(3);
+      for (String c : new String[]{"id", "topic", "sent_at"}) { out.writeByte(0); cstr(out, c); out.writeInt(25); out.writeInt(-1); }
+    }));
+    var m = d.decode(msg(out -> {
+      out.writeByte('I'); out.writeInt(42); out.writeByte('N'); out.writeShort(3);
+      text(out, "7"); text(out, "t.v1"); out.writeByte('n');
+    }));
+    var ins = Assertions.assertInstanceOf(PgOutputDecoder.Insert.class, m);
+    Assertions.assertEquals("public.outbox", ins.table());
+    Map<String,String> expected = new HashMap<>();
+    expected.put("id", "7"); expected.put("topic", "t.v1"); expected.put("sent_at", null);
+    Assertions.assertEquals(expected, ins.columns());
+  }
+
+  @Test
+  void decodes_commit_lsn_and_time() throws IOException {
+    var m = new PgOutputDecoder().decode(msg(out -> {
+      out.writeByte('C'); out.writeByte(0); out.writeLong(100); out.writeLong(200); out.writeLong(0);
+    }));
+    var c = Assertions.assertInstanceOf(PgOutputDecoder.Commit.class, m);
+    Assertions.assertEquals(200, c.endLsn());
+    Assertions.assertEquals(946_684_800_000_000L, c.commitTimeMicros()); // 2000-01-01 in Unix micros
+  }
+
+  interface Writer { void write(DataOutputStream out) throws IOException; }
+
+  private static ByteBuffer msg(Writer w) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    w.write(new DataOutputStream(bytes));
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  private static void cstr(DataOutputStream out, String s) throws IOException {
+    out.write(s.getBytes(StandardCharsets.UTF_8)); out.writeByte(0);
+  }
+
+  private static void text(DataOutputStream out, String s) throws IOException {
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeByte('t'); out.writeInt(b.length); out.write(b);
+  }
+}
@@ -0,0 +1,79 @@
+package com.ledgerx.command.replay;
+
+import com.ledgerx.command.AbstractContainerIT;
+import com.ledgerx.command.app.AccountService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+/** A filtered replay publishes exactly its stream; a throttled one can be paused and resumes from its checkpoint. */
+@SpringBootTest(classes = com.ledgerx.command.CommandServiceApplication.class, properties = {
+    "ledgerx.replay.page-size=10", "ledgerx.replay.poll-interval=PT0.2S"})
+class EventReplayIT extends AbstractContainerIT {
+
+  @Autowired AccountService accounts;
+  @Autowired ReplayJobs jobs;
+  @Autowired EventReplayer replayer;
+
+  @Test
+  void replays_one_stream_to_completion() throws Exception {
+    String acc = account(25);
+    accounts.open("acc_" + UUID.randomUUID(), "USD"); // outside the filter
+
+    long id = jobs.create("Account", acc, 0, null, null, null, 0);
+    replayer.poll();
+    await(() -> "COMPLETED".equals(jobs.get(id).get("status")));
+    Assertions.assertEquals(26L, ((Number) jobs.get(id).get("published")).longValue());
+  }
+
+  @Test
+  void replays_one_aggregate_id_without_a_type() throws Exception {
+    String acc = account(15);
+    long id = jobs.create(null, acc, 0, null, null, null, 0);
+    replayer.poll();
+    await(() -> "COMPLETED".equals(jobs.get(id).get("status")));
+    Assertions.assertEquals(16L, ((Number) jobs.get(id).get("published")).longValue());
+  }
+
+  @Test
+  void throttled_replay_pauses_and_resumes_from_its_checkpoint() throws Exception {
+    String acc = account(40);
+    long id = jobs.create("Account", acc, 0, null, null, null, 20);
+    replayer.poll();
+    await(() -> ((Number) jobs.get(id).get("published")).longValue() > 0);
+    Assertions.assertTrue(jobs.pause(id));
+
+    Thread.sleep(1_000);
+    Map<String,Object> paused = jobs.get(id);
+    Assertions.assertEquals("PAUSED", paused.get("status"));
+    long checkpoint = ((Number) paused.get("checkpoint_id")).longValue();
+    Assertions.assertTrue(((Number) paused.get("published")).longValue() < 41, "a throttled job is still running when paused");
+
+    Assertions.assertTrue(jobs.resume(id));
+    replayer.poll();
+    await(() -> "COMPLETED".equals(jobs.get(id).get("status")));
+    Map<String,Object> done = jobs.get(id);
+    Assertions.assertTrue(((Number) done.get("checkpoint_id")).longValue() >= checkpoint);
+    Assertions.assertTrue(((Number) done.get("published")).longValue() >= 41, "at-least-once: every event, maybe some twice");
+  }
+
+  private String account(int credits){
+    String acc = "acc_" + UUID.randomUUID();
+    accounts.open(acc, "USD");
+    for (int i = 0; i < credits; i++) accounts.credit(acc, 100, "USD", acc + ":" + i);
+    return acc;
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30_000;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) Assertions.fail("timed out");
+      Thread.sleep(50);
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package com.ledgerx.query.api;
 
+import com.ledgerx.query.rebuild.ProjectionRebuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.jdbc.core.JdbcTemplate;
 
@@ -11,8 +14,9 @@ import java.util.Map;
 @RequestMapping("/api/admin")
 public class AdminController {
   private final JdbcTemplate jdbc;
+  private final ProjectionRebuilder rebuilder;
 
-  public AdminController(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+  public AdminController(JdbcTemplate jdbc, ProjectionRebuilder rebuilder) { this.jdbc = jdbc; this.rebuilder = rebuilder; }
 
   @GetMapping("/stats")
   public Map<String, Object> stats() {
@@ -28,4 +32,20 @@ public class AdminController {
     out.put("last_transfer_update", trnLast);
     return out;
   }
-}
\ No newline at end of file
+
+  /** Rebuilds the projections from event_store in the background; consumption pauses until it is done. */
+  @PostMapping("/rebuild")
+  public ResponseEntity<Map<String, Object>> rebuild() {
+    try {
+      return ResponseEntity.accepted().body(rebuilder.status(rebuilder.start()));
+    } catch (IllegalStateException e) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status", "error", "message", e.getMessage()));
+    }
+  }
+
+  @GetMapping({"/rebuild", "/rebuild/{id}"})
+  public ResponseEntity<Map<String, Object>> rebuildStatus(@PathVariable(required = false) Long id) {
+    var status = rebuilder.status(id);
+    return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+  }
+}
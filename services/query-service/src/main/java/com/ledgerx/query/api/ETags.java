@@ -0,0 +1,46 @@
+package com.ledgerx.query.api;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.sql.Timestamp;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Strong ETags for the read endpoints. A row's tag is its {@code last_applied_version} and
+ * {@code updated_at}: the version moves with every applied event, and {@code updated_at} also moves
+ * when a rebuild rewrites the row. A list's tag is the collection version (see
+ * {@link com.ledgerx.query.projections.CollectionVersions}); the URL carries the filters. Responses are
+ * {@code no-cache}, so browsers and proxies revalidate with {@code If-None-Match} every time.
+ */
+final class ETags {
+  private ETags(){}
+
+  static String row(Object version, Object updatedAt){
+    long micros = updatedAt instanceof Timestamp ts ? ChronoUnit.MICROS.between(java.time.Instant.EPOCH, ts.toInstant()) : 0;
+    return "\"v" + version + "-" + micros + "\"";
+  }
+
+  static String collection(long version){ return "\"c" + version + "\""; }
+
+  /** If-None-Match uses the weak comparison, so {@code W/} prefixes are ignored. */
+  static boolean matches(String ifNoneMatch, String etag){
+    if (ifNoneMatch == null) return false;
+    for (String candidate : ifNoneMatch.split(",")) {
+      String c = candidate.strip();
+      if (c.equals("*")) return true;
+      if (c.startsWith("W/")) c = c.substring(2);
+      if (c.equals(etag)) return true;
+    }
+    return false;
+  }
+
+  static <T> ResponseEntity<T> notModified(String etag){
+    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).eTag(etag).build();
+  }
+
+  static <T> ResponseEntity<T> ok(String etag, T body){
+    return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(etag).body(body);
+  }
+}
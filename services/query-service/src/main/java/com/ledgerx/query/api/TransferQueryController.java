@@ -1,25 +1,47 @@
 package com.ledgerx.query.api;
 
+import com.ledgerx.query.projections.AppliedVersions;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api")
 public class TransferQueryController {
-  private final JdbcTemplate jdbc;
-  public TransferQueryController(JdbcTemplate jdbc){ this.jdbc=jdbc; }
+  private final JdbcTemplate jdbc; private final AppliedVersions versions;
+  public TransferQueryController(JdbcTemplate jdbc, AppliedVersions versions){ this.jdbc=jdbc; this.versions=versions; }
 
+  /**
+   * With {@code minVersion} (the transfer command's version), holds the read until the projection has caught up.
+   * A matching {@code If-None-Match} is answered 304 from the row's version alone.
+   */
   @GetMapping("/transfers/{id}")
-  public Map<String,Object> get(@PathVariable String id){
+  public CompletableFuture<ResponseEntity<Map<String,Object>>> get(@PathVariable String id,
+                                                                   @RequestParam(required = false) Long minVersion,
+                                                                   @RequestParam(defaultValue = "5000") long timeoutMs,
+                                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+    return versions.read(AppliedVersions.Kind.TRANSFER, id, minVersion, Duration.ofMillis(timeoutMs), () -> get(id, ifNoneMatch));
+  }
+
+  private ResponseEntity<Map<String,Object>> get(String id, String ifNoneMatch){
+    if (ifNoneMatch != null) {
+      String tag = jdbc.query("SELECT last_applied_version, updated_at FROM transfers WHERE transfer_id=?",
+          rs -> rs.next() ? ETags.row(rs.getLong(1), rs.getTimestamp(2)) : null, id);
+      if (tag != null && ETags.matches(ifNoneMatch, tag)) return ETags.notModified(tag);
+    }
     List<Map<String,Object>> rows = jdbc.queryForList(
-        "SELECT transfer_id, from_account, to_account, amount_cents, currency, status, updated_at FROM transfers WHERE transfer_id=?",
+        "SELECT transfer_id, from_account, to_account, amount_cents, currency, status, updated_at, last_applied_version AS version FROM transfers WHERE transfer_id=?",
         id);
     if (rows.isEmpty()) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "transfer not found");
-    return rows.get(0);
+    var row = rows.get(0);
+    return ETags.ok(ETags.row(row.get("version"), row.get("updated_at")), row);
   }
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package com.ledgerx.query.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.EventFields;
+import com.ledgerx.query.events.LedgerEvent.Unknown;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads event records in either encoding the command service sends: JSON, or the binary encoding
+ * described by {@code schemas/ledgerx-events.v1.schema} when header {@link #HEADER} says so. The
+ * schema file is a copy of command-service's (EventCodecTest fails if they differ); see there for the layout.
+ *
+ * {@link #event} is what the projections use: it walks either encoding once, straight into a typed
+ * {@link Envelope}, without building a tree. {@link #read} keeps the tree form for everything else.
+ */
+@Component
+public class EventCodec {
+  public static final String HEADER = "ledgerx-encoding";
+  public static final String BINARY_V1 = "bin/1";
+  static final int VERSION = 1;
+
+  private static final int T_NULL = 0, T_STRING = 1, T_LONG = 2, T_TRUE = 3, T_FALSE = 4, T_DOUBLE = 5, T_JSON = 6;
+  private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+  enum FieldType { STRING, LONG, BOOL }
+  record Field(String name, FieldType type) {}
+  record EventSchema(int id, String type, List<Field> fields) {}
+
+  private final ObjectMapper om;
+  private final Map<Integer, EventSchema> byId = new HashMap<>();
+
+  public EventCodec(ObjectMapper om){
+    this.om = om;
+    for (var s : load("schemas/ledgerx-events.v" + VERSION + ".schema")) byId.put(s.id(), s);
+  }
+
+  /** The record's envelope as a tree, whichever encoding its headers declare. */
+  public JsonNode read(byte[] value, Headers headers) throws IOException {
+    Header h = headers == null ? null : headers.lastHeader(HEADER);
+    if (h == null) return om.readTree(value);
+    String encoding = new String(h.value(), StandardCharsets.UTF_8);
+    if (!BINARY_V1.equals(encoding)) throw new IllegalArgumentException("unsupported event encoding " + encoding);
+    return decode(value);
+  }
+
+  /** The record as a typed envelope, or null if it lacks a type or aggregate id. */
+  public Envelope event(byte[] value, Headers headers) throws IOException {
+    Header h = headers == null ? null : headers.lastHeader(HEADER);
+    var f = new EventFields();
+    if (h == null) {
+      try (JsonParser p = om.getFactory().createParser(value)) { readJson(p, f); }
+    } else {
+      String encoding = new String(h.value(), StandardCharsets.UTF_8);
+      if (!BINARY_V1.equals(encoding)) throw new IllegalArgumentException("unsupported event encoding " + encoding);
+      readBinary(value, f);
+    }
+    return f.build();
+  }
+
+  /**
+   * Where a record {@link #event} cannot read sits in its aggregate's stream: its aggregate id and version
+   * as an {@link Unknown} event, or null if not even those can be found or the id is not the record key.
+   * Lets a projection take the version as a no-op instead of holding everything after it forever.
+   */
+  public Envelope position(byte[] value, Headers headers, String key){
+    Header h = headers == null ? null : headers.lastHeader(HEADER);
+    String id = null; long version = 0;
+    try {
+      if (h != null) {
+        if (!BINARY_V1.equals(new String(h.value(), StandardCharsets.UTF_8))) return null;
+        var in = new In(value);
+        if (in.read() == VERSION) {
+          if (in.varint() == 0) in.string(); // inline type name
+          id = in.string(); version = in.varint();
+        }
+      } else {
+        JsonNode root = om.readTree(value);
+        JsonNode idNode = root.has("aggregateId") ? root.get("aggregateId") : root.path("aggId");
+        if (idNode.isValueNode()) id = idNode.asText();
+        version = (root.has("version") ? root.get("version") : root.path("v")).asLong(0);
+      }
+    } catch (Exception e) {
+      return null; // not even the envelope is readable
+    }
+    if (id == null) id = key;
+    if (id == null || version <= 0 || (key != null && !key.equals(id))) return null;
+    return new Envelope(id, version, new Unknown("unreadable"));
+  }
+
+  /** Accepts the current envelope and the v1 one ({@code type, aggId, v, data}). */
+  private static void readJson(JsonParser p, EventFields f) throws IOException {
+    if (p.nextToken() != JsonToken.START_OBJECT) return;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String name = p.currentName();
+      JsonToken t = p.nextToken();
+      switch (name) {
+        case "eventType", "type" -> { if (t.isScalarValue()) f.type(p.getText()); else p.skipChildren(); }
+        case "aggregateId", "aggId" -> { if (t.isScalarValue()) f.aggregateId(p.getText()); else p.skipChildren(); }
+        case "version", "v" -> { if (t.isScalarValue()) f.version(p.getValueAsLong(0)); else p.skipChildren(); }
+        case "payload", "data" -> readPayload(p, f);
+        case "metadata" -> readMetadata(p, f);
+        default -> p.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * An event as stored in {@code event_store} (payload and metadata as JSON text), read the same way as
+   * a consumed record; used by the offline projection rebuild.
+   */
+  public Envelope event(String type, String aggregateId, long version, String payload, String metadata) throws IOException {
+    var f = new EventFields();
+    f.type(type); f.aggregateId(aggregateId); f.version(version);
+    try (JsonParser p = om.getFactory().createParser(payload)) { p.nextToken(); readPayload(p, f); }
+    if (metadata != null) {
+      try (JsonParser p = om.getFactory().createParser(metadata)) { p.nextToken(); readMetadata(p, f); }
+    }
+    return f.build();
+  }
+
+  private static void readPayload(JsonParser p, EventFields f) throws IOException {
+    if (p.currentToken() != JsonToken.START_OBJECT) { p.skipChildren(); return; }
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken v = p.nextToken();
+      if (v == JsonToken.VALUE_NUMBER_INT) f.number(field, p.getLongValue());
+      else if (v == JsonToken.VALUE_STRING) f.text(field, p.getText());
+      else p.skipChildren();
+    }
+  }
+
+  private static void readMetadata(JsonParser p, EventFields f) throws IOException {
+    if (p.currentToken() != JsonToken.START_OBJECT) { p.skipChildren(); return; }
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken v = p.nextToken();
+      if (field.equals("compensated") && v.isBoolean()) f.compensated(v == JsonToken.VALUE_TRUE);
+      else p.skipChildren();
+    }
+  }
+
+  private void readBinary(byte[] bytes, EventFields f){
+    var in = new In(bytes);
+    int version = in.read();
+    if (version != VERSION) throw new IllegalArgumentException("unsupported event encoding version " + version);
+    int id = (int) in.varint();
+    EventSchema schema = id == 0 ? null : byId.get(id);
+    if (id != 0 && schema == null) throw new IllegalArgumentException("unknown event type id " + id);
+    f.type(schema == null ? in.string() : schema.type());
+    f.aggregateId(in.string());
+    f.version(in.varint());
+
+    long present = in.varint();
+    List<Field> fields = schema == null ? List.of() : schema.fields();
+    for (int i = 0; i < fields.size(); i++) {
+      if ((present & (1L << i)) == 0) continue;
+      var field = fields.get(i);
+      switch (field.type()) {
+        case STRING -> f.text(field.name(), in.string());
+        case LONG -> f.number(field.name(), in.zigzag());
+        case BOOL -> in.read();
+      }
+    }
+    for (long n = in.varint(); n > 0; n--) {
+      String name = in.string();
+      int tag = in.read();
+      switch (tag) {
+        case T_STRING -> f.text(name, in.string());
+        case T_LONG -> f.number(name, in.zigzag());
+        default -> skipTagged(in, tag);
+      }
+    }
+    for (long n = in.varint(); n > 0; n--) {
+      String name = in.string();
+      int tag = in.read();
+      if (name.equals("compensated") && (tag == T_TRUE || tag == T_FALSE)) f.compensated(tag == T_TRUE);
+      else skipTagged(in, tag);
+    }
+  }
+
+  private static void skipTagged(In in, int tag){
+    switch (tag) {
+      case T_NULL, T_TRUE, T_FALSE -> { }
+      case T_STRING, T_JSON -> in.string();
+      case T_LONG -> in.varint();
+      case T_DOUBLE -> in.fixed64();
+      default -> throw new IllegalArgumentException("unknown value tag " + tag);
+    }
+  }
+
+  ObjectNode decode(byte[] bytes) throws IOException {
+    var in = new In(bytes);
+    int version = in.read();
+    if (version != VERSION) throw new IllegalArgumentException("unsupported event encoding version " + version);
+    int id = (int) in.varint();
+    EventSchema schema = id == 0 ? null : byId.get(id);
+    if (id != 0 && schema == null) throw new IllegalArgumentException("unknown event type id " + id);
+    ObjectNode env = NODES.objectNode();
+    env.put("eventType", schema == null ? in.string() : schema.type());
+    env.put("aggregateId", in.string());
+    env.put("version", in.varint());
+
+    ObjectNode payload = env.putObject("payload");
+    long present = in.varint();
+    List<Field> fields = schema == null ? List.of() : schema.fields();
+    for (int i = 0; i < fields.size(); i++) {
+      if ((present & (1L << i)) == 0) continue;
+      var f = fields.get(i);
+      switch (f.type()) {
+        case STRING -> payload.put(f.name(), in.string());
+        case LONG -> payload.put(f.name(), in.zigzag());
+        case BOOL -> payload.put(f.name(), in.read() != 0);
+      }
+    }
+    for (long n = in.varint(); n > 0; n--) payload.set(in.string(), tagged(in));
+    ObjectNode metadata = env.putObject("metadata");
+    for (long n = in.varint(); n > 0; n--) metadata.set(in.string(), tagged(in));
+    return env;
+  }
+
+  private JsonNode tagged(In in) throws IOException {
+    int tag = in.read();
+    return switch (tag) {
+      case T_NULL -> NODES.nullNode();
+      case T_STRING -> NODES.textNode(in.string());
+      case T_LONG -> NODES.numberNode(in.zigzag());
+      case T_TRUE -> NODES.booleanNode(true);
+      case T_FALSE -> NODES.booleanNode(false);
+      case T_DOUBLE -> NODES.numberNode(Double.longBitsToDouble(in.fixed64()));
+      case T_JSON -> om.readTree(in.string());
+      default -> throw new IllegalArgumentException("unknown value tag " + tag);
+    };
+  }
+
+  static List<EventSchema> load(String resource){
+    var stream = EventCodec.class.getClassLoader().getResourceAsStream(resource);
+    if (stream == null) throw new IllegalStateException("missing event schema " + resource);
+    List<EventSchema> out = new ArrayList<>();
+    try (var reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+      for (String line; (line = reader.readLine()) != null; ) {
+        line = line.strip();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+        String[] parts = line.split("\\s+");
+        List<Field> fields = new ArrayList<>();
+        for (String f : Arrays.copyOfRange(parts, 2, parts.length)) {
+          String[] nt = f.split(":");
+          fields.add(new Field(nt[0], FieldType.valueOf(nt[1].toUpperCase(Locale.ROOT))));
+        }
+        out.add(new EventSchema(Integer.parseInt(parts[0]), parts[1], List.copyOf(fields)));
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return out;
+  }
+
+  private static final class In {
+    private final byte[] buf;
+    private int pos;
+
+    In(byte[] buf){ this.buf = buf; }
+
+    int read(){
+      if (pos >= buf.length) throw new IllegalArgumentException("truncated event record");
+      return buf[pos++] & 0xFF;
+    }
+
+    long varint(){
+      long v = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = read();
+        v |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) return v;
+      }
+      throw new IllegalArgumentException("malformed varint");
+    }
+
+    long zigzag(){ long v = varint(); return (v >>> 1) ^ -(v & 1); }
+
+    long fixed64(){ long v = 0; for (int i = 0; i < 8; i++) v |= (long) read() << (8 * i); return v; }
+
+    String string(){
+      int n = (int) varint();
+      if (n < 0 || pos + n > buf.length) throw new IllegalArgumentException("truncated event record");
+      String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+      pos += n;
+      return s;
+    }
+  }
+}
@@ -0,0 +1,4 @@
+package com.ledgerx.query.events;
+
+/** One consumed event: the stream it belongs to, its version in that stream, and its payload. */
+public record Envelope(String aggregateId, long version, LedgerEvent event) {}
@@ -0,0 +1,70 @@
+package com.ledgerx.query.events;
+
+import com.ledgerx.query.events.LedgerEvent.*;
+
+import java.util.Locale;
+
+/**
+ * Collects an envelope's scalar fields as a decoder walks a record once, in whatever order they
+ * arrive, then builds the typed {@link Envelope}. Legacy shapes are upcast here: the v1 envelope and
+ * payload field names are mapped by the decoders, the v1 type names ({@code ACCOUNT_CREATED},
+ * {@code CREDITED}, ...) by {@link #canonicalType}, and a missing credit/debit currency means USD.
+ */
+public final class EventFields {
+  private String type, aggregateId;
+  private long version;
+  private String accountId, transferId, from, to, currency, reason;
+  private long amountCents;
+  private boolean compensated;
+
+  public void type(String type){ this.type = type; }
+  public void aggregateId(String aggregateId){ this.aggregateId = aggregateId; }
+  public void version(long version){ this.version = version; }
+  public void compensated(boolean compensated){ this.compensated = compensated; }
+
+  /** A text payload field; unknown names are ignored. */
+  public void text(String name, String value){
+    switch (name) {
+      case "accountId" -> accountId = value;
+      case "transferId" -> transferId = value;
+      case "from" -> from = value;
+      case "to" -> to = value;
+      case "currency", "curr" -> currency = value;
+      case "reason" -> reason = value;
+      case "amountCents", "amount" -> { try { amountCents = Long.parseLong(value); } catch (NumberFormatException ignore) {} }
+      default -> { }
+    }
+  }
+
+  /** A numeric payload field; unknown names are ignored. */
+  public void number(String name, long value){
+    if (name.equals("amountCents") || name.equals("amount")) amountCents = value;
+  }
+
+  /** The envelope, or null if it has no type or aggregate id. */
+  public Envelope build(){
+    if (type == null || type.isEmpty() || aggregateId == null || aggregateId.isEmpty()) return null;
+    LedgerEvent event = switch (canonicalType(type)) {
+      case "AccountOpened" -> new AccountOpened(accountId, currency == null ? "" : currency);
+      case "FundsCredited" -> new FundsCredited(accountId, amountCents, currency == null ? "USD" : currency);
+      case "FundsDebited" -> new FundsDebited(accountId, amountCents, currency == null ? "USD" : currency);
+      case "TransferRequested" -> new TransferRequested(transferId, from, to, amountCents, currency);
+      case "SourceDebited" -> new SourceDebited(from, amountCents);
+      case "DestinationCredited" -> new DestinationCredited(to, amountCents);
+      case "TransferCompleted" -> new TransferCompleted();
+      case "TransferFailed" -> new TransferFailed(reason, compensated);
+      default -> new Unknown(type);
+    };
+    return new Envelope(aggregateId, version, event);
+  }
+
+  /** Maps legacy type names onto the current ones; anything unrecognised is returned as-is. */
+  public static String canonicalType(String type){
+    return switch (type.toUpperCase(Locale.ROOT)) {
+      case "ACCOUNTOPENED", "ACCOUNT_OPENED", "ACCOUNTCREATED", "ACCOUNT_CREATED" -> "AccountOpened";
+      case "FUNDSCREDITED", "FUNDS_CREDITED", "ACCOUNTCREDITED", "ACCOUNT_CREDITED", "CREDITED" -> "FundsCredited";
+      case "FUNDSDEBITED", "FUNDS_DEBITED", "ACCOUNTDEBITED", "ACCOUNT_DEBITED", "DEBITED" -> "FundsDebited";
+      default -> type;
+    };
+  }
+}
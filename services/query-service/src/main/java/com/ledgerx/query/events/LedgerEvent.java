@@ -0,0 +1,22 @@
+package com.ledgerx.query.events;
+
+/**
+ * Typed payloads of the Account and Transfer events, as the projections consume them. Mirrors
+ * command-service's model of the same name; the only difference is that {@link TransferFailed}
+ * carries the {@code compensated} flag the command side sends as metadata.
+ */
+public sealed interface LedgerEvent {
+
+  record AccountOpened(String accountId, String currency) implements LedgerEvent {}
+  record FundsCredited(String accountId, long amountCents, String currency) implements LedgerEvent {}
+  record FundsDebited(String accountId, long amountCents, String currency) implements LedgerEvent {}
+
+  record TransferRequested(String transferId, String from, String to, long amountCents, String currency) implements LedgerEvent {}
+  record SourceDebited(String from, long amountCents) implements LedgerEvent {}
+  record DestinationCredited(String to, long amountCents) implements LedgerEvent {}
+  record TransferCompleted() implements LedgerEvent {}
+  record TransferFailed(String reason, boolean compensated) implements LedgerEvent {}
+
+  /** An event type the projections do not know. */
+  record Unknown(String type) implements LedgerEvent {}
+}
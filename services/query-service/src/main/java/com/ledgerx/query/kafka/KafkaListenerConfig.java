@@ -0,0 +1,35 @@
+package com.ledgerx.query.kafka;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.time.Duration;
+
+@Configuration
+public class KafkaListenerConfig {
+
+  /**
+   * Same settings as Boot's default factory (spring.kafka.listener.*), but hands listeners the whole poll.
+   * A poll whose listener throws is redelivered with exponential backoff and without a limit, so a
+   * projection stalls on its partition while the database is unavailable instead of skipping events.
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<Object,Object> batchListenerContainerFactory(
+      ConcurrentKafkaListenerContainerFactoryConfigurer configurer, ConsumerFactory<Object,Object> consumerFactory,
+      @Value("${ledgerx.projection.retry.backoff:PT0.5S}") Duration backoff,
+      @Value("${ledgerx.projection.retry.max-backoff:PT30S}") Duration maxBackoff){
+    var factory = new ConcurrentKafkaListenerContainerFactory<Object,Object>();
+    configurer.configure(factory, consumerFactory);
+    factory.setBatchListener(true);
+    var retry = new ExponentialBackOff(backoff.toMillis(), 2.0);
+    retry.setMaxInterval(maxBackoff.toMillis());
+    factory.setCommonErrorHandler(new DefaultErrorHandler(retry));
+    return factory;
+  }
+}
@@ -0,0 +1,85 @@
+package com.ledgerx.query.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Applies one poll's events in parallel without reordering any key. Events are split into up to
+ * {@code workers} lanes by key hash, keeping their poll order within a lane, and each lane is applied
+ * on its own virtual thread; {@link #run} returns once every lane is done, so the container's batch
+ * commit never covers an unfinished event. Keys are aggregate ids, so lanes write disjoint projection
+ * rows. With one worker the poll is applied on the consumer thread, as before.
+ */
+@Component
+public class KeyOrderedExecutor {
+  private final int workers;
+  private final MeterRegistry meter;
+
+  public KeyOrderedExecutor(MeterRegistry meter, @Value("${ledgerx.projection.workers:1}") int workers){
+    this.meter = meter; this.workers = Math.max(1, workers);
+  }
+
+  public int workers(){ return workers; }
+
+  /** Counts a poll's records per topic partition. */
+  public void records(String listener, List<? extends ConsumerRecord<?,?>> recs){
+    String topic = null; int partition = -1; long n = 0;
+    for (var rec : recs) {
+      if (rec.partition() != partition || !rec.topic().equals(topic)) {
+        if (n > 0) count(listener, topic, partition, n);
+        topic = rec.topic(); partition = rec.partition(); n = 0;
+      }
+      n++;
+    }
+    if (n > 0) count(listener, topic, partition, n);
+  }
+
+  private void count(String listener, String topic, int partition, long n){
+    meter.counter("ledgerx.projection.records", "listener", listener, "topic", topic, "partition", String.valueOf(partition)).increment(n);
+  }
+
+  /** Applies {@code items} lane by lane and rethrows the first lane failure once all lanes have finished. */
+  public <T> void run(String listener, List<T> items, Function<T,String> key, Consumer<List<T>> apply){
+    if (items.isEmpty()) return;
+    if (workers == 1) { lane(listener, 0, items, apply); return; }
+
+    List<List<T>> lanes = new ArrayList<>(workers);
+    for (int i = 0; i < workers; i++) lanes.add(new ArrayList<>());
+    for (T item : items) lanes.get(Math.floorMod(key.apply(item).hashCode(), workers)).add(item);
+
+    List<CompletableFuture<Void>> running = new ArrayList<>(workers);
+    for (int i = 0; i < workers; i++) {
+      List<T> lane = lanes.get(i);
+      if (lane.isEmpty()) continue;
+      int worker = i;
+      var f = new CompletableFuture<Void>();
+      Thread.ofVirtual().name("ledgerx-projection-" + listener + "-" + worker).start(() -> {
+        try { lane(listener, worker, lane, apply); f.complete(null); }
+        catch (Throwable t) { f.completeExceptionally(t); }
+      });
+      running.add(f);
+    }
+    try {
+      CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) throw re;
+      if (e.getCause() instanceof Error err) throw err;
+      throw e;
+    }
+  }
+
+  private <T> void lane(String listener, int worker, List<T> items, Consumer<List<T>> apply){
+    String w = String.valueOf(worker);
+    meter.counter("ledgerx.projection.worker.events", "listener", listener, "worker", w).increment(items.size());
+    meter.timer("ledgerx.projection.worker.latency", "listener", listener, "worker", w).record(() -> apply.accept(items));
+  }
+}
@@ -0,0 +1,152 @@
+package com.ledgerx.query.projections;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes waits. A command response's {@code version} is a token: a read with
+ * {@code minVersion} is parked here, without a thread, until the row's {@code last_applied_version}
+ * reaches it or the wait times out, and is then answered on a virtual thread. The projection listeners
+ * call {@link #applied} after each committed batch; a single sweeper also re-reads the watermarks of
+ * everything still waiting every {@code recheck-interval}, which covers rows projected by another
+ * instance of this service.
+ */
+@Component
+public class AppliedVersions {
+  private static final Logger log = LoggerFactory.getLogger(AppliedVersions.class);
+
+  public enum Kind {
+    ACCOUNT("account_balance", "account_id"), TRANSFER("transfers", "transfer_id");
+    final String table, id;
+    Kind(String table, String id){ this.table = table; this.id = id; }
+  }
+
+  private record Key(Kind kind, String id) {}
+
+  private static final class Waiter {
+    final long minVersion; final long startedAt = System.nanoTime();
+    final AtomicBoolean done = new AtomicBoolean();
+    final CompletableFuture<Boolean> reached = new CompletableFuture<>();
+    Waiter(long minVersion){ this.minVersion = minVersion; }
+  }
+
+  private final JdbcTemplate jdbc;
+  private final Duration maxWait;
+  private final int maxWaiters;
+  private final Map<Key, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final ExecutorService reads = Executors.newVirtualThreadPerTaskExecutor();
+  private final ScheduledExecutorService timer =
+      Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("ledgerx-applied-versions").daemon().factory());
+  private final Timer reachedTimer, timedOutTimer;
+
+  public AppliedVersions(JdbcTemplate jdbc, MeterRegistry meter,
+                         @Value("${ledgerx.consistency.max-wait:10s}") Duration maxWait,
+                         @Value("${ledgerx.consistency.max-waiters:10000}") int maxWaiters,
+                         @Value("${ledgerx.consistency.recheck-interval:500ms}") Duration recheck){
+    this.jdbc = jdbc; this.maxWait = maxWait; this.maxWaiters = maxWaiters;
+    this.reachedTimer = meter.timer("ledgerx.consistency.wait", "outcome", "reached");
+    this.timedOutTimer = meter.timer("ledgerx.consistency.wait", "outcome", "timeout");
+    meter.gauge("ledgerx.consistency.waiters", waiting);
+    timer.scheduleWithFixedDelay(this::recheck, recheck.toMillis(), recheck.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stop(){
+    timer.shutdownNow();
+    reads.shutdown();
+  }
+
+  /**
+   * Answers with {@code read} once {@code id} has been projected up to {@code minVersion}, or once
+   * {@code timeout} (capped at {@code ledgerx.consistency.max-wait}) has passed, whichever is first;
+   * a timed-out read returns whatever is there, and its {@code version} shows how far behind it is.
+   * Without {@code minVersion}, reads right away.
+   */
+  public <T> CompletableFuture<T> read(Kind kind, String id, Long minVersion, Duration timeout, Supplier<T> read){
+    if (minVersion == null || minVersion <= 0) return CompletableFuture.completedFuture(read.get());
+    if (waiting.get() >= maxWaiters)
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many pending minVersion reads");
+
+    var key = new Key(kind, id);
+    var w = new Waiter(minVersion);
+    waiting.incrementAndGet();
+    waiters.compute(key, (k, set) -> {
+      if (set == null) set = ConcurrentHashMap.newKeySet();
+      set.add(w);
+      return set;
+    });
+    // registered first, so a batch that commits after this read still finds the waiter
+    Long current = version(kind, id);
+    if (current != null && current >= minVersion) finish(key, w, true);
+    else {
+      long ms = Math.max(0, Math.min(timeout.toMillis(), maxWait.toMillis()));
+      timer.schedule(() -> finish(key, w, false), ms, TimeUnit.MILLISECONDS);
+    }
+    return w.reached.thenApplyAsync(reached -> read.get(), reads);
+  }
+
+  /** Called by the projection listeners once a batch has committed, with the watermarks it wrote. */
+  void applied(Kind kind, Map<String,Long> versions){
+    if (waiting.get() == 0) return;
+    versions.forEach((id, version) -> reached(new Key(kind, id), version));
+  }
+
+  private void reached(Key key, long version){
+    var set = waiters.get(key);
+    if (set == null) return;
+    for (var w : set) if (w.minVersion <= version) finish(key, w, true);
+  }
+
+  private void finish(Key key, Waiter w, boolean reached){
+    if (!w.done.compareAndSet(false, true)) return;
+    waiters.computeIfPresent(key, (k, set) -> { set.remove(w); return set.isEmpty() ? null : set; });
+    waiting.decrementAndGet();
+    (reached ? reachedTimer : timedOutTimer).record(System.nanoTime() - w.startedAt, TimeUnit.NANOSECONDS);
+    w.reached.complete(reached);
+  }
+
+  /** Catches rows projected elsewhere: one watermark query per kind for every key still waiting. */
+  private void recheck(){
+    if (waiting.get() == 0) return;
+    try {
+      Map<Kind, List<String>> ids = new HashMap<>();
+      for (var key : waiters.keySet()) ids.computeIfAbsent(key.kind(), k -> new ArrayList<>()).add(key.id());
+      ids.forEach((kind, list) -> jdbc.query(
+          "SELECT " + kind.id + ", last_applied_version FROM " + kind.table + " WHERE " + kind.id + " = ANY(?)",
+          ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", list.toArray())),
+          rs -> { reached(new Key(kind, rs.getString(1)), rs.getLong(2)); }));
+    } catch (Exception e) {
+      log.warn("minVersion recheck failed: {}", e.toString());
+    }
+  }
+
+  private Long version(Kind kind, String id){
+    var rows = jdbc.queryForList("SELECT last_applied_version FROM " + kind.table + " WHERE " + kind.id + " = ?", Long.class, id);
+    return rows.isEmpty() ? null : rows.get(0);
+  }
+}
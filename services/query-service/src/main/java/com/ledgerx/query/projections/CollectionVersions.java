@@ -0,0 +1,29 @@
+package com.ledgerx.query.projections;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Cheap change counters for whole projection tables, kept in {@code projection_versions} (V6). The
+ * listeners bump a slot in the statement that writes the rows; readers sum a collection's slots, which
+ * is a 16-row primary-key lookup whatever the size of the table.
+ */
+public final class CollectionVersions {
+  static final int SLOTS = 16;
+
+  private CollectionVersions(){}
+
+  /** The slot a batch bumps, chosen by one of its keys. */
+  static int slot(String key){ return Math.floorMod(key.hashCode(), SLOTS); }
+
+  /** Bumps {@code collection}'s slot (parameter) when the {@code up} CTE of the same statement returned rows. */
+  static String bump(String collection){
+    return """
+      UPDATE projection_versions SET version = version + 1
+      WHERE collection = '%s' AND slot = ? AND EXISTS (SELECT 1 FROM up)
+    """.formatted(collection);
+  }
+
+  public static long current(JdbcTemplate jdbc, String collection){
+    return jdbc.queryForObject("SELECT COALESCE(SUM(version), 0) FROM projection_versions WHERE collection = ?", Long.class, collection);
+  }
+}
@@ -0,0 +1,73 @@
+package com.ledgerx.query.projections;
+
+import com.ledgerx.query.codec.EventCodec;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent.Unknown;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Which projection failures are the event's fault, and what skipping such an event means. When a poll
+ * fails and is re-applied event by event, an event rejected by the database for its content (a
+ * constraint or data error) would fail the same way on every redelivery. Anything else (connection
+ * loss, timeouts, lock or serialization failures, bugs) is rethrown, so the offsets are not committed and
+ * the container's error handler retries the whole poll (see {@link com.ledgerx.query.kafka.KafkaListenerConfig}).
+ *
+ * The projections apply each aggregate's events strictly in version order, so an event that is skipped
+ * outright would hold every later event of its aggregate forever. A skipped event, whether rejected or
+ * unreadable, is therefore applied as an {@link Unknown} at its version: it changes nothing but the
+ * watermark, the same as an event type the projection does not know.
+ */
+final class ProjectionFailures {
+  private static final Logger log = LoggerFactory.getLogger(ProjectionFailures.class);
+
+  private ProjectionFailures(){}
+
+  static boolean poison(RuntimeException e){
+    return e instanceof DataIntegrityViolationException;
+  }
+
+  /** Decodes a poll; a record that cannot be read becomes a no-op at its version when that can still be found. */
+  static List<Envelope> decode(String what, EventCodec codec, List<ConsumerRecord<String,byte[]>> recs){
+    List<Envelope> events = new ArrayList<>(recs.size());
+    for (var rec : recs) {
+      Envelope env; Exception error = null;
+      try { env = codec.event(rec.value(), rec.headers()); }
+      catch (Exception e) { env = null; error = e; }
+      if (env == null) {
+        env = codec.position(rec.value(), rec.headers(), rec.key());
+        String outcome = env == null ? "no aggregate version found, nothing to advance" : "taking " + env.aggregateId() + "@" + env.version() + " as a no-op";
+        if (error != null) log.error("Unreadable {} event at {}-{}@{}, {}", what, rec.topic(), rec.partition(), rec.offset(), outcome, error);
+        else log.error("{} event with missing fields at {}-{}@{}, {}", what, rec.topic(), rec.partition(), rec.offset(), outcome);
+      }
+      if (env != null) events.add(env);
+    }
+    return events;
+  }
+
+  /**
+   * Re-applies a failed poll event by event. An event the database rejects is counted, logged and applied
+   * as a no-op at its version instead; any other failure is rethrown.
+   */
+  static void applyEach(String what, List<Envelope> events, Consumer<List<Envelope>> apply, Runnable onPoison){
+    for (var env : events) {
+      try { apply.accept(List.of(env)); }
+      catch (RuntimeException ex) {
+        if (!poison(ex)) throw ex; // not committed: the poll is retried
+        onPoison.run();
+        log.error("Skipping {} event {}@{} the projection rejects, taking its version as a no-op", what, env.aggregateId(), env.version(), ex);
+        apply.accept(List.of(skipped(env)));
+      }
+    }
+  }
+
+  static Envelope skipped(Envelope env){
+    return new Envelope(env.aggregateId(), env.version(), new Unknown("rejected:" + env.event().getClass().getSimpleName()));
+  }
+}
@@ -1,96 +1,193 @@
 package com.ledgerx.query.projections;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ledgerx.query.codec.EventCodec;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent.AccountOpened;
+import com.ledgerx.query.events.LedgerEvent.FundsCredited;
+import com.ledgerx.query.events.LedgerEvent.FundsDebited;
+import com.ledgerx.query.kafka.KeyOrderedExecutor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Locale;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Applies account events a whole poll at a time, in one statement: the poll's events go in as arrays,
+ * and for each account the events that continue its {@code last_applied_version} without a gap are
+ * summed into one delta, which is written together with the new watermark. Redeliveries, whether
+ * within the poll or of an earlier one, are at or below the watermark and drop out. An event that
+ * arrives ahead of a missing version is held in {@code account_held_events} and applied with the
+ * batch that brings the missing one, so a delta is never applied twice or out of turn. A new row
+ * takes the currency of the account's first applied event. If the batch fails it is retried event by
+ * event: an event the database rejects for its content is logged and applied as a no-op at its version,
+ * as is a record that cannot be decoded, and any other failure is rethrown so the poll is not committed
+ * and is retried (see {@link ProjectionFailures}). With
+ * {@code ledgerx.projection.workers} above one, the poll is applied in per-account lanes in parallel (see {@link KeyOrderedExecutor}).
+ */
 @Component
 public class ProjectionListener {
   private static final Logger log = LoggerFactory.getLogger(ProjectionListener.class);
-  private final JdbcTemplate jdbc; private final ObjectMapper om;
+  private final JdbcTemplate jdbc; private final EventCodec codec; private final KeyOrderedExecutor lanes;
+  private final AppliedVersions appliedVersions;
 
   private final Timer processTimer;
-  private final Counter opened, credited, debited;
+  private final DistributionSummary batchSize;
+  private final Counter opened, credited, debited, held, poison;
 
-  public ProjectionListener(JdbcTemplate j, ObjectMapper o, MeterRegistry meter){
-    this.jdbc=j; this.om=o;
+  public ProjectionListener(JdbcTemplate j, EventCodec c, KeyOrderedExecutor lanes, AppliedVersions appliedVersions, MeterRegistry meter){
+    this.jdbc=j; this.codec=c; this.lanes=lanes; this.appliedVersions=appliedVersions;
     this.processTimer = meter.timer("ledgerx.projection.account.latency");
+    this.batchSize = meter.summary("ledgerx.projection.account.batch.size");
     this.opened   = meter.counter("ledgerx.projection.account.opened");
     this.credited = meter.counter("ledgerx.projection.account.credited");
     this.debited  = meter.counter("ledgerx.projection.account.debited");
+    this.held     = meter.counter("ledgerx.projection.account.held");
+    this.poison   = meter.counter("ledgerx.projection.account.poison");
   }
 
-  @KafkaListener(topics = {"ledgerx.accounts.events.v1","ledgerx.accounts.events.v2"})
-  public void onAccount(String value){
+  @KafkaListener(topics = {"ledgerx.accounts.events.v1","ledgerx.accounts.events.v2"}, containerFactory = "batchListenerContainerFactory",
+      concurrency = "${ledgerx.projection.concurrency:1}")
+  public void onAccounts(List<ConsumerRecord<String,byte[]>> recs){
     processTimer.record(() -> {
+      lanes.records("account", recs);
+      List<Envelope> events = ProjectionFailures.decode("account", codec, recs);
+      batchSize.record(events.size());
       try {
-        JsonNode root = om.readTree(value);
-        String type = root.path("eventType").asText(root.path("type").asText(""));
-        String agg  = root.path("aggregateId").asText(root.path("aggId").asText(""));
-        long ver    = root.path("version").asLong(root.path("v").asLong(0));
-        JsonNode p  = root.has("payload") ? root.path("payload") : root.path("data");
-        if (type.isEmpty() || agg.isEmpty()) {
-          log.warn("Skipping account event with missing fields: {}", value);
-          return;
-        }
+        lanes.run("account", events, Envelope::aggregateId, this::apply);
+      } catch (RuntimeException e) {
+        log.warn("Account batch of {} failed, applying one by one: {}", events.size(), e.toString());
+        ProjectionFailures.applyEach("account", events, this::apply, poison::increment);
+      }
+    });
+  }
 
-        int inserted = jdbc.update("""
-          INSERT INTO applied_events(aggregate_id, version) VALUES (?, ?)
-          ON CONFLICT (aggregate_id, version) DO NOTHING
-        """, agg, ver);
-        if (inserted == 0) return;
+  /**
+   * Applies the events in one statement, and once more if some were held only because a concurrent
+   * batch inserted their account first: that row is committed by the time the statement returns, so
+   * the second run writes them instead of leaving them for the account's next event.
+   */
+  void apply(List<Envelope> events){
+    if (applyOnce(events) > 0) applyOnce(events);
+  }
 
-        switch (type.toUpperCase(Locale.ROOT)) {
-          case "ACCOUNT_OPENED", "ACCOUNTOPENED", "ACCOUNT_CREATED", "ACCOUNTCREATED" -> {
-            String currency = p.path("currency").asText(p.path("curr").asText(""));
-            jdbc.update("""
-              INSERT INTO account_balance(account_id, currency, balance_cents)
-              VALUES (?, ?, 0) ON CONFLICT (account_id) DO NOTHING
-            """, agg, currency);
-            opened.increment();
-          }
-          case "FUNDS_CREDITED", "FUNDSCREDITED", "ACCOUNT_CREDITED", "ACCOUNTCREDITED", "CREDITED" -> {
-            long amount = p.path("amountCents").asLong(p.path("amount").asLong(0));
-            // Ensure the row exists even if ACCOUNT_OPENED was missed
-            String currencyUp = p.path("currency").asText(p.path("curr").asText("USD"));
-            jdbc.update("""
-              INSERT INTO account_balance(account_id, currency, balance_cents)
-              VALUES (?, ?, 0)
-              ON CONFLICT (account_id) DO NOTHING
-            """, agg, currencyUp);
-            jdbc.update("UPDATE account_balance SET balance_cents=balance_cents+?, updated_at=NOW() WHERE account_id=?",
-              amount, agg);
-            credited.increment();
-          }
-          case "FUNDS_DEBITED", "FUNDSDEBITED", "ACCOUNT_DEBITED", "ACCOUNTDEBITED", "DEBITED" -> {
-            long amount = p.path("amountCents").asLong(p.path("amount").asLong(0));
-            // Ensure the row exists even if ACCOUNT_OPENED was missed
-            String currencyUp = p.path("currency").asText(p.path("curr").asText("USD"));
-            jdbc.update("""
-              INSERT INTO account_balance(account_id, currency, balance_cents)
-              VALUES (?, ?, 0)
-              ON CONFLICT (account_id) DO NOTHING
-            """, agg, currencyUp);
-            jdbc.update("UPDATE account_balance SET balance_cents=balance_cents-?, updated_at=NOW() WHERE account_id=?",
-              amount, agg);
-            debited.increment();
-          }
-          default -> {
-            log.warn("Skipping unknown account event type: {} payload={}", type, value);
-          }
+  /** Returns how many accounts were not written because a concurrent batch got there first. */
+  private long applyOnce(List<Envelope> events){
+    int n = 0;
+    String[] ids = new String[events.size()], kinds = new String[events.size()], currencies = new String[events.size()];
+    Long[] versions = new Long[events.size()], cents = new Long[events.size()];
+    for (var e : events) {
+      switch (e.event()) {
+        case AccountOpened a -> { kinds[n] = "O"; currencies[n] = a.currency(); cents[n] = 0L; }
+        case FundsCredited c -> { kinds[n] = "C"; currencies[n] = c.currency(); cents[n] = c.amountCents(); }
+        case FundsDebited d -> { kinds[n] = "D"; currencies[n] = d.currency(); cents[n] = -d.amountCents(); }
+        default -> {
+          // still takes its version, or every later event of the account would wait behind it
+          log.warn("Unknown account event: {} for {}@{}, advancing past it", e.event(), e.aggregateId(), e.version());
+          kinds[n] = "U"; cents[n] = 0L;
         }
-      } catch(Exception e){ log.error("Failed to project account event: {}", value, e); }
+      }
+      ids[n] = e.aggregateId(); versions[n] = e.version(); n++;
+    }
+    if (n == 0) return 0;
+    int size = n;
+    Map<String,Long> applied = new HashMap<>();
+    long[] raced = {0};
+    jdbc.query(con -> {
+      var ps = con.prepareStatement(APPLY);
+      ps.setArray(1, con.createArrayOf("text", Arrays.copyOf(ids, size)));
+      ps.setArray(2, con.createArrayOf("bigint", Arrays.copyOf(versions, size)));
+      ps.setArray(3, con.createArrayOf("text", Arrays.copyOf(kinds, size)));
+      ps.setArray(4, con.createArrayOf("text", Arrays.copyOf(currencies, size)));
+      ps.setArray(5, con.createArrayOf("bigint", Arrays.copyOf(cents, size)));
+      ps.setInt(6, CollectionVersions.slot(ids[0]));
+      return ps;
+    }, rs -> {
+      String id = rs.getString(1);
+      if (id == null) { held.increment(rs.getLong(2)); raced[0] = rs.getLong(3); return; }
+      applied.put(id, rs.getLong(2));
+      opened.increment(rs.getLong(3)); credited.increment(rs.getLong(4)); debited.increment(rs.getLong(5));
     });
+    appliedVersions.applied(AppliedVersions.Kind.ACCOUNT, applied);
+    return raced[0];
   }
-}
\ No newline at end of file
+
+  /**
+   * Locks the poll's existing rows (in id order, so concurrent batches cannot deadlock) and takes,
+   * per account, the poll's events and those held earlier that are above the watermark (DISTINCT
+   * drops duplicates). Only the run that starts at {@code last_applied_version + 1} without a gap is
+   * folded into one delta and written: new rows are inserted, known rows are updated if their
+   * watermark is still the one the run starts from. Everything else above the watermark (events
+   * behind a gap, or of a row that a concurrent batch inserted first) is held in
+   * {@code account_held_events}, and held events the write covered are deleted. If any row changed,
+   * the table's collection version is bumped too (see {@link CollectionVersions}). A new account is
+   * only inserted once its run has a currency, so a run of no-op events alone is held. Returns one row
+   * per written account and a last row, with a null id, counting the events held and the accounts whose
+   * run lost the race to a concurrent batch.
+   */
+  private static final String APPLY = """
+    WITH inc AS (
+      SELECT * FROM unnest(?::text[], ?::bigint[], ?::text[], ?::text[], ?::bigint[]) AS e(id, version, kind, currency, cents)
+    ), cur AS (
+      SELECT account_id, last_applied_version FROM account_balance
+      WHERE account_id IN (SELECT id FROM inc) ORDER BY account_id FOR UPDATE
+    ), e AS (
+      SELECT DISTINCT ON (x.id, x.version) x.*, cur.account_id IS NOT NULL AS known,
+             COALESCE(cur.last_applied_version, 0) AS base
+      FROM (
+        SELECT * FROM inc
+        UNION ALL
+        SELECT account_id, version, kind, currency, cents FROM account_held_events WHERE account_id IN (SELECT id FROM inc)
+      ) x LEFT JOIN cur ON cur.account_id = x.id
+      WHERE x.version > COALESCE(cur.last_applied_version, 0)
+    ), r AS (
+      SELECT e.*, version - base - row_number() OVER (PARTITION BY id ORDER BY version) AS gap FROM e
+    ), d AS (
+      SELECT id, bool_or(known) AS known, MIN(base) AS base, SUM(cents) AS cents, MAX(version) AS version,
+             (array_agg(currency ORDER BY version) FILTER (WHERE currency IS NOT NULL))[1] AS currency,
+             COUNT(*) FILTER (WHERE kind = 'O') AS opened,
+             COUNT(*) FILTER (WHERE kind = 'C') AS credited,
+             COUNT(*) FILTER (WHERE kind = 'D') AS debited
+      FROM r WHERE gap = 0
+      GROUP BY id
+    ), ins AS (
+      INSERT INTO account_balance (account_id, currency, balance_cents, last_applied_version)
+      SELECT id, currency, cents, version FROM d WHERE NOT known AND currency IS NOT NULL ORDER BY id
+      ON CONFLICT (account_id) DO NOTHING
+      RETURNING account_id, last_applied_version
+    ), upd AS (
+      UPDATE account_balance b SET balance_cents = b.balance_cents + d.cents, last_applied_version = d.version, updated_at = NOW()
+      FROM d WHERE d.known AND b.account_id = d.id AND b.last_applied_version = d.base
+      RETURNING b.account_id, b.last_applied_version
+    ), up AS (
+      SELECT * FROM ins UNION ALL SELECT * FROM upd
+    ), hold AS (
+      INSERT INTO account_held_events (account_id, version, kind, currency, cents)
+      SELECT id, version, kind, currency, cents FROM r
+      WHERE gap > 0 OR id NOT IN (SELECT account_id FROM up)
+      ON CONFLICT DO NOTHING
+      RETURNING 1
+    ), unhold AS (
+      DELETE FROM account_held_events h USING up
+      WHERE h.account_id = up.account_id AND h.version <= up.last_applied_version
+    ), bump AS (
+      %s
+    )
+    SELECT d.id, d.version, d.opened, d.credited, d.debited FROM d JOIN up ON up.account_id = d.id
+    UNION ALL
+    SELECT NULL, (SELECT COUNT(*) FROM hold),
+           (SELECT COUNT(*) FROM d WHERE (known OR currency IS NOT NULL) AND id NOT IN (SELECT account_id FROM up)), 0, 0
+  """.formatted(CollectionVersions.bump("account_balance").strip());
+}
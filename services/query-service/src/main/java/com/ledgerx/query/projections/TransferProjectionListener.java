@@ -1,59 +1,174 @@
 package com.ledgerx.query.projections;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ledgerx.query.codec.EventCodec;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent.*;
+import com.ledgerx.query.kafka.KeyOrderedExecutor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Projects transfer events a whole poll at a time, in one statement. A transfer's events in the poll
+ * are reduced to its final state first (a successful transfer's four transitions become one row
+ * write). Events are applied strictly in version order: only the run that continues the row's
+ * last_applied_version without a gap is written, redeliveries at or below it drop out, and events
+ * ahead of a missing version (a status change before its TransferRequested, say) are held in
+ * {@code transfer_held_events} until the missing one arrives. Statuses therefore follow the saga's
+ * own order. Statements that change rows also bump the table's {@link CollectionVersions} slot.
+ * If the batch fails it is retried event by event: an event the database rejects for its content, like
+ * a record that cannot be decoded, is applied as a no-op at its version; other failures are rethrown
+ * and the poll is retried (see {@link ProjectionFailures}). Transfers are split into lanes by
+ * {@link KeyOrderedExecutor} when it has more than one worker.
+ */
 @Component
 public class TransferProjectionListener {
-  private final JdbcTemplate jdbc; private final ObjectMapper om;
-  public TransferProjectionListener(JdbcTemplate j, ObjectMapper o){ this.jdbc=j; this.om=o; }
+  private static final Logger log = LoggerFactory.getLogger(TransferProjectionListener.class);
+  private final JdbcTemplate jdbc; private final EventCodec codec; private final KeyOrderedExecutor lanes;
+  private final AppliedVersions appliedVersions;
+  public TransferProjectionListener(JdbcTemplate j, EventCodec c, KeyOrderedExecutor lanes, AppliedVersions appliedVersions){
+    this.jdbc=j; this.codec=c; this.lanes=lanes; this.appliedVersions=appliedVersions;
+  }
 
-  @KafkaListener(topics = {"ledgerx.transfers.events.v1"})
-  public void onTransfer(String value){
+  @KafkaListener(topics = {"ledgerx.transfers.events.v1"}, containerFactory = "batchListenerContainerFactory",
+      concurrency = "${ledgerx.projection.concurrency:1}")
+  public void onTransfers(List<ConsumerRecord<String,byte[]>> recs){
+    lanes.records("transfer", recs);
+    List<Envelope> events = ProjectionFailures.decode("transfer", codec, recs);
     try {
-      JsonNode root = om.readTree(value);
-      String type = root.get("eventType").asText();
-      String id   = root.get("aggregateId").asText();
-      long ver    = root.get("version").asLong();
-      JsonNode p  = root.get("payload");
+      lanes.run("transfer", events, Envelope::aggregateId, this::apply);
+    } catch (RuntimeException e) {
+      log.warn("Transfer batch of {} failed, applying one by one: {}", events.size(), e.toString());
+      ProjectionFailures.applyEach("transfer", events, this::apply, () -> { });
+    }
+  }
 
-      // idempotency for projections (share the same applied_events table)
-      int inserted = jdbc.update("""
-        INSERT INTO applied_events(aggregate_id, version) VALUES (?, ?)
-        ON CONFLICT (aggregate_id, version) DO NOTHING
-      """, "transfer:"+id, ver); // namespace with prefix to avoid collision with account ids
-      if (inserted == 0) return;
+  /**
+   * Applies the events in one statement, each transfer's run of events folded into one row write; runs
+   * it again if a concurrent batch inserted one of the transfers first, as {@link ProjectionListener} does.
+   */
+  void apply(List<Envelope> events){
+    if (applyOnce(events) > 0) applyOnce(events);
+  }
 
-      switch (type) {
-        case "TransferRequested" -> {
-          jdbc.update("""
-            INSERT INTO transfers(transfer_id, from_account, to_account, amount_cents, currency, status)
-            VALUES (?,?,?,?,?,'INITIATED')
-            ON CONFLICT (transfer_id) DO UPDATE SET
-              from_account=EXCLUDED.from_account,
-              to_account=EXCLUDED.to_account,
-              amount_cents=EXCLUDED.amount_cents,
-              currency=EXCLUDED.currency,
-              status='INITIATED',
-              updated_at=NOW()
-          """, id, p.get("from").asText(), p.get("to").asText(),
-                p.get("amountCents").asLong(), p.get("currency").asText());
-        }
-        case "SourceDebited" -> jdbc.update(
-          "UPDATE transfers SET status='DEBITED', updated_at=NOW() WHERE transfer_id=?", id);
-        case "DestinationCredited" -> jdbc.update(
-          "UPDATE transfers SET status='CREDITED', updated_at=NOW() WHERE transfer_id=?", id);
-        case "TransferCompleted" -> jdbc.update(
-          "UPDATE transfers SET status='COMPLETED', updated_at=NOW() WHERE transfer_id=?", id);
-        case "TransferFailed" -> {
-          String status = (root.path("metadata").path("compensated").asBoolean(false))
-              ? "COMPENSATED" : "FAILED";
-          jdbc.update("UPDATE transfers SET status=?, updated_at=NOW() WHERE transfer_id=?", status, id);
-        }
+  private long applyOnce(List<Envelope> events){
+    int n = 0, size = events.size();
+    String[] ids = new String[size], status = new String[size], from = new String[size], to = new String[size], currency = new String[size];
+    Long[] versions = new Long[size], amount = new Long[size];
+    for (var e : events) {
+      switch (e.event()) {
+        case TransferRequested r -> { status[n] = "INITIATED"; from[n] = r.from(); to[n] = r.to(); amount[n] = r.amountCents(); currency[n] = r.currency(); }
+        case SourceDebited d -> status[n] = "DEBITED";
+        case DestinationCredited c -> status[n] = "CREDITED";
+        case TransferCompleted c -> status[n] = "COMPLETED";
+        case TransferFailed f -> status[n] = f.compensated() ? "COMPENSATED" : "FAILED";
+        default -> { } // no status change, but it still takes its version
+      }
+      ids[n] = e.aggregateId(); versions[n] = e.version(); n++;
+    }
+    if (n == 0) return 0;
+    Map<String,Long> applied = new HashMap<>();
+    long[] raced = {0};
+    jdbc.query(con -> {
+      var ps = con.prepareStatement(APPLY);
+      ps.setArray(1, con.createArrayOf("text", ids));
+      ps.setArray(2, con.createArrayOf("bigint", versions));
+      ps.setArray(3, con.createArrayOf("text", status));
+      ps.setArray(4, con.createArrayOf("text", from));
+      ps.setArray(5, con.createArrayOf("text", to));
+      ps.setArray(6, con.createArrayOf("bigint", amount));
+      ps.setArray(7, con.createArrayOf("text", currency));
+      ps.setInt(8, CollectionVersions.slot(ids[0]));
+      return ps;
+    }, rs -> {
+      if (rs.getString(1) != null) applied.put(rs.getString(1), rs.getLong(2));
+      else {
+        if (rs.getLong(2) > 0) log.debug("Holding {} transfer events behind a missing version", rs.getLong(2));
+        raced[0] = rs.getLong(3);
       }
-    } catch(Exception e){ throw new RuntimeException(e); }
+    });
+    appliedVersions.applied(AppliedVersions.Kind.TRANSFER, applied);
+    return raced[0];
   }
-}
\ No newline at end of file
+
+  /**
+   * The same shape as the account statement in {@link ProjectionListener}: lock the known rows in id
+   * order, take the poll's and the held events above each watermark, fold the gap-free run that
+   * starts at {@code last_applied_version + 1} (the last status in it wins, the request fields come
+   * from the TransferRequested in it) and write it, inserting transfers whose request is in the run
+   * and updating the rest. Events that could not be written are held in {@code transfer_held_events}.
+   * Returns one row per written transfer and a last row, with a null id, counting the events held and
+   * the transfers whose run lost the race to a concurrent batch.
+   */
+  private static final String APPLY = """
+    WITH inc AS (
+      SELECT * FROM unnest(?::text[], ?::bigint[], ?::text[], ?::text[], ?::text[], ?::bigint[], ?::text[])
+        AS e(id, version, status, from_account, to_account, amount_cents, currency)
+    ), cur AS (
+      SELECT transfer_id, last_applied_version FROM transfers
+      WHERE transfer_id IN (SELECT id FROM inc) ORDER BY transfer_id FOR UPDATE
+    ), e AS (
+      SELECT DISTINCT ON (x.id, x.version) x.*, cur.transfer_id IS NOT NULL AS known,
+             COALESCE(cur.last_applied_version, 0) AS base
+      FROM (
+        SELECT * FROM inc
+        UNION ALL
+        SELECT transfer_id, version, status, from_account, to_account, amount_cents, currency
+        FROM transfer_held_events WHERE transfer_id IN (SELECT id FROM inc)
+      ) x LEFT JOIN cur ON cur.transfer_id = x.id
+      WHERE x.version > COALESCE(cur.last_applied_version, 0)
+    ), r AS (
+      SELECT e.*, version - base - row_number() OVER (PARTITION BY id ORDER BY version) AS gap FROM e
+    ), d AS (
+      SELECT id, bool_or(known) AS known, MIN(base) AS base, MAX(version) AS version,
+             (array_agg(status ORDER BY version DESC) FILTER (WHERE status IS NOT NULL))[1] AS status,
+             (array_agg(from_account) FILTER (WHERE from_account IS NOT NULL))[1] AS from_account,
+             (array_agg(to_account) FILTER (WHERE to_account IS NOT NULL))[1] AS to_account,
+             (array_agg(amount_cents) FILTER (WHERE amount_cents IS NOT NULL))[1] AS amount_cents,
+             (array_agg(currency) FILTER (WHERE currency IS NOT NULL))[1] AS currency
+      FROM r WHERE gap = 0
+      GROUP BY id
+    ), ins AS (
+      INSERT INTO transfers (transfer_id, from_account, to_account, amount_cents, currency, status, last_applied_version)
+      SELECT id, from_account, to_account, amount_cents, currency, status, version FROM d
+      WHERE NOT known AND from_account IS NOT NULL ORDER BY id
+      ON CONFLICT (transfer_id) DO NOTHING
+      RETURNING transfer_id, last_applied_version
+    ), upd AS (
+      UPDATE transfers t SET
+        from_account = COALESCE(d.from_account, t.from_account),
+        to_account = COALESCE(d.to_account, t.to_account),
+        amount_cents = COALESCE(d.amount_cents, t.amount_cents),
+        currency = COALESCE(d.currency, t.currency),
+        status = COALESCE(d.status, t.status),
+        last_applied_version = d.version,
+        updated_at = NOW()
+      FROM d WHERE d.known AND t.transfer_id = d.id AND t.last_applied_version = d.base
+      RETURNING t.transfer_id, t.last_applied_version
+    ), up AS (
+      SELECT * FROM ins UNION ALL SELECT * FROM upd
+    ), hold AS (
+      INSERT INTO transfer_held_events (transfer_id, version, status, from_account, to_account, amount_cents, currency)
+      SELECT id, version, status, from_account, to_account, amount_cents, currency FROM r
+      WHERE gap > 0 OR id NOT IN (SELECT transfer_id FROM up)
+      ON CONFLICT DO NOTHING
+      RETURNING 1
+    ), unhold AS (
+      DELETE FROM transfer_held_events h USING up
+      WHERE h.transfer_id = up.transfer_id AND h.version <= up.last_applied_version
+    ), bump AS (
+      %s
+    )
+    SELECT transfer_id, last_applied_version, 0 FROM up
+    UNION ALL
+    SELECT NULL, (SELECT COUNT(*) FROM hold),
+           (SELECT COUNT(*) FROM d WHERE (known OR from_account IS NOT NULL) AND id NOT IN (SELECT transfer_id FROM up))
+  """.formatted(CollectionVersions.bump("transfers").strip());
+}
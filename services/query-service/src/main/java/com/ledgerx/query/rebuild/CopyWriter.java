@@ -0,0 +1,65 @@
+package com.ledgerx.query.rebuild;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/** Streams rows into a {@code COPY ... FROM STDIN} in text format, escaping values and buffering writes. */
+final class CopyWriter implements AutoCloseable {
+  private final CopyIn copy;
+  private final StringBuilder buf = new StringBuilder(1 << 16);
+  private long rows;
+  private boolean first = true;
+
+  CopyWriter(CopyManager copies, String table, String columns) throws SQLException {
+    this.copy = copies.copyIn("COPY " + table + " (" + columns + ") FROM STDIN");
+  }
+
+  CopyWriter field(String value){
+    if (!first) buf.append('\t');
+    first = false;
+    if (value == null) { buf.append("\\N"); return this; }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\\' -> buf.append("\\\\");
+        case '\t' -> buf.append("\\t");
+        case '\n' -> buf.append("\\n");
+        case '\r' -> buf.append("\\r");
+        default -> buf.append(c);
+      }
+    }
+    return this;
+  }
+
+  CopyWriter field(long value){
+    if (!first) buf.append('\t');
+    first = false;
+    buf.append(value);
+    return this;
+  }
+
+  void endRow() throws SQLException {
+    buf.append('\n');
+    first = true;
+    rows++;
+    if (buf.length() >= 1 << 16) flush();
+  }
+
+  long rows(){ return rows; }
+
+  private void flush() throws SQLException {
+    byte[] b = buf.toString().getBytes(StandardCharsets.UTF_8);
+    copy.writeToCopy(b, 0, b.length);
+    buf.setLength(0);
+  }
+
+  /** Ends the COPY; call before using the connection for anything else. */
+  @Override public void close() throws SQLException {
+    if (!copy.isActive()) return;
+    flush();
+    copy.endCopy();
+  }
+}
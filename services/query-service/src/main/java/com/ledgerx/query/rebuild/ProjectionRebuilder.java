@@ -0,0 +1,339 @@
+package com.ledgerx.query.rebuild;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ledgerx.query.codec.EventCodec;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent.*;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Offline rebuild of the projections straight from {@code event_store}, instead of resetting the
+ * consumer group and re-applying every event through the listeners (3-4 statements per event).
+ *
+ * With the local listeners stopped and the consumer group idle, it takes the topics' end offsets, then
+ * opens a REPEATABLE READ snapshot (which contains every event those offsets cover, since an event is
+ * staged to the outbox in its own transaction) and exports it to a second connection. The first streams
+ * the events in aggregate order with a server-side cursor and folds each aggregate in memory; the second,
+ * in one transaction on the same snapshot, COPYs the folded rows, each with the version of its last
+ * event as {@code last_applied_version}, into unindexed shadow tables, builds the live tables' indexes on
+ * the shadows and swaps them in. The group's offsets are then moved to the recorded ones; events past
+ * them that the snapshot already folded are at or below the watermark and skipped as usual.
+ */
+@Component
+public class ProjectionRebuilder {
+  private static final Logger log = LoggerFactory.getLogger(ProjectionRebuilder.class);
+  static final List<String> TABLES = List.of("account_balance", "transfers");
+
+  private final JdbcTemplate jdbc;
+  private final DataSource dataSource;
+  private final EventCodec codec;
+  private final ObjectMapper om;
+  private final KafkaListenerEndpointRegistry listeners;
+  private final KafkaAdmin kafkaAdmin;
+  private final String groupId;
+  private final int fetchSize;
+  private final AtomicBoolean busy = new AtomicBoolean();
+
+  public ProjectionRebuilder(JdbcTemplate jdbc, DataSource dataSource, EventCodec codec, ObjectMapper om,
+                             KafkaListenerEndpointRegistry listeners, KafkaAdmin kafkaAdmin,
+                             @Value("${spring.kafka.consumer.group-id}") String groupId,
+                             @Value("${ledgerx.rebuild.fetch-size:10000}") int fetchSize){
+    this.jdbc = jdbc; this.dataSource = dataSource; this.codec = codec; this.om = om;
+    this.listeners = listeners; this.kafkaAdmin = kafkaAdmin; this.groupId = groupId;
+    this.fetchSize = Math.max(100, fetchSize);
+  }
+
+  /** Starts a rebuild in the background; fails if one is already running on this instance. */
+  public long start(){
+    if (!busy.compareAndSet(false, true)) throw new IllegalStateException("a projection rebuild is already running");
+    try {
+      long id = jdbc.queryForObject("INSERT INTO projection_rebuilds DEFAULT VALUES RETURNING id", Long.class);
+      Thread.ofPlatform().name("ledgerx-rebuild-" + id).daemon().start(() -> {
+        try { run(id); } finally { busy.set(false); }
+      });
+      return id;
+    } catch (RuntimeException e) {
+      busy.set(false);
+      throw e;
+    }
+  }
+
+  public Map<String,Object> status(Long id){
+    List<Map<String,Object>> rows = jdbc.queryForList("""
+      SELECT id, status, events, accounts, transfers, offsets::text AS offsets, error, started_at, finished_at,
+             EXTRACT(EPOCH FROM COALESCE(finished_at, NOW()) - started_at) AS seconds
+      FROM projection_rebuilds WHERE (?::bigint IS NULL OR id = ?) ORDER BY id DESC LIMIT 1
+    """, id, id);
+    return rows.isEmpty() ? null : rows.get(0);
+  }
+
+  /** Runs a rebuild on the calling thread. */
+  void run(long id){
+    List<MessageListenerContainer> stopped = new ArrayList<>();
+    for (var c : listeners.getListenerContainers()) if (c.isRunning()) { c.stop(); stopped.add(c); }
+    try (AdminClient admin = AdminClient.create(kafkaAdmin.getConfigurationProperties())) {
+      var members = admin.describeConsumerGroups(List.of(groupId)).all().get(30, TimeUnit.SECONDS).get(groupId).members();
+      if (!members.isEmpty()) throw new IllegalStateException(
+          "consumer group " + groupId + " still has " + members.size() + " members; stop the other query-service instances first");
+      Map<TopicPartition,Long> offsets = endOffsets(admin);
+
+      long started = System.nanoTime();
+      Counts counts = rebuild(id, offsets);
+      admin.alterConsumerGroupOffsets(groupId, toCommit(offsets)).all().get(30, TimeUnit.SECONDS);
+      jdbc.update("UPDATE projection_rebuilds SET status='COMPLETED', finished_at=NOW() WHERE id=?", id);
+      log.info("projection rebuild {}: {} events -> {} accounts, {} transfers in {} ms", id, counts.events,
+          counts.accounts, counts.transfers, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    } catch (Exception e) {
+      log.error("projection rebuild {} failed", id, e);
+      jdbc.update("UPDATE projection_rebuilds SET status='FAILED', error=?, finished_at=NOW() WHERE id=?", e.toString(), id);
+    } finally {
+      for (var c : stopped) c.start();
+    }
+  }
+
+  private record Counts(long events, long accounts, long transfers) {}
+
+  private Counts rebuild(long id, Map<TopicPartition,Long> offsets) throws Exception {
+    try (Connection read = dataSource.getConnection(); Connection write = dataSource.getConnection()) {
+      read.setAutoCommit(false);
+      read.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+      write.setAutoCommit(false);
+      write.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+      try {
+        String snapshot;
+        try (Statement st = read.createStatement(); ResultSet rs = st.executeQuery("SELECT pg_export_snapshot()")) {
+          rs.next(); snapshot = rs.getString(1);
+        }
+        try (Statement st = write.createStatement()) {
+          st.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+          for (String t : TABLES) {
+            st.execute("DROP TABLE IF EXISTS " + t + "_rebuild");
+            st.execute("CREATE TABLE " + t + "_rebuild (LIKE " + t + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+          }
+        }
+
+        Counts counts = fold(read, write.unwrap(PGConnection.class));
+
+        try (Statement st = write.createStatement()) {
+          List<String> renames = new ArrayList<>();
+          for (String t : TABLES) renames.addAll(copyIndexes(st, t));
+          st.execute("LOCK TABLE " + String.join(", ", TABLES) + " IN ACCESS EXCLUSIVE MODE");
+          for (String t : TABLES) {
+            st.execute("DROP TABLE " + t);
+            st.execute("ALTER TABLE " + t + "_rebuild RENAME TO " + t);
+          }
+          for (String r : renames) st.execute(r);
+          // every held event was consumed before the listeners stopped, so the snapshot has folded it
+          st.execute("TRUNCATE account_held_events, transfer_held_events");
+          // every row may differ from what clients hold: move the list ETags on
+          st.execute("UPDATE projection_versions SET version = version + 1 WHERE slot = 0 AND collection IN ('"
+              + String.join("', '", TABLES) + "')");
+          for (String t : TABLES) st.execute("ANALYZE " + t);
+        }
+        try (var ps = write.prepareStatement("""
+            UPDATE projection_rebuilds SET events=?, accounts=?, transfers=?, offsets=?::jsonb WHERE id=?
+          """)) {
+          ps.setLong(1, counts.events); ps.setLong(2, counts.accounts); ps.setLong(3, counts.transfers);
+          ps.setString(4, om.writeValueAsString(describe(offsets))); ps.setLong(5, id);
+          ps.executeUpdate();
+        }
+        write.commit();
+        return counts;
+      } catch (Exception e) {
+        write.rollback();
+        throw e;
+      } finally {
+        read.rollback();
+      }
+    }
+  }
+
+  /** Streams the snapshot's Account then Transfer events in stream order, COPYing one row per aggregate. */
+  private Counts fold(Connection read, PGConnection write) throws Exception {
+    long events = 0;
+    var accounts = new AccountRow();
+    var transfers = new TransferRow();
+    CopyWriter accountCopy = new CopyWriter(write.getCopyAPI(), "account_balance_rebuild",
+        "account_id, currency, balance_cents, updated_at, last_applied_version");
+    CopyWriter transferCopy = null;
+    try (var ps = read.prepareStatement("""
+        SELECT aggregate_type, aggregate_id, version, event_type, payload::text, metadata::text, event_timestamp::text
+        FROM event_store WHERE aggregate_type IN ('Account', 'Transfer')
+        ORDER BY aggregate_type, aggregate_id, version
+      """)) {
+      ps.setFetchSize(fetchSize);
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          events++;
+          Envelope env = codec.event(rs.getString(4), rs.getString(2), rs.getLong(3), rs.getString(5), rs.getString(6));
+          // still takes its version, as the listeners do with an event they cannot read
+          if (env == null) env = new Envelope(rs.getString(2), rs.getLong(3), new Unknown("unreadable"));
+          String at = rs.getString(7);
+          if ("Account".equals(rs.getString(1))) {
+            if (!env.aggregateId().equals(accounts.id)) { accounts.flush(accountCopy); accounts.reset(env.aggregateId()); }
+            accounts.apply(env, at);
+          } else {
+            if (transferCopy == null) {
+              accounts.flush(accountCopy);
+              accountCopy.close(); // one COPY at a time per connection
+              transferCopy = new CopyWriter(write.getCopyAPI(), "transfers_rebuild",
+                  "transfer_id, from_account, to_account, amount_cents, currency, status, updated_at, last_applied_version");
+            }
+            if (!env.aggregateId().equals(transfers.id)) { transfers.flush(transferCopy); transfers.reset(env.aggregateId()); }
+            transfers.apply(env, at);
+          }
+        }
+      }
+      if (transferCopy == null) accounts.flush(accountCopy);
+      else transfers.flush(transferCopy);
+    } finally {
+      accountCopy.close();
+      if (transferCopy != null) transferCopy.close();
+    }
+    return new Counts(events, accountCopy.rows(), transferCopy == null ? 0 : transferCopy.rows());
+  }
+
+  /** Same rules as ProjectionListener: the row exists once any account event is seen. */
+  private static final class AccountRow {
+    String id, currency, updatedAt;
+    long balance, version;
+    boolean exists;
+
+    void reset(String id){ this.id = id; currency = null; updatedAt = null; balance = 0; exists = false; }
+
+    void apply(Envelope env, String at){
+      version = env.version();
+      switch (env.event()) {
+        case AccountOpened o -> open(o.currency(), at);
+        case FundsCredited c -> { open(c.currency(), at); balance += c.amountCents(); }
+        case FundsDebited d -> { open(d.currency(), at); balance -= d.amountCents(); }
+        default -> { }
+      }
+    }
+
+    private void open(String currency, String at){
+      if (!exists) { exists = true; this.currency = currency; }
+      updatedAt = at;
+    }
+
+    void flush(CopyWriter out) throws Exception {
+      if (!exists) return;
+      out.field(id).field(currency).field(balance).field(updatedAt).field(version).endRow();
+      exists = false;
+    }
+  }
+
+  /** Same rules as TransferProjectionListener: status changes only apply once the request was seen. */
+  private static final class TransferRow {
+    String id, from, to, currency, status, updatedAt;
+    long amount, version;
+    boolean exists;
+
+    void reset(String id){ this.id = id; exists = false; }
+
+    void apply(Envelope env, String at){
+      version = env.version();
+      switch (env.event()) {
+        case TransferRequested r -> {
+          exists = true; from = r.from(); to = r.to(); amount = r.amountCents(); currency = r.currency(); status = "INITIATED";
+        }
+        case SourceDebited s -> status = "DEBITED";
+        case DestinationCredited c -> status = "CREDITED";
+        case TransferCompleted c -> status = "COMPLETED";
+        case TransferFailed f -> status = f.compensated() ? "COMPENSATED" : "FAILED";
+        default -> { return; } // no status change, but it still takes its version
+      }
+      updatedAt = at;
+    }
+
+    void flush(CopyWriter out) throws Exception {
+      if (!exists) return;
+      out.field(id).field(from).field(to).field(amount).field(currency).field(status).field(updatedAt).field(version).endRow();
+      exists = false;
+    }
+  }
+
+  /**
+   * Creates the live table's indexes (and primary key) on its shadow under a temporary name, and
+   * returns the statements that give them the live names once the live table is dropped.
+   */
+  private static List<String> copyIndexes(Statement st, String table) throws Exception {
+    String pkey = null;
+    List<String[]> indexes = new ArrayList<>();
+    try (ResultSet rs = st.executeQuery("""
+        SELECT i.schemaname, i.indexname, i.indexdef, c.conname IS NOT NULL
+        FROM pg_indexes i
+        LEFT JOIN pg_constraint c ON c.conname = i.indexname AND c.contype = 'p'
+                                 AND c.conrelid = (i.schemaname || '.' || i.tablename)::regclass
+        WHERE i.schemaname = current_schema() AND i.tablename = '%s'
+      """.formatted(table))) {
+      while (rs.next()) {
+        indexes.add(new String[]{rs.getString(1), rs.getString(2), rs.getString(3)});
+        if (rs.getBoolean(4)) pkey = rs.getString(2);
+      }
+    }
+    List<String> renames = new ArrayList<>();
+    for (String[] ix : indexes) {
+      String schema = ix[0], name = ix[1], def = ix[2];
+      String on = " INDEX " + name + " ON " + schema + "." + table + " ";
+      if (!def.contains(on)) throw new IllegalStateException("cannot rebuild index " + name + ": " + def);
+      st.execute(def.replace(on, " INDEX " + name + "_rebuild ON " + schema + "." + table + "_rebuild "));
+      if (name.equals(pkey)) st.execute("ALTER TABLE " + table + "_rebuild ADD CONSTRAINT " + name + "_rebuild PRIMARY KEY USING INDEX " + name + "_rebuild");
+      renames.add("ALTER INDEX " + name + "_rebuild RENAME TO " + name);
+    }
+    return renames;
+  }
+
+  private Map<TopicPartition,Long> endOffsets(AdminClient admin) throws Exception {
+    Set<String> topics = new TreeSet<>();
+    for (var c : listeners.getListenerContainers()) {
+      String[] ts = c.getContainerProperties().getTopics();
+      if (ts != null) topics.addAll(List.of(ts));
+    }
+    topics.retainAll(admin.listTopics().names().get(30, TimeUnit.SECONDS));
+    Map<TopicPartition,OffsetSpec> latest = new HashMap<>();
+    for (var d : admin.describeTopics(topics).allTopicNames().get(30, TimeUnit.SECONDS).values())
+      for (var p : d.partitions()) latest.put(new TopicPartition(d.name(), p.partition()), OffsetSpec.latest());
+    Map<TopicPartition,Long> out = new HashMap<>();
+    admin.listOffsets(latest).all().get(30, TimeUnit.SECONDS).forEach((tp, info) -> out.put(tp, info.offset()));
+    return out;
+  }
+
+  private static Map<TopicPartition,OffsetAndMetadata> toCommit(Map<TopicPartition,Long> offsets){
+    Map<TopicPartition,OffsetAndMetadata> out = new HashMap<>();
+    offsets.forEach((tp, o) -> out.put(tp, new OffsetAndMetadata(o)));
+    return out;
+  }
+
+  private static Map<String,Long> describe(Map<TopicPartition,Long> offsets){
+    Map<String,Long> out = new TreeMap<>();
+    offsets.forEach((tp, o) -> out.put(tp.topic() + "-" + tp.partition(), o));
+    return out;
+  }
+}
@@ -0,0 +1,14 @@
+-- Offline projection rebuilds (/api/admin/rebuild): account_balance, transfers and applied_events are
+-- rebuilt from event_store into shadow tables and swapped in. Each run records the Kafka end offsets
+-- taken before its snapshot; the projection consumer group resumes from there.
+CREATE TABLE IF NOT EXISTS projection_rebuilds (
+  id BIGSERIAL PRIMARY KEY,
+  status TEXT NOT NULL DEFAULT 'RUNNING' CHECK (status IN ('RUNNING', 'COMPLETED', 'FAILED')),
+  events BIGINT NOT NULL DEFAULT 0,
+  accounts BIGINT NOT NULL DEFAULT 0,
+  transfers BIGINT NOT NULL DEFAULT 0,
+  offsets JSONB,
+  error TEXT,
+  started_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  finished_at TIMESTAMPTZ
+);
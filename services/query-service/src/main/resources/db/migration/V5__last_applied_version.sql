@@ -0,0 +1,18 @@
+-- Projection idempotency moves from applied_events (one row per event, forever) to a per-row
+-- high-watermark: an event is applied only if its version is above the row's last_applied_version,
+-- in the same statement that applies it. Events arrive in version order per aggregate (one partition
+-- per key), so anything at or below the watermark is a redelivery.
+ALTER TABLE account_balance ADD COLUMN IF NOT EXISTS last_applied_version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE transfers ADD COLUMN IF NOT EXISTS last_applied_version BIGINT NOT NULL DEFAULT 0;
+
+UPDATE account_balance b SET last_applied_version = a.version
+FROM (SELECT aggregate_id, MAX(version) AS version FROM applied_events
+      WHERE aggregate_id NOT LIKE 'transfer:%' GROUP BY aggregate_id) a
+WHERE a.aggregate_id = b.account_id;
+
+UPDATE transfers t SET last_applied_version = a.version
+FROM (SELECT substr(aggregate_id, length('transfer:') + 1) AS transfer_id, MAX(version) AS version FROM applied_events
+      WHERE aggregate_id LIKE 'transfer:%' GROUP BY aggregate_id) a
+WHERE a.transfer_id = t.transfer_id;
+
+DROP TABLE IF EXISTS applied_events;
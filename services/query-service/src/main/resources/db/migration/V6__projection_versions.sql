@@ -0,0 +1,14 @@
+-- Collection versions for the list endpoints' ETags. Every projection write that changes rows bumps
+-- one of its collection's slots in the same transaction, so the sum over a collection's slots moves
+-- with every such commit and is never ahead of what a reader can see. Writers pick a slot by key, so
+-- parallel batches rarely queue on the same row lock.
+CREATE TABLE IF NOT EXISTS projection_versions (
+  collection TEXT NOT NULL,
+  slot INT NOT NULL,
+  version BIGINT NOT NULL DEFAULT 0,
+  PRIMARY KEY (collection, slot)
+);
+
+INSERT INTO projection_versions (collection, slot)
+SELECT c, s FROM unnest(ARRAY['account_balance', 'transfers']) AS c, generate_series(0, 15) AS s
+ON CONFLICT DO NOTHING;
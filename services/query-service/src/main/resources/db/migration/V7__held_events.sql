@@ -0,0 +1,26 @@
+-- The watermark from V5 only applies an event whose version is exactly last_applied_version + 1.
+-- An event that arrives ahead of a gap (an outbox resend can put v2 on the topic before v1, and a
+-- partition change can split an aggregate across two consumers) is parked here instead of dropped,
+-- and is applied in the same statement as the event that closes the gap. Held rows carry what the
+-- projection needs from the event, not the event itself.
+CREATE TABLE IF NOT EXISTS account_held_events (
+  account_id TEXT NOT NULL,
+  version BIGINT NOT NULL,
+  kind TEXT NOT NULL,
+  currency TEXT,
+  cents BIGINT NOT NULL,
+  held_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  PRIMARY KEY (account_id, version)
+);
+
+CREATE TABLE IF NOT EXISTS transfer_held_events (
+  transfer_id TEXT NOT NULL,
+  version BIGINT NOT NULL,
+  status TEXT,
+  from_account TEXT,
+  to_account TEXT,
+  amount_cents BIGINT,
+  currency TEXT,
+  held_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  PRIMARY KEY (transfer_id, version)
+);
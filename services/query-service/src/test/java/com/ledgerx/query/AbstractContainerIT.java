@@ -0,0 +1,40 @@
+package com.ledgerx.query;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.redpanda.RedpandaContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Postgres and Redpanda for the integration tests. The containers are static fields, so every test
+ * class gets fresh ones started before it and stopped after it; the Spring context goes with them,
+ * otherwise a cached context would keep pointing at stopped containers. Subclasses set their own
+ * {@code spring.kafka.consumer.group-id} so their listeners read the topics from the beginning.
+ */
+@Testcontainers
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public abstract class AbstractContainerIT {
+
+  // pg_stat_statements for ProjectionWatermarkBenchIT; harmless for the rest
+  @SuppressWarnings("resource") @Container protected static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(DockerImageName.parse("postgres:16-alpine"))
+      .withDatabaseName("ledgerx").withUsername("ledgerx").withPassword("ledgerx")
+      .withCommand("postgres", "-c", "shared_preload_libraries=pg_stat_statements");
+
+  @SuppressWarnings("resource") @Container protected static final RedpandaContainer KAFKA = new RedpandaContainer("docker.redpanda.com/redpandadata/redpanda:v24.1.7");
+
+  @DynamicPropertySource
+  static void containerProps(DynamicPropertyRegistry r){
+    r.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+    r.add("spring.datasource.username", POSTGRES::getUsername);
+    r.add("spring.datasource.password", POSTGRES::getPassword);
+    r.add("spring.kafka.bootstrap-servers", KAFKA::getBootstrapServers);
+    // isolate Flyway
+    r.add("spring.flyway.table", () -> "flyway_history_query_test");
+    r.add("spring.flyway.baseline-on-migrate", () -> true);
+  }
+}
@@ -9,41 +9,15 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.test.context.DynamicPropertyRegistry;
-import org.springframework.test.context.DynamicPropertySource;
 
 import org.apache.kafka.common.serialization.StringSerializer;
-import org.testcontainers.junit.jupiter.Testcontainers;
-import org.testcontainers.junit.jupiter.Container;
-import org.testcontainers.redpanda.RedpandaContainer;
-import org.testcontainers.containers.PostgreSQLContainer;
-import org.testcontainers.utility.DockerImageName;
 
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
-@Testcontainers
-@SpringBootTest
-class ProjectionListenerIT {
-
-  @SuppressWarnings("resource") @Container static PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(DockerImageName.parse("postgres:16-alpine"))
-      .withDatabaseName("ledgerx").withUsername("ledgerx").withPassword("ledgerx");
-
-  @SuppressWarnings("resource") @Container static RedpandaContainer KAFKA = new RedpandaContainer("docker.redpanda.com/redpandadata/redpanda:v24.1.7");
-
-  @DynamicPropertySource
-  static void props(DynamicPropertyRegistry r){
-    r.add("spring.datasource.url", POSTGRES::getJdbcUrl);
-    r.add("spring.datasource.username", POSTGRES::getUsername);
-    r.add("spring.datasource.password", POSTGRES::getPassword);
-    r.add("spring.kafka.bootstrap-servers", KAFKA::getBootstrapServers);
-    // isolate Flyway
-    r.add("spring.flyway.table", () -> "flyway_history_query_test");
-    r.add("spring.flyway.baseline-on-migrate", () -> true);
-    // use a fresh group so consumer reads from beginning
-    r.add("spring.kafka.consumer.group-id", () -> "ledgerx-projections-test");
-  }
+@SpringBootTest(properties = "spring.kafka.consumer.group-id=ledgerx-projections-test")
+class ProjectionListenerIT extends AbstractContainerIT {
 
   @Autowired JdbcTemplate jdbc;
   @Autowired ObjectMapper om;
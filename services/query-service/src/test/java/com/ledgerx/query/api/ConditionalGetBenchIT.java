@@ -0,0 +1,102 @@
+package com.ledgerx.query.api;
+
+import com.ledgerx.query.AbstractContainerIT;
+import com.ledgerx.query.projections.ProjectionListener;
+import com.ledgerx.query.projections.TransferProjectionListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a polling dashboard costs with and without If-None-Match: response bytes and time per poll
+ * for the two row endpoints and the two lists, while nothing changes; then a change must come through.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.kafka.consumer.group-id=ledgerx-conditional-get-bench")
+class ConditionalGetBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(ConditionalGetBenchIT.class);
+
+  @Autowired ProjectionListener accounts;
+  @Autowired TransferProjectionListener transfers;
+  @Autowired TestRestTemplate http;
+
+  @Test
+  void polling_with_and_without_etags() {
+    List<ConsumerRecord<String,byte[]>> accountPoll = new ArrayList<>(), transferPoll = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      accountPoll.add(account("cg_" + i, 1, "AccountOpened", "{\"accountId\":\"cg_%d\",\"currency\":\"USD\"}".formatted(i)));
+      accountPoll.add(account("cg_" + i, 2, "FundsCredited", "{\"accountId\":\"cg_%d\",\"amountCents\":10000,\"currency\":\"USD\"}".formatted(i)));
+    }
+    for (int i = 0; i < 2_000; i++) {
+      String id = "cgt_" + i;
+      transferPoll.add(record("ledgerx.transfers.events.v1", id, 1, "TransferRequested",
+          "{\"transferId\":\"%s\",\"from\":\"cg_%d\",\"to\":\"cg_%d\",\"amountCents\":100,\"currency\":\"USD\"}".formatted(id, i % 500, (i + 1) % 500)));
+      transferPoll.add(record("ledgerx.transfers.events.v1", id, 2, "TransferCompleted", "{}"));
+    }
+    accounts.onAccounts(accountPoll);
+    transfers.onTransfers(transferPoll);
+
+    int polls = 300;
+    for (String url : List.of("/api/accounts/cg_1", "/api/transfers/cgt_1", "/api/accounts", "/api/transfers?limit=200")) {
+      var first = get(url, null);
+      String tag = first.getHeaders().getETag();
+      Assertions.assertNotNull(tag, url);
+
+      long bytesFull = 0, bytesConditional = 0, t0 = System.nanoTime();
+      for (int i = 0; i < polls; i++) bytesFull += length(get(url, null));
+      long t1 = System.nanoTime();
+      for (int i = 0; i < polls; i++) {
+        var res = get(url, tag);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, res.getStatusCode(), url);
+        bytesConditional += length(res);
+      }
+      long t2 = System.nanoTime();
+      log.info("{}: full={} B {}us/poll, conditional={} B {}us/poll", url,
+          bytesFull / polls, Math.round((t1 - t0) / 1e3 / polls), bytesConditional / polls, Math.round((t2 - t1) / 1e3 / polls));
+      Assertions.assertEquals(0, bytesConditional);
+      Assertions.assertTrue(bytesFull > 0);
+    }
+
+    // a change moves both the row's tag and the list's
+    String rowTag = get("/api/accounts/cg_1", null).getHeaders().getETag();
+    String listTag = get("/api/accounts", null).getHeaders().getETag();
+    var debit = account("cg_1", 3, "FundsDebited", "{\"accountId\":\"cg_1\",\"amountCents\":1,\"currency\":\"USD\"}");
+    accounts.onAccounts(List.of(debit));
+    Assertions.assertEquals(HttpStatus.OK, get("/api/accounts/cg_1", rowTag).getStatusCode());
+    Assertions.assertEquals(HttpStatus.OK, get("/api/accounts", listTag).getStatusCode());
+    // a redelivery changes nothing, so the tags stay valid
+    String after = get("/api/accounts", null).getHeaders().getETag();
+    accounts.onAccounts(List.of(debit));
+    Assertions.assertEquals(HttpStatus.NOT_MODIFIED, get("/api/accounts", after).getStatusCode());
+  }
+
+  private static ConsumerRecord<String,byte[]> account(String id, long version, String type, String payload){
+    return record("ledgerx.accounts.events.v2", id, version, type, payload);
+  }
+
+  private static ConsumerRecord<String,byte[]> record(String topic, String id, long version, String type, String payload){
+    String json = "{\"eventType\":\"%s\",\"aggregateId\":\"%s\",\"version\":%d,\"payload\":%s,\"metadata\":{}}".formatted(type, id, version, payload);
+    return new ConsumerRecord<>(topic, 0, 0, id, json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private ResponseEntity<String> get(String url, String ifNoneMatch){
+    var headers = new HttpHeaders();
+    if (ifNoneMatch != null) headers.setIfNoneMatch(ifNoneMatch);
+    return http.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+  }
+
+  private static long length(ResponseEntity<String> res){ return res.getBody() == null ? 0 : res.getBody().length(); }
+}
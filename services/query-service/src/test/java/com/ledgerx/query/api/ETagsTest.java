@@ -0,0 +1,28 @@
+package com.ledgerx.query.api;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+class ETagsTest {
+
+  @Test
+  void row_tags_move_with_version_and_updated_at() {
+    var ts = Timestamp.from(Instant.parse("2024-05-01T10:00:00.123456Z"));
+    Assertions.assertEquals("\"v7-1714557600123456\"", ETags.row(7L, ts));
+    Assertions.assertNotEquals(ETags.row(7L, ts), ETags.row(8L, ts));
+    Assertions.assertNotEquals(ETags.row(7L, ts), ETags.row(7L, Timestamp.from(Instant.parse("2024-05-01T10:00:00.123457Z"))));
+  }
+
+  @Test
+  void if_none_match_uses_weak_comparison_over_a_list() {
+    String tag = ETags.collection(42);
+    Assertions.assertTrue(ETags.matches(tag, tag));
+    Assertions.assertTrue(ETags.matches("\"c1\", W/" + tag, tag));
+    Assertions.assertTrue(ETags.matches("*", tag));
+    Assertions.assertFalse(ETags.matches("\"c41\"", tag));
+    Assertions.assertFalse(ETags.matches(null, tag));
+  }
+}
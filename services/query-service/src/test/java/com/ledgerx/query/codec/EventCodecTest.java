@@ -0,0 +1,98 @@
+package com.ledgerx.query.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent.*;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+
+class EventCodecTest {
+  private final ObjectMapper om = new ObjectMapper();
+  private final EventCodec codec = new EventCodec(om);
+
+  /** The FundsCredited record of command-service's {@code codec/events.v1.compat} fixture. */
+  private static final String WIRE_SAMPLE = "0102056163635f310707056163635f31b8170355534400010e6964656d706f74656e63794b657901026b31";
+
+  @Test
+  void reads_binary_when_the_header_says_so() throws Exception {
+    var headers = new RecordHeaders().add(EventCodec.HEADER, EventCodec.BINARY_V1.getBytes(StandardCharsets.UTF_8));
+    var root = codec.read(HexFormat.of().parseHex(WIRE_SAMPLE), headers);
+    Assertions.assertEquals(om.readTree("""
+        {"eventType":"FundsCredited","aggregateId":"acc_1","version":7,
+         "payload":{"accountId":"acc_1","amountCents":1500,"currency":"USD"},
+         "metadata":{"idempotencyKey":"k1"}}
+        """).toString(), root.toString()); // binary longs come back as LongNode, parsed JSON as IntNode
+  }
+
+  @Test
+  void reads_json_without_the_header() throws Exception {
+    var root = codec.read("{\"eventType\":\"AccountOpened\",\"version\":1}".getBytes(StandardCharsets.UTF_8), new RecordHeaders());
+    Assertions.assertEquals("AccountOpened", root.path("eventType").asText());
+  }
+
+  @Test
+  void reads_typed_events_from_either_encoding() throws Exception {
+    var headers = new RecordHeaders().add(EventCodec.HEADER, EventCodec.BINARY_V1.getBytes(StandardCharsets.UTF_8));
+    Assertions.assertEquals(new Envelope("acc_1", 7, new FundsCredited("acc_1", 1500, "USD")),
+        codec.event(HexFormat.of().parseHex(WIRE_SAMPLE), headers));
+    Assertions.assertEquals(new Envelope("tr_1", 3, new TransferFailed("credit_failed:x", true)), codec.event(json("""
+        {"metadata":{"compensated":true},"eventType":"TransferFailed","aggregateId":"tr_1","version":3,
+         "payload":{"reason":"credit_failed:x","extra":{"a":[1]}}}
+        """), new RecordHeaders()));
+  }
+
+  @Test
+  void upcasts_the_v1_envelope_and_payload() throws Exception {
+    Assertions.assertEquals(new Envelope("acc_1", 2, new FundsDebited("acc_1", 90, "USD")),
+        codec.event(json("{\"type\":\"DEBITED\",\"aggId\":\"acc_1\",\"v\":2,\"data\":{\"accountId\":\"acc_1\",\"amount\":90}}"), null));
+    Assertions.assertEquals(new Envelope("acc_1", 1, new AccountOpened("acc_1", "GBP")),
+        codec.event(json("{\"type\":\"ACCOUNT_CREATED\",\"aggId\":\"acc_1\",\"v\":1,\"data\":{\"curr\":\"GBP\",\"accountId\":\"acc_1\"}}"), null));
+    Assertions.assertNull(codec.event(json("{\"eventType\":\"FundsCredited\",\"version\":1}"), null));
+  }
+
+  @Test
+  void finds_the_position_of_a_record_it_cannot_read() throws Exception {
+    Assertions.assertNull(codec.event(json("{\"aggregateId\":\"tr_1\",\"version\":4,\"payload\":{}}"), null));
+    Assertions.assertEquals(new Envelope("tr_1", 4, new Unknown("unreadable")),
+        codec.position(json("{\"aggregateId\":\"tr_1\",\"version\":4,\"payload\":{}}"), null, "tr_1"));
+    var headers = new RecordHeaders().add(EventCodec.HEADER, EventCodec.BINARY_V1.getBytes(StandardCharsets.UTF_8));
+    Assertions.assertEquals(new Envelope("acc_1", 7, new Unknown("unreadable")),
+        codec.position(HexFormat.of().parseHex(WIRE_SAMPLE.substring(0, 20)), headers, "acc_1")); // truncated after the version
+    Assertions.assertNull(codec.position(json("{\"aggregateId\":\"tr_1\"}"), null, "tr_1"), "no version");
+    Assertions.assertNull(codec.position(json("{\"aggregateId\":\"tr_2\",\"version\":4}"), null, "tr_1"), "not the record's aggregate");
+    Assertions.assertNull(codec.position(json("not json"), null, "tr_1"));
+  }
+
+  /** Every record command-service's codec writes for the shared fixture reads back as its JSON envelope. */
+  @Test
+  void reads_the_command_service_fixture() throws Exception {
+    Path fixture = Path.of("../command-service/src/test/resources/codec/events.v1.compat");
+    Assumptions.assumeTrue(Files.exists(fixture), "command-service sources not next to this module");
+    var headers = new RecordHeaders().add(EventCodec.HEADER, EventCodec.BINARY_V1.getBytes(StandardCharsets.UTF_8));
+    for (String line : Files.readAllLines(fixture)) {
+      if (line.isBlank() || line.startsWith("#")) continue;
+      String[] rec = line.split(" ", 2);
+      byte[] bytes = HexFormat.of().parseHex(rec[0]);
+      Assertions.assertEquals(om.readTree(rec[1]).toString(), codec.read(bytes, headers).toString(), rec[1]);
+      Assertions.assertEquals(codec.event(json(rec[1]), null), codec.event(bytes, headers), rec[1]);
+    }
+  }
+
+  /** The schema is shipped in both services (each image builds from its own directory); the copies must not drift. */
+  @Test
+  void schema_is_the_command_service_copy() throws Exception {
+    Path ours = Path.of("src/main/resources/schemas/ledgerx-events.v1.schema");
+    Path theirs = Path.of("../command-service/src/main/resources/schemas/ledgerx-events.v1.schema");
+    Assumptions.assumeTrue(Files.exists(theirs), "command-service sources not next to this module");
+    Assertions.assertEquals(Files.readString(theirs), Files.readString(ours), "schemas/ledgerx-events.v1.schema differs from command-service's");
+  }
+
+  private static byte[] json(String s){ return s.getBytes(StandardCharsets.UTF_8); }
+}
@@ -0,0 +1,75 @@
+package com.ledgerx.query.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class KeyOrderedExecutorTest {
+  record Event(String key, int seq) {}
+
+  @Test
+  void each_key_is_applied_in_poll_order_while_lanes_run_in_parallel() {
+    var lanes = new KeyOrderedExecutor(new SimpleMeterRegistry(), 8);
+    Map<String, List<Integer>> applied = new ConcurrentHashMap<>();
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    AtomicInteger inside = new AtomicInteger(), maxInside = new AtomicInteger();
+    for (int poll = 0; poll < 20; poll++) {
+      List<Event> events = new ArrayList<>();
+      for (int i = 0; i < 480; i++) events.add(new Event("acc_" + (i % 40), poll * 480 + i));
+      lanes.run("account", events, Event::key, lane -> {
+        maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+        threads.add(Thread.currentThread().getName());
+        for (var e : lane) {
+          applied.computeIfAbsent(e.key(), k -> new ArrayList<>()).add(e.seq());
+          if (e.seq() % 50 == 0) Thread.yield();
+        }
+        try { Thread.sleep(2); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+        inside.decrementAndGet();
+      });
+    }
+    Assertions.assertEquals(40, applied.size());
+    for (var seqs : applied.values()) {
+      Assertions.assertEquals(240, seqs.size());
+      for (int i = 1; i < seqs.size(); i++) Assertions.assertTrue(seqs.get(i - 1) < seqs.get(i), "out of order: " + seqs);
+    }
+    Assertions.assertTrue(threads.size() > 1);
+    Assertions.assertTrue(maxInside.get() > 1, "lanes should overlap");
+  }
+
+  @Test
+  void returns_only_after_every_lane_and_rethrows_a_lane_failure() throws Exception {
+    var lanes = new KeyOrderedExecutor(new SimpleMeterRegistry(), 1024);
+    var slowDone = new CountDownLatch(1);
+    // "a" and "b" land in different lanes of 1024
+    var e = Assertions.assertThrows(IllegalStateException.class, () -> lanes.run("account", List.of("a", "b"), k -> k, lane -> {
+      if (lane.contains("a")) throw new IllegalStateException("bad event");
+      try { Thread.sleep(100); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+      slowDone.countDown();
+    }));
+    Assertions.assertEquals("bad event", e.getMessage());
+    Assertions.assertTrue(slowDone.await(0, TimeUnit.SECONDS), "the other lane should have finished before run returned");
+  }
+
+  @Test
+  void one_worker_applies_on_the_caller_thread_and_records_are_counted_per_partition() {
+    var meter = new SimpleMeterRegistry();
+    var lanes = new KeyOrderedExecutor(meter, 1);
+    Thread caller = Thread.currentThread();
+    lanes.run("transfer", List.of("x", "y"), k -> k, lane -> Assertions.assertSame(caller, Thread.currentThread()));
+    lanes.records("transfer", List.of(
+        new ConsumerRecord<>("t", 0, 0, "k", "v"), new ConsumerRecord<>("t", 0, 1, "k", "v"), new ConsumerRecord<>("t", 3, 0, "k", "v")));
+    Assertions.assertEquals(2.0, meter.get("ledgerx.projection.records").tag("partition", "0").counter().count());
+    Assertions.assertEquals(1.0, meter.get("ledgerx.projection.records").tag("partition", "3").counter().count());
+    Assertions.assertEquals(2.0, meter.get("ledgerx.projection.worker.events").tag("worker", "0").counter().count());
+  }
+}
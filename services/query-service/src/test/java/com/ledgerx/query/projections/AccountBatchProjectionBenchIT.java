@@ -0,0 +1,76 @@
+package com.ledgerx.query.projections;
+
+import com.ledgerx.query.AbstractContainerIT;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent.AccountOpened;
+import com.ledgerx.query.events.LedgerEvent.FundsCredited;
+import com.ledgerx.query.events.LedgerEvent.FundsDebited;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The same event stream applied one event per transaction (the old per-record listener) and in polls
+ * of 500: both give the same balances, redelivery changes nothing, and batches are much faster.
+ */
+@SpringBootTest(properties = "spring.kafka.consumer.group-id=ledgerx-projections-bench")
+class AccountBatchProjectionBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(AccountBatchProjectionBenchIT.class);
+
+  @Autowired ProjectionListener listener;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void batches_match_single_events_and_are_faster() {
+    int accounts = 500, perAccount = 40;
+    List<Envelope> single = stream("one_", accounts, perAccount), batched = stream("many_", accounts, perAccount);
+
+    long t0 = System.nanoTime();
+    for (var e : single) listener.apply(List.of(e));
+    long t1 = System.nanoTime();
+    for (int i = 0; i < batched.size(); i += 500) listener.apply(batched.subList(i, Math.min(i + 500, batched.size())));
+    long t2 = System.nanoTime();
+    for (int i = 0; i < batched.size(); i += 500) listener.apply(batched.subList(i, Math.min(i + 500, batched.size()))); // redelivered
+
+    int n = single.size();
+    log.info("account projection: per-event {} events/s, batched {} events/s",
+        Math.round(n / ((t1 - t0) / 1e9)), Math.round(n / ((t2 - t1) / 1e9)));
+    Assertions.assertEquals(balances("one_"), balances("many_"));
+    Assertions.assertTrue(t2 - t1 < (t1 - t0) / 2, "batches should be well over twice as fast");
+  }
+
+  @Test
+  void duplicates_within_a_poll_apply_once() {
+    var e = new Envelope("dup_1", 2, new FundsCredited("dup_1", 100, "USD"));
+    listener.apply(List.of(new Envelope("dup_1", 1, new AccountOpened("dup_1", "EUR")), e, e));
+    listener.apply(List.of(e));
+    Assertions.assertEquals(100L, jdbc.queryForObject("SELECT balance_cents FROM account_balance WHERE account_id='dup_1'", Long.class));
+    Assertions.assertEquals("EUR", jdbc.queryForObject("SELECT currency FROM account_balance WHERE account_id='dup_1'", String.class));
+  }
+
+  /** Events interleaved across accounts, as one partition would carry them. */
+  private static List<Envelope> stream(String prefix, int accounts, int perAccount){
+    List<Envelope> out = new ArrayList<>();
+    for (int v = 1; v <= perAccount; v++) {
+      for (int a = 0; a < accounts; a++) {
+        String id = prefix + a;
+        out.add(new Envelope(id, v, v == 1 ? new AccountOpened(id, "USD")
+            : v % 4 == 0 ? new FundsDebited(id, 30, "USD") : new FundsCredited(id, 100 + a, "USD")));
+      }
+    }
+    return out;
+  }
+
+  private List<Long> balances(String prefix){
+    return jdbc.queryForList("""
+      SELECT balance_cents FROM account_balance WHERE account_id LIKE ? ORDER BY substr(account_id, length(?) + 1)::int
+    """, Long.class, prefix + "%", prefix);
+  }
+}
@@ -0,0 +1,118 @@
+package com.ledgerx.query.projections;
+
+import com.ledgerx.query.AbstractContainerIT;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent.*;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Events that arrive ahead of a missing version are held, not dropped, and applied once the gap closes;
+ * an event that is rejected or cannot be decoded still takes its version.
+ */
+@SpringBootTest(properties = "spring.kafka.consumer.group-id=ledgerx-out-of-order-test")
+class OutOfOrderProjectionIT extends AbstractContainerIT {
+
+  @Autowired ProjectionListener accounts;
+  @Autowired TransferProjectionListener transfers;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void account_v2_before_v1_is_held_then_applied() {
+    accounts.apply(List.of(new Envelope("ooo_a", 2, new FundsCredited("ooo_a", 500, "USD"))));
+    Assertions.assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM account_balance WHERE account_id='ooo_a'", Integer.class));
+    Assertions.assertEquals(1, held("account_held_events", "account_id", "ooo_a"));
+
+    accounts.apply(List.of(new Envelope("ooo_a", 1, new AccountOpened("ooo_a", "USD"))));
+    Assertions.assertEquals(500L, balance("ooo_a"));
+    Assertions.assertEquals(2L, version("account_balance", "account_id", "ooo_a"));
+    Assertions.assertEquals(0, held("account_held_events", "account_id", "ooo_a"));
+
+    // a redelivered v2 stays applied once
+    accounts.apply(List.of(new Envelope("ooo_a", 2, new FundsCredited("ooo_a", 500, "USD"))));
+    Assertions.assertEquals(500L, balance("ooo_a"));
+  }
+
+  @Test
+  void account_gap_mid_stream_holds_everything_after_it() {
+    accounts.apply(List.of(new Envelope("ooo_b", 1, new AccountOpened("ooo_b", "USD")),
+        new Envelope("ooo_b", 2, new FundsCredited("ooo_b", 100, "USD"))));
+    // v3 missing: v4 and v5 wait, in this poll and the next
+    accounts.apply(List.of(new Envelope("ooo_b", 4, new FundsDebited("ooo_b", 30, "USD"))));
+    accounts.apply(List.of(new Envelope("ooo_b", 5, new FundsCredited("ooo_b", 7, "USD"))));
+    Assertions.assertEquals(100L, balance("ooo_b"));
+    Assertions.assertEquals(2L, version("account_balance", "account_id", "ooo_b"));
+    Assertions.assertEquals(2, held("account_held_events", "account_id", "ooo_b"));
+
+    accounts.apply(List.of(new Envelope("ooo_b", 3, new FundsCredited("ooo_b", 1_000, "USD"))));
+    Assertions.assertEquals(1_077L, balance("ooo_b"));
+    Assertions.assertEquals(5L, version("account_balance", "account_id", "ooo_b"));
+    Assertions.assertEquals(0, held("account_held_events", "account_id", "ooo_b"));
+  }
+
+  @Test
+  void transfer_status_before_request_is_held_then_applied() {
+    transfers.apply(List.of(new Envelope("ooo_t", 3, new DestinationCredited("acc_b", 100)),
+        new Envelope("ooo_t", 2, new SourceDebited("acc_a", 100))));
+    Assertions.assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM transfers WHERE transfer_id='ooo_t'", Integer.class));
+    Assertions.assertEquals(2, held("transfer_held_events", "transfer_id", "ooo_t"));
+
+    transfers.apply(List.of(new Envelope("ooo_t", 1, new TransferRequested("ooo_t", "acc_a", "acc_b", 100, "USD"))));
+    Assertions.assertEquals("CREDITED", jdbc.queryForObject("SELECT status FROM transfers WHERE transfer_id='ooo_t'", String.class));
+    Assertions.assertEquals(3L, version("transfers", "transfer_id", "ooo_t"));
+    Assertions.assertEquals(0, held("transfer_held_events", "transfer_id", "ooo_t"));
+
+    // a late v2 redelivery does not move the status back
+    transfers.apply(List.of(new Envelope("ooo_t", 2, new SourceDebited("acc_a", 100))));
+    Assertions.assertEquals("CREDITED", jdbc.queryForObject("SELECT status FROM transfers WHERE transfer_id='ooo_t'", String.class));
+  }
+
+  @Test
+  void poison_event_takes_its_version_so_the_next_one_applies() {
+    accounts.apply(List.of(new Envelope("ooo_p", 1, new AccountOpened("ooo_p", "USD")),
+        new Envelope("ooo_p", 2, new FundsCredited("ooo_p", 100, "USD"))));
+    // v3 overflows balance_cents: the poll fails, v3 is skipped one by one and v4 still applies
+    accounts.onAccounts(List.of(
+        record("ledgerx.accounts.events.v2", "ooo_p", 3, "FundsCredited", "{\"accountId\":\"ooo_p\",\"amountCents\":" + Long.MAX_VALUE + ",\"currency\":\"USD\"}"),
+        record("ledgerx.accounts.events.v2", "ooo_p", 4, "FundsCredited", "{\"accountId\":\"ooo_p\",\"amountCents\":5,\"currency\":\"USD\"}")));
+    Assertions.assertEquals(105L, balance("ooo_p"));
+    Assertions.assertEquals(4L, version("account_balance", "account_id", "ooo_p"));
+    Assertions.assertEquals(0, held("account_held_events", "account_id", "ooo_p"));
+  }
+
+  @Test
+  void undecodable_event_takes_its_version_so_the_next_one_applies() {
+    transfers.apply(List.of(new Envelope("ooo_u", 1, new TransferRequested("ooo_u", "acc_a", "acc_b", 100, "USD"))));
+    transfers.onTransfers(List.of(
+        record("ledgerx.transfers.events.v1", "ooo_u", 2, null, "{}"),
+        record("ledgerx.transfers.events.v1", "ooo_u", 3, "TransferCompleted", "{\"transferId\":\"ooo_u\"}")));
+    Assertions.assertEquals("COMPLETED", jdbc.queryForObject("SELECT status FROM transfers WHERE transfer_id='ooo_u'", String.class));
+    Assertions.assertEquals(3L, version("transfers", "transfer_id", "ooo_u"));
+    Assertions.assertEquals(0, held("transfer_held_events", "transfer_id", "ooo_u"));
+  }
+
+  private static ConsumerRecord<String,byte[]> record(String topic, String id, long version, String type, String payload){
+    String json = "{" + (type == null ? "" : "\"eventType\":\"" + type + "\",")
+        + "\"aggregateId\":\"" + id + "\",\"version\":" + version + ",\"payload\":" + payload + ",\"metadata\":{}}";
+    return new ConsumerRecord<>(topic, 0, version, id, json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private long balance(String id){
+    return jdbc.queryForObject("SELECT balance_cents FROM account_balance WHERE account_id=?", Long.class, id);
+  }
+
+  private long version(String table, String column, String id){
+    return jdbc.queryForObject("SELECT last_applied_version FROM " + table + " WHERE " + column + "=?", Long.class, id);
+  }
+
+  private int held(String table, String column, String id){
+    return jdbc.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE " + column + "=?", Integer.class, id);
+  }
+}
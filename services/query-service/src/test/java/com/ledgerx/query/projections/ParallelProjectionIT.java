@@ -0,0 +1,116 @@
+package com.ledgerx.query.projections;
+
+import com.ledgerx.query.AbstractContainerIT;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-account order under parallelism, on a topic that really has 8 partitions (created here; the test
+ * checks the broker reports 8 and that the consumers split them). The same backlog is drained with one
+ * consumer thread and then with 4, each applying its polls in 4 key lanes; both must leave every
+ * account's watermark and balance exact, with nothing held, and the drain rates are logged.
+ */
+@SpringBootTest(properties = {"spring.kafka.consumer.group-id=ledgerx-projections-parallel-test", "ledgerx.projection.concurrency=4", "ledgerx.projection.workers=4"})
+class ParallelProjectionIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(ParallelProjectionIT.class);
+  static final String TOPIC = "ledgerx.accounts.events.v2";
+  static final int PARTITIONS = 8;
+
+  @BeforeAll
+  static void createTopic() throws Exception {
+    try (var admin = Admin.create(Map.<String,Object>of("bootstrap.servers", KAFKA.getBootstrapServers()))) {
+      admin.createTopics(List.of(new NewTopic(TOPIC, PARTITIONS, (short) 1))).all().get();
+      int partitions = admin.describeTopics(List.of(TOPIC)).allTopicNames().get().get(TOPIC).partitions().size();
+      Assertions.assertEquals(PARTITIONS, partitions);
+    }
+  }
+
+  @Autowired JdbcTemplate jdbc;
+  @Autowired KafkaListenerEndpointRegistry registry;
+
+  @Test
+  void every_account_is_applied_in_order() throws Exception {
+    var container = accountsContainer();
+    double single = drain(container, 1, "seq_");
+    double parallel = drain(container, 4, "par_");
+    log.info("account projection on {} partitions, 4 lanes per consumer: 1 consumer {} ev/s, 4 consumers {} ev/s",
+        PARTITIONS, Math.round(single), Math.round(parallel));
+  }
+
+  /** Stops the listener, queues a backlog, restarts it with {@code consumers} threads and returns events/s to drain it. */
+  private double drain(ConcurrentMessageListenerContainer<?,?> container, int consumers, String prefix) throws Exception {
+    int accounts = 200, credits = 50;
+    container.stop();
+    container.setConcurrency(consumers);
+    send(prefix, accounts, credits);
+
+    long t0 = System.nanoTime();
+    container.start();
+    Awaitility.await().atMost(Duration.ofSeconds(30)).untilAsserted(() -> {
+      var owners = container.getContainers().stream().map(c -> c.getAssignedPartitions())
+          .filter(p -> p != null && !p.isEmpty()).toList();
+      Assertions.assertEquals(consumers, owners.size(), "every consumer should own partitions");
+      Assertions.assertEquals(PARTITIONS, owners.stream().mapToInt(Collection::size).sum());
+    });
+    Awaitility.await().atMost(Duration.ofSeconds(120)).untilAsserted(() -> Assertions.assertEquals(accounts,
+        jdbc.queryForObject("SELECT COUNT(*) FROM account_balance WHERE account_id LIKE ? AND last_applied_version = ?",
+            Integer.class, prefix + "%", credits + 1)));
+    double secs = (System.nanoTime() - t0) / 1e9;
+
+    long expected = 0;
+    for (int v = 2; v <= credits + 1; v++) expected += v;
+    Assertions.assertEquals(accounts, jdbc.queryForObject(
+        "SELECT COUNT(*) FROM account_balance WHERE account_id LIKE ? AND balance_cents = ?", Integer.class, prefix + "%", expected));
+    Assertions.assertEquals(0, jdbc.queryForObject(
+        "SELECT COUNT(*) FROM account_held_events WHERE account_id LIKE ?", Integer.class, prefix + "%"));
+    return accounts * (credits + 1) / secs;
+  }
+
+  private ConcurrentMessageListenerContainer<?,?> accountsContainer(){
+    return registry.getListenerContainers().stream()
+        .filter(c -> Arrays.asList(c.getContainerProperties().getTopics()).contains(TOPIC))
+        .map(c -> (ConcurrentMessageListenerContainer<?,?>) c)
+        .findFirst().orElseThrow();
+  }
+
+  private static void send(String prefix, int accounts, int credits){
+    var pf = new DefaultKafkaProducerFactory<String,String>(Map.<String,Object>of(
+        "bootstrap.servers", KAFKA.getBootstrapServers(),
+        "key.serializer", StringSerializer.class, "value.serializer", StringSerializer.class, "linger.ms", 5));
+    var kafka = new KafkaTemplate<>(pf);
+    try {
+      for (int v = 1; v <= credits + 1; v++) {
+        for (int a = 0; a < accounts; a++) {
+          String acc = prefix + a;
+          String payload = v == 1 ? "{\"accountId\":\"%s\",\"currency\":\"USD\"}".formatted(acc)
+              : "{\"accountId\":\"%s\",\"amountCents\":%d,\"currency\":\"USD\"}".formatted(acc, v);
+          kafka.send(TOPIC, acc, "{\"eventType\":\"%s\",\"aggregateId\":\"%s\",\"version\":%d,\"payload\":%s,\"metadata\":{}}"
+              .formatted(v == 1 ? "AccountOpened" : "FundsCredited", acc, v, payload));
+        }
+      }
+      kafka.flush();
+    } finally {
+      pf.destroy();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.ledgerx.query.projections;
+
+import com.ledgerx.query.AbstractContainerIT;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent.AccountOpened;
+import com.ledgerx.query.events.LedgerEvent.FundsCredited;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statements and index bytes per projected event: the applied_events scheme (replayed here with its
+ * original statements against a scratch copy of the table) vs the last_applied_version watermark.
+ * Counted with pg_stat_statements.
+ */
+@SpringBootTest(properties = "spring.kafka.consumer.group-id=ledgerx-projections-bench")
+class ProjectionWatermarkBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(ProjectionWatermarkBenchIT.class);
+
+  @Autowired ProjectionListener accounts;
+  @Autowired TransferProjectionListener transfers;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void statements_and_bytes_per_event() {
+    jdbc.execute("CREATE EXTENSION IF NOT EXISTS pg_stat_statements");
+    jdbc.execute("CREATE TABLE legacy_applied_events (aggregate_id TEXT NOT NULL, version BIGINT NOT NULL, PRIMARY KEY (aggregate_id, version))");
+    jdbc.execute("CREATE TABLE legacy_account_balance (LIKE account_balance INCLUDING ALL)");
+    int n = 5_000;
+
+    // before: one applied_events insert, the ensure-row insert and the balance update per event
+    reset();
+    for (int i = 0; i < n; i++) {
+      String acc = "old_" + (i % 100);
+      long version = i / 100 + 1;
+      if (jdbc.update("INSERT INTO legacy_applied_events(aggregate_id, version) VALUES (?, ?) ON CONFLICT DO NOTHING", acc, version) == 0) continue;
+      jdbc.update("INSERT INTO legacy_account_balance(account_id, currency, balance_cents) VALUES (?, 'USD', 0) ON CONFLICT (account_id) DO NOTHING", acc);
+      jdbc.update("UPDATE legacy_account_balance SET balance_cents=balance_cents+?, updated_at=NOW() WHERE account_id=?", 100, acc);
+    }
+    double before = statements() / (double) n;
+    long beforeBytes = jdbc.queryForObject("SELECT pg_total_relation_size('legacy_applied_events')", Long.class);
+
+    // after, per event (the listener's fallback path, and what an unbatched consumer would do)
+    reset();
+    for (int i = 0; i < n; i++) accounts.apply(List.of(event("new_" + (i % 100), i / 100 + 1)));
+    double afterSingle = statements() / (double) n;
+
+    // after, in polls of 500
+    List<Envelope> stream = new ArrayList<>();
+    for (int i = 0; i < n; i++) stream.add(event("batch_" + (i % 100), i / 100 + 1));
+    reset();
+    for (int i = 0; i < n; i += 500) accounts.apply(stream.subList(i, i + 500));
+    double afterBatch = statements() / (double) n;
+
+    // transfers: applied_events insert + update before, one conditional statement now
+    reset();
+    for (int i = 0; i < n / 4; i++) {
+      String id = "tr_" + i;
+      transfers.onTransfers(List.of(record(id, 1, "TransferRequested",
+          "{\"transferId\":\"" + id + "\",\"from\":\"a\",\"to\":\"b\",\"amountCents\":1,\"currency\":\"USD\"}")));
+      transfers.onTransfers(List.of(record(id, 2, "SourceDebited", "{}")));
+      transfers.onTransfers(List.of(record(id, 3, "DestinationCredited", "{}")));
+      transfers.onTransfers(List.of(record(id, 4, "TransferCompleted", "{}")));
+      transfers.onTransfers(List.of(record(id, 4, "TransferCompleted", "{}"))); // redelivery
+    }
+    double transferStatements = statements() / (double) (n / 4 * 5);
+
+    log.info("projection statements/event: accounts before={} after={} (batched {}); transfers before=2.00 after={}; "
+        + "applied_events index+heap {} B/event before, 0 after", "%.2f".formatted(before), "%.2f".formatted(afterSingle),
+        "%.3f".formatted(afterBatch), "%.2f".formatted(transferStatements), beforeBytes / n);
+
+    Assertions.assertEquals(1.0, afterSingle, 0.01);
+    Assertions.assertTrue(before > 2.9);
+    Assertions.assertEquals(1.0, transferStatements, 0.01);
+    Assertions.assertEquals(jdbc.queryForObject("SELECT SUM(balance_cents) FROM legacy_account_balance", Long.class),
+        jdbc.queryForObject("SELECT SUM(balance_cents) FROM account_balance WHERE account_id LIKE 'new_%'", Long.class));
+    Assertions.assertEquals(n / 4, jdbc.queryForObject("SELECT COUNT(*) FROM transfers WHERE status='COMPLETED' AND last_applied_version=4", Integer.class));
+  }
+
+  private static Envelope event(String acc, long version){
+    return new Envelope(acc, version, version == 1 ? new AccountOpened(acc, "USD") : new FundsCredited(acc, 100, "USD"));
+  }
+
+  private static ConsumerRecord<String,byte[]> record(String id, long version, String type, String payload){
+    String json = "{\"eventType\":\"%s\",\"aggregateId\":\"%s\",\"version\":%d,\"payload\":%s,\"metadata\":{}}".formatted(type, id, version, payload);
+    return new ConsumerRecord<>("ledgerx.transfers.events.v1", 0, 0, id, json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void reset(){ jdbc.queryForList("SELECT pg_stat_statements_reset()"); }
+
+  private long statements(){
+    return jdbc.queryForObject("""
+      SELECT COALESCE(SUM(calls), 0) FROM pg_stat_statements
+      WHERE query ~* '(account_balance|transfers|applied_events)' AND query !~* 'pg_stat_statements'
+    """, Long.class);
+  }
+}
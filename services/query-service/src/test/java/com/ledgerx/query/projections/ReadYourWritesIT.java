@@ -0,0 +1,59 @@
+package com.ledgerx.query.projections;
+
+import com.ledgerx.query.AbstractContainerIT;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent.AccountOpened;
+import com.ledgerx.query.events.LedgerEvent.FundsCredited;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/** A {@code minVersion} read is held until the listener commits that version, and answered stale on timeout. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.kafka.consumer.group-id=ledgerx-read-your-writes-test")
+class ReadYourWritesIT extends AbstractContainerIT {
+
+  @Autowired ProjectionListener accounts;
+  @Autowired TestRestTemplate http;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void read_waits_for_the_version_then_answers() throws Exception {
+    accounts.apply(List.of(new Envelope("ryw_1", 1, new AccountOpened("ryw_1", "USD"))));
+
+    long t0 = System.nanoTime();
+    var held = CompletableFuture.supplyAsync(() -> http.getForObject("/api/accounts/ryw_1?minVersion=2&timeoutMs=5000", Map.class));
+    Thread.sleep(300);
+    Assertions.assertFalse(held.isDone(), "read should be held until version 2 is projected");
+    accounts.apply(List.of(new Envelope("ryw_1", 2, new FundsCredited("ryw_1", 700, "USD"))));
+    Map<String,Object> body = held.get(5, TimeUnit.SECONDS);
+    Assertions.assertEquals(700, ((Number) body.get("balance_cents")).intValue());
+    Assertions.assertEquals(2, ((Number) body.get("version")).intValue());
+    Assertions.assertTrue(System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(4), "answered on the notification, not the timeout");
+
+    // already there: answered at once
+    Assertions.assertEquals(2, ((Number) http.getForObject("/api/accounts/ryw_1?minVersion=1", Map.class).get("version")).intValue());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void read_times_out_with_the_current_row_and_sees_other_writers() throws Exception {
+    accounts.apply(List.of(new Envelope("ryw_2", 1, new AccountOpened("ryw_2", "USD"))));
+    Map<String,Object> stale = http.getForObject("/api/accounts/ryw_2?minVersion=5&timeoutMs=300", Map.class);
+    Assertions.assertEquals(1, ((Number) stale.get("version")).intValue());
+
+    // projected by "another instance": no notification here, the recheck picks it up
+    var held = CompletableFuture.supplyAsync(() -> http.getForObject("/api/accounts/ryw_2?minVersion=2&timeoutMs=5000", Map.class));
+    Thread.sleep(200);
+    jdbc.update("UPDATE account_balance SET balance_cents = 50, last_applied_version = 2 WHERE account_id = 'ryw_2'");
+    Assertions.assertEquals(2, ((Number) held.get(3, TimeUnit.SECONDS).get("version")).intValue());
+  }
+}
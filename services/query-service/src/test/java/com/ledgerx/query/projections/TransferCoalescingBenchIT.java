@@ -0,0 +1,101 @@
+package com.ledgerx.query.projections;
+
+import com.ledgerx.query.AbstractContainerIT;
+import com.ledgerx.query.events.Envelope;
+import com.ledgerx.query.events.LedgerEvent;
+import com.ledgerx.query.events.LedgerEvent.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transfer projection cost per event, applied one event at a time vs in polls of 500 where each
+ * transfer's transitions coalesce into one row write: row versions written (each update leaves a dead
+ * tuple), WAL bytes and events/s. The poll stream interleaves transfers the way a partition does.
+ */
+@SpringBootTest(properties = "spring.kafka.consumer.group-id=ledgerx-transfer-coalescing-bench")
+class TransferCoalescingBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(TransferCoalescingBenchIT.class);
+
+  @Autowired TransferProjectionListener transfers;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void per_event_vs_coalesced() {
+    int n = 5_000; // transfers, four events each
+
+    Result single = run("single", n, 1);
+    Result batched = run("batch", n, 500);
+
+    log.info("transfer projection per event: rows written single={} coalesced={}; WAL single={} B coalesced={} B; "
+        + "throughput single={} ev/s coalesced={} ev/s", "%.2f".formatted(single.rows), "%.2f".formatted(batched.rows),
+        single.walBytes, batched.walBytes, Math.round(single.eventsPerSec), Math.round(batched.eventsPerSec));
+
+    Assertions.assertEquals(1.0, single.rows, 0.01);
+    Assertions.assertTrue(batched.rows < single.rows / 2, "a transfer's transitions within a poll should be one row write");
+    Assertions.assertTrue(batched.walBytes < single.walBytes);
+    for (String prefix : List.of("single", "batch")) {
+      Assertions.assertEquals(n * 9 / 10, count(prefix, "COMPLETED"));
+      Assertions.assertEquals(n / 10, count(prefix, "COMPENSATED"));
+    }
+
+    // a redelivered, out-of-date poll changes nothing
+    var before = jdbc.queryForList("SELECT transfer_id, status, last_applied_version FROM transfers WHERE transfer_id LIKE 'batch_%' ORDER BY transfer_id");
+    transfers.apply(stream("batch", n).subList(0, 500));
+    Assertions.assertEquals(before,
+        jdbc.queryForList("SELECT transfer_id, status, last_applied_version FROM transfers WHERE transfer_id LIKE 'batch_%' ORDER BY transfer_id"));
+  }
+
+  record Result(double rows, long walBytes, double eventsPerSec) {}
+
+  private Result run(String prefix, int n, int poll){
+    List<Envelope> events = stream(prefix, n);
+    long tuples0 = tuplesWritten();
+    String lsn = jdbc.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+    long t0 = System.nanoTime();
+    for (int i = 0; i < events.size(); i += poll) transfers.apply(events.subList(i, Math.min(i + poll, events.size())));
+    double secs = (System.nanoTime() - t0) / 1e9;
+    long wal = jdbc.queryForObject("SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), ?::pg_lsn)::bigint", Long.class, lsn);
+    long rows = tuplesWritten() - tuples0;
+    return new Result(rows / (double) events.size(), wal / events.size(), events.size() / secs);
+  }
+
+  /** Inserted plus updated tuples of transfers; each update leaves a dead tuple behind. */
+  private long tuplesWritten(){
+    // backends flush table counters when idle, at most once a second
+    try { Thread.sleep(1_500); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    return jdbc.queryForObject("SELECT n_tup_ins + n_tup_upd FROM pg_stat_user_tables WHERE relname = 'transfers'", Long.class);
+  }
+
+  /** Each transfer's events, interleaved 64 transfers at a time; every tenth transfer fails and is compensated. */
+  private static List<Envelope> stream(String prefix, int n){
+    List<Envelope> out = new ArrayList<>(n * 4);
+    for (int base = 0; base < n; base += 64) {
+      for (int step = 1; step <= 4; step++) {
+        for (int i = base; i < Math.min(base + 64, n); i++) {
+          String id = prefix + "_" + i;
+          boolean fails = i % 10 == 0;
+          LedgerEvent e = switch (step) {
+            case 1 -> new TransferRequested(id, "acc_a", "acc_b", 100, "USD");
+            case 2 -> new SourceDebited("acc_a", 100);
+            case 3 -> fails ? new TransferFailed("destination_closed", true) : new DestinationCredited("acc_b", 100);
+            default -> fails ? null : new TransferCompleted();
+          };
+          if (e != null) out.add(new Envelope(id, step, e));
+        }
+      }
+    }
+    return out;
+  }
+
+  private int count(String prefix, String status){
+    return jdbc.queryForObject("SELECT COUNT(*) FROM transfers WHERE transfer_id LIKE ? AND status = ?", Integer.class, prefix + "_%", status);
+  }
+}
@@ -0,0 +1,99 @@
+package com.ledgerx.query.rebuild;
+
+import com.ledgerx.query.AbstractContainerIT;
+import com.ledgerx.query.projections.ProjectionListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds the projections from a generated event store (default 2M events; -Dledgerx.bench.events=N)
+ * and compares against the listener path, timed on a sample and extrapolated.
+ */
+@SpringBootTest(properties = "spring.kafka.consumer.group-id=ledgerx-projections-bench")
+class ProjectionRebuildBenchIT extends AbstractContainerIT {
+  private static final Logger log = LoggerFactory.getLogger(ProjectionRebuildBenchIT.class);
+
+  @Autowired JdbcTemplate jdbc;
+  @Autowired ProjectionRebuilder rebuilder;
+  @Autowired ProjectionListener listener;
+
+  @Test
+  void rebuild_vs_listener_replay() {
+    long target = Long.getLong("ledgerx.bench.events", 2_000_000L);
+    int perAccount = 20, transfers = (int) (target / 10 / 4);
+    int accounts = (int) ((target - transfers * 4L) / perAccount);
+    jdbc.update("""
+      INSERT INTO event_store(aggregate_type, aggregate_id, version, event_type, payload, metadata)
+      SELECT 'Account', 'acc_' || a, v,
+             CASE WHEN v = 1 THEN 'AccountOpened' WHEN v % 5 = 0 THEN 'FundsDebited' ELSE 'FundsCredited' END,
+             CASE WHEN v = 1 THEN jsonb_build_object('accountId', 'acc_' || a, 'currency', 'USD')
+                  ELSE jsonb_build_object('accountId', 'acc_' || a, 'amountCents', v * 10, 'currency', 'USD') END,
+             jsonb_build_object('idempotencyKey', 'k' || a || ':' || v)
+      FROM generate_series(1, ?) a, generate_series(1, ?) v
+    """, accounts, perAccount);
+    jdbc.update("""
+      INSERT INTO event_store(aggregate_type, aggregate_id, version, event_type, payload, metadata)
+      SELECT 'Transfer', 'tr_' || t, v,
+             (ARRAY['TransferRequested', 'SourceDebited', 'DestinationCredited', 'TransferCompleted'])[v],
+             CASE WHEN v = 1 THEN jsonb_build_object('transferId', 'tr_' || t, 'from', 'acc_1', 'to', 'acc_2',
+                                                     'amountCents', 100, 'currency', 'USD')
+                  ELSE '{}'::jsonb END,
+             '{}'::jsonb
+      FROM generate_series(1, ?) t, generate_series(1, 4) v
+    """, transfers);
+    long events = jdbc.queryForObject("SELECT COUNT(*) FROM event_store", Long.class);
+
+    // listener path on a sample
+    int sample = 20_000;
+    long t0 = System.nanoTime();
+    var rows = jdbc.queryForList("""
+      SELECT aggregate_id, version, event_type, payload::text AS payload FROM event_store
+      WHERE aggregate_type = 'Account' ORDER BY id LIMIT ?
+    """, sample);
+    List<ConsumerRecord<String,byte[]>> poll = new ArrayList<>();
+    for (Map<String,Object> r : rows) {
+      String json = "{\"eventType\":\"%s\",\"aggregateId\":\"%s\",\"version\":%d,\"payload\":%s}".formatted(
+          r.get("event_type"), r.get("aggregate_id"), r.get("version"), r.get("payload"));
+      poll.add(new ConsumerRecord<>("ledgerx.accounts.events.v2", 0, 0, (String) r.get("aggregate_id"),
+          json.getBytes(StandardCharsets.UTF_8)));
+      if (poll.size() == 500) { listener.onAccounts(poll); poll = new ArrayList<>(); } // max.poll.records
+    }
+    listener.onAccounts(poll);
+    double listenerPerEvent = (System.nanoTime() - t0) / (double) rows.size();
+
+    long id = jdbc.queryForObject("INSERT INTO projection_rebuilds DEFAULT VALUES RETURNING id", Long.class);
+    long t1 = System.nanoTime();
+    rebuilder.run(id);
+    double rebuildSeconds = (System.nanoTime() - t1) / 1e9;
+
+    var status = rebuilder.status(id);
+    Assertions.assertEquals("COMPLETED", status.get("status"), String.valueOf(status.get("error")));
+    log.info("projection rebuild: {} events in {}s ({} events/s); listener path ~{}us/event, ~{} min for the same events",
+        events, "%.1f".formatted(rebuildSeconds), Math.round(events / rebuildSeconds), Math.round(listenerPerEvent / 1e3),
+        "%.1f".formatted(listenerPerEvent * events / 1e9 / 60));
+
+    Assertions.assertEquals(accounts, jdbc.queryForObject("SELECT COUNT(*) FROM account_balance", Long.class));
+    Assertions.assertEquals(transfers, jdbc.queryForObject("SELECT COUNT(*) FROM transfers WHERE status = 'COMPLETED'", Long.class));
+    Assertions.assertEquals(perAccount, jdbc.queryForObject("SELECT MIN(last_applied_version) FROM account_balance", Long.class));
+    Assertions.assertEquals(4L, jdbc.queryForObject("SELECT MIN(last_applied_version) FROM transfers", Long.class));
+    Long expected = jdbc.queryForObject("""
+      SELECT SUM(CASE event_type WHEN 'FundsCredited' THEN (payload->>'amountCents')::bigint
+                                 WHEN 'FundsDebited' THEN -(payload->>'amountCents')::bigint ELSE 0 END)
+      FROM event_store WHERE aggregate_type = 'Account'
+    """, Long.class);
+    Assertions.assertEquals(expected, jdbc.queryForObject("SELECT SUM(balance_cents) FROM account_balance", Long.class));
+    Assertions.assertEquals(1, jdbc.queryForObject(
+        "SELECT COUNT(*) FROM pg_indexes WHERE tablename = 'transfers' AND indexname = 'idx_transfers_from'", Integer.class));
+  }
+}